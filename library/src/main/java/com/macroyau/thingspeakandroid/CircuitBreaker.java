@@ -0,0 +1,185 @@
+package com.macroyau.thingspeakandroid;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/***
+ * Interceptor failing calls fast while the ThingSpeak API is degraded. After a number of consecutive transient failures (see
+ * {@link com.macroyau.thingspeakandroid.RetryInterceptor}), the breaker opens and all calls fail immediately with a
+ * {@link com.macroyau.thingspeakandroid.CircuitBreaker.OpenException} for a cooldown period, or as long as a Retry-After header asks for.
+ * Then a single probe call is let through; it closes the breaker on success and opens it again on failure.
+ *
+ * @author Macro Yau
+ */
+public class CircuitBreaker implements ServiceInterceptor {
+
+    /***
+     * State of a circuit breaker.
+     */
+    public enum State {
+        /***
+         * Calls are made normally.
+         */
+        CLOSED,
+        /***
+         * Calls fail immediately.
+         */
+        OPEN,
+        /***
+         * A probe call is made to check whether the API has recovered.
+         */
+        HALF_OPEN
+    }
+
+    /***
+     * Cause of the {@link retrofit.RetrofitError} of calls failed fast by an open circuit breaker. As the request is never built, the URL of
+     * the error is the name of the service method instead, e.g. getChannelFeed, also returned by {@link #getEndpoint()}.
+     */
+    public static class OpenException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String mEndpoint;
+
+        private OpenException(String endpoint) {
+            super("Circuit breaker is open, " + endpoint + " is not called");
+            this.mEndpoint = endpoint;
+        }
+
+        /***
+         * Return the name of the service method not called.
+         *
+         * @return The endpoint name.
+         */
+        public String getEndpoint() {
+            return mEndpoint;
+        }
+
+    }
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_OPEN_DURATION = 30 * 1000L;
+
+    private final Executor mCallbackExecutor;
+    private int mFailureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private long mOpenDuration = DEFAULT_OPEN_DURATION;
+
+    private State mState = State.CLOSED;
+    private int mFailures;
+    private long mOpenUntil;
+    private boolean mProbing;
+
+    CircuitBreaker(Executor callbackExecutor) {
+        this.mCallbackExecutor = callbackExecutor;
+    }
+
+    /***
+     * Set the number of consecutive transient failures opening the breaker. The default is 5.
+     *
+     * @param failureThreshold The number of failures.
+     */
+    public synchronized void setFailureThreshold(int failureThreshold) {
+        this.mFailureThreshold = Math.max(failureThreshold, 1);
+    }
+
+    /***
+     * Set the minimum time the breaker stays open before a probe call is made. The default is 30 seconds.
+     *
+     * @param millis The time in milliseconds.
+     */
+    public synchronized void setOpenDuration(long millis) {
+        this.mOpenDuration = Math.max(millis, 0);
+    }
+
+    /***
+     * Return the current state of the breaker.
+     *
+     * @return The state.
+     */
+    public synchronized State getState() {
+        if (mState == State.OPEN && now() >= mOpenUntil)
+            return State.HALF_OPEN;
+        return mState;
+    }
+
+    /***
+     * Close the breaker, e.g. when the network is known to be available again.
+     */
+    public synchronized void reset() {
+        mState = State.CLOSED;
+        mFailures = 0;
+        mProbing = false;
+    }
+
+    @Override
+    public void intercept(final ServiceCall call, final Callback<Object> callback) {
+        if (!tryAcquire()) {
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // The endpoint name stands in for the URL of the request never built, as documented by OpenException
+                    callback.failure(RetrofitError.unexpectedError(call.getEndpoint(), new OpenException(call.getEndpoint())));
+                }
+            });
+            return;
+        }
+
+        call.proceed(new Callback<Object>() {
+            @Override
+            public void success(Object result, Response response) {
+                onCallSucceeded();
+                callback.success(result, response);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                if (RetryInterceptor.isTransient(error))
+                    onCallFailed(RetryInterceptor.getRetryAfterMillis(error));
+                else
+                    onCallSucceeded();
+                callback.failure(error);
+            }
+        });
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (mState == State.CLOSED)
+            return true;
+        if (mState == State.OPEN) {
+            if (now() < mOpenUntil)
+                return false;
+            mState = State.HALF_OPEN;
+        }
+        if (mProbing)
+            return false;
+        mProbing = true;
+        return true;
+    }
+
+    private synchronized void onCallSucceeded() {
+        // Any response other than a transient failure shows the API is up
+        reset();
+    }
+
+    private synchronized void onCallFailed(long retryAfter) {
+        mFailures++;
+        if (mState == State.HALF_OPEN || mFailures >= mFailureThreshold) {
+            mState = State.OPEN;
+            mOpenUntil = now() + Math.max(mOpenDuration, retryAfter);
+            mProbing = false;
+        } else if (retryAfter > 0) {
+            // The API asks all calls to wait, not only the failed one
+            mState = State.OPEN;
+            mOpenUntil = now() + retryAfter;
+        }
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.macroyau.thingspeakandroid;
+
+import java.util.Arrays;
+
+/***
+ * Downsampling of time series to a bounded number of points for charting, keeping their visual shape. Both algorithms select a subset of
+ * the original points rather than averaging them, so peaks keep their exact values and dates, and the first and last points are always
+ * kept.
+ *
+ * @author Macro Yau
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    /***
+     * Select points with the Largest-Triangle-Three-Buckets algorithm: the points are split into buckets of equal count, and from each bucket
+     * the point forming the largest triangle with the point selected from the previous bucket and the average of the next bucket is kept.
+     *
+     * @param x The dates of all points.
+     * @param y The values of all points.
+     * @param indices The indices of the points to downsample, in ascending order, e.g. those with a value.
+     * @param count The number of indices.
+     * @param threshold The maximum number of points to keep, at least 3.
+     * @return The indices of the kept points in ascending order.
+     */
+    public static int[] largestTriangleThreeBuckets(long[] x, double[] y, int[] indices, int count, int threshold) {
+        if (threshold < 3 || count <= threshold)
+            return Arrays.copyOf(indices, count);
+
+        int[] selected = new int[threshold];
+        int selectedCount = 0;
+        selected[selectedCount++] = indices[0];
+
+        // The first and last points are kept, the others are split into threshold - 2 buckets
+        final double bucketSize = (double) (count - 2) / (threshold - 2);
+        int a = 0;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+
+            // Average of the next bucket, or the last point for the last bucket
+            int nextStart = end;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, count);
+            double averageX = 0, averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x[indices[i]];
+                averageY += y[indices[i]];
+            }
+            int nextCount = nextEnd - nextStart;
+            averageX /= nextCount;
+            averageY /= nextCount;
+
+            double ax = x[indices[a]], ay = y[indices[a]];
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((ax - averageX) * (y[indices[i]] - ay) - (ax - x[indices[i]]) * (averageY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+
+            selected[selectedCount++] = indices[maxIndex];
+            a = maxIndex;
+        }
+
+        selected[selectedCount++] = indices[count - 1];
+        return Arrays.copyOf(selected, selectedCount);
+    }
+
+    /***
+     * Select the minimum and maximum points of buckets of equal count, in their original order. Unlike Largest-Triangle-Three-Buckets, every
+     * local extreme within a bucket is kept, at the cost of a more jagged line.
+     *
+     * @param y The values of all points.
+     * @param indices The indices of the points to downsample, in ascending order, e.g. those with a value.
+     * @param count The number of indices.
+     * @param threshold The maximum number of points to keep, at least 4.
+     * @return The indices of the kept points in ascending order.
+     */
+    public static int[] minMax(double[] y, int[] indices, int count, int threshold) {
+        if (threshold < 4 || count <= threshold)
+            return Arrays.copyOf(indices, count);
+
+        int[] selected = new int[threshold];
+        int selectedCount = 0;
+        selected[selectedCount++] = indices[0];
+
+        final int buckets = (threshold - 2) / 2;
+        final double bucketSize = (double) (count - 2) / buckets;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+
+            int min = start, max = start;
+            for (int i = start + 1; i < end; i++) {
+                if (y[indices[i]] < y[indices[min]])
+                    min = i;
+                else if (y[indices[i]] > y[indices[max]])
+                    max = i;
+            }
+
+            selected[selectedCount++] = indices[Math.min(min, max)];
+            if (min != max)
+                selected[selectedCount++] = indices[Math.max(min, max)];
+        }
+
+        selected[selectedCount++] = indices[count - 1];
+        return Arrays.copyOf(selected, selectedCount);
+    }
+
+}
@@ -0,0 +1,268 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/***
+ * Aggregation of feed entries already retrieved into windows of any duration, e.g. to switch a chart from 10-minute averages to hourly
+ * medians without a request with another timescale. All fields are aggregated in a single pass over the columns, and missing values are
+ * ignored. Windows without any entry are omitted, as with the timescales of the ThingSpeak API.
+ *
+ * @author Macro Yau
+ */
+public final class FeedAggregator {
+
+    /***
+     * The first value of each window, as the timescales of the ThingSpeak API.
+     */
+    public static final int FIRST = 0;
+
+    /***
+     * The last value of each window.
+     */
+    public static final int LAST = 1;
+
+    /***
+     * The average of the values of each window.
+     */
+    public static final int AVERAGE = 2;
+
+    /***
+     * The median of the values of each window, i.e. the average of the two middle values for an even number of values.
+     */
+    public static final int MEDIAN = 3;
+
+    /***
+     * The sum of the values of each window.
+     */
+    public static final int SUM = 4;
+
+    /***
+     * The minimum value of each window.
+     */
+    public static final int MIN = 5;
+
+    /***
+     * The maximum value of each window.
+     */
+    public static final int MAX = 6;
+
+    /***
+     * The number of values of each window.
+     */
+    public static final int COUNT = 7;
+
+    private static final long OFFSET_PERIOD = 15 * 60 * 1000L;
+
+    private FeedAggregator() {
+    }
+
+    /***
+     * Return whether the specific value is a valid aggregation function.
+     *
+     * @param function The aggregation function.
+     * @return True if it is one of {@link #FIRST}, {@link #LAST}, {@link #AVERAGE}, {@link #MEDIAN}, {@link #SUM}, {@link #MIN},
+     * {@link #MAX} and {@link #COUNT}.
+     */
+    public static boolean isValidFunction(int function) {
+        return function >= FIRST && function <= COUNT;
+    }
+
+    /***
+     * Aggregate feed entries into windows aligned to multiples of their duration since epoch, i.e. in UTC.
+     *
+     * @param columns The feed entries in chronological order.
+     * @param window The duration of the windows in milliseconds.
+     * @param function The aggregation function.
+     * @return The aggregated entries, dated at the start of their window.
+     * @see #aggregate(com.macroyau.thingspeakandroid.model.FeedColumns, long, int, java.util.TimeZone)
+     */
+    public static FeedColumns aggregate(FeedColumns columns, long window, int function) {
+        return aggregate(columns, window, function, null);
+    }
+
+    /***
+     * Aggregate feed entries into windows aligned in a specific timezone, e.g. so that daily windows start at local midnight. Windows
+     * follow the local time across daylight saving transitions, e.g. the daily window of the day clocks are moved forward lasts 23 hours.
+     * The entry ID of each aggregated entry is the one of the last entry of its window.
+     *
+     * @param columns The feed entries in chronological order.
+     * @param window The duration of the windows in milliseconds.
+     * @param function The aggregation function.
+     * @param timeZone The timezone aligning the windows, or null for UTC.
+     * @return The aggregated entries, dated at the start of their window.
+     * @throws IllegalArgumentException If the duration or the function is not valid.
+     */
+    public static FeedColumns aggregate(FeedColumns columns, long window, int function, TimeZone timeZone) {
+        if (window <= 0)
+            throw new IllegalArgumentException("Invalid window " + window);
+        if (!isValidFunction(function))
+            throw new IllegalArgumentException("Invalid aggregation function " + function);
+
+        final int size = columns.size();
+        final long[] createdAt = columns.getCreatedAtColumn();
+        final long[] entryIds = columns.getEntryIdColumn();
+        final double[][] fields = new double[FeedColumns.FIELD_COUNT][];
+        final double[][] aggregated = new double[FeedColumns.FIELD_COUNT][];
+        for (int f = 0; f < FeedColumns.FIELD_COUNT; f++) {
+            fields[f] = columns.getFieldColumn(f + 1);
+            if (fields[f] != null)
+                aggregated[f] = new double[size];
+        }
+
+        // Running state of the current window per field, with the values kept only for medians
+        final int[] counts = new int[FeedColumns.FIELD_COUNT];
+        final double[] accumulators = new double[FeedColumns.FIELD_COUNT];
+        final double[][] values = function == MEDIAN ? new double[FeedColumns.FIELD_COUNT][] : null;
+
+        final long[] windowStarts = new long[size];
+        final long[] windowEntryIds = new long[size];
+        int windows = 0;
+        long currentStart = 0, currentLocalStart = 0, currentOffset = 0;
+        long offset = 0, offsetPeriod = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            final long date = createdAt[i];
+
+            // Timezone transitions happen at multiples of 15 minutes, so the offset is only looked up once per period
+            if (timeZone != null && date / OFFSET_PERIOD != offsetPeriod) {
+                offsetPeriod = date / OFFSET_PERIOD;
+                offset = timeZone.getOffset(date);
+            }
+            final long local = date + offset;
+            final long localStart = local - floorMod(local, window);
+
+            if (windows == 0 || localStart != currentLocalStart || offset != currentOffset) {
+                // A window starts at its local floor in the offset in effect at that instant, which is not the offset of the entry if a
+                // transition happened in between, e.g. for the daily window of the day clocks are moved forward
+                final long start = timeZone == null ? localStart : localStart - timeZone.getOffset(localStart - offset);
+                currentLocalStart = localStart;
+                currentOffset = offset;
+                if (windows == 0 || start != currentStart) {
+                    if (windows > 0)
+                        flush(aggregated, windows - 1, counts, accumulators, values, function);
+                    currentStart = start;
+                    windowStarts[windows++] = start;
+                }
+            }
+            windowEntryIds[windows - 1] = entryIds[i];
+
+            for (int f = 0; f < FeedColumns.FIELD_COUNT; f++) {
+                if (fields[f] == null || Double.isNaN(fields[f][i]))
+                    continue;
+                accumulate(f, fields[f][i], counts, accumulators, values, function);
+            }
+        }
+        if (windows > 0)
+            flush(aggregated, windows - 1, counts, accumulators, values, function);
+
+        // The arrays may be longer than the number of windows
+        return new FeedColumns(columns.getChannel(), windows, windowStarts, windowEntryIds, aggregated);
+    }
+
+    private static void accumulate(int f, double value, int[] counts, double[] accumulators, double[][] values, int function) {
+        final int count = counts[f]++;
+        switch (function) {
+            case FIRST:
+                if (count == 0)
+                    accumulators[f] = value;
+                break;
+            case LAST:
+                accumulators[f] = value;
+                break;
+            case AVERAGE:
+            case SUM:
+                accumulators[f] = count == 0 ? value : accumulators[f] + value;
+                break;
+            case MIN:
+                accumulators[f] = count == 0 ? value : Math.min(accumulators[f], value);
+                break;
+            case MAX:
+                accumulators[f] = count == 0 ? value : Math.max(accumulators[f], value);
+                break;
+            case MEDIAN:
+                if (values[f] == null)
+                    values[f] = new double[16];
+                else if (count == values[f].length)
+                    values[f] = Arrays.copyOf(values[f], count * 2);
+                values[f][count] = value;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void flush(double[][] aggregated, int index, int[] counts, double[] accumulators, double[][] values, int function) {
+        for (int f = 0; f < FeedColumns.FIELD_COUNT; f++) {
+            if (aggregated[f] == null)
+                continue;
+
+            final int count = counts[f];
+            if (function == COUNT)
+                aggregated[f][index] = count;
+            else if (count == 0)
+                aggregated[f][index] = Double.NaN;
+            else if (function == AVERAGE)
+                aggregated[f][index] = accumulators[f] / count;
+            else if (function == MEDIAN)
+                aggregated[f][index] = median(values[f], count);
+            else
+                aggregated[f][index] = accumulators[f];
+            counts[f] = 0;
+        }
+    }
+
+    /***
+     * Return the median of the first values of an array, reordering them.
+     */
+    private static double median(double[] values, int count) {
+        final int middle = count / 2;
+        double upper = select(values, count, middle);
+        if (count % 2 == 1)
+            return upper;
+
+        // After selection, the lower middle value is the maximum of the values before the middle
+        double lower = values[0];
+        for (int i = 1; i < middle; i++)
+            lower = Math.max(lower, values[i]);
+        return (lower + upper) / 2;
+    }
+
+    /***
+     * Return the k-th smallest of the first values of an array by quickselect, leaving smaller values before index k.
+     */
+    private static double select(double[] values, int count, int k) {
+        int low = 0, high = count - 1;
+        while (low < high) {
+            double pivot = values[(low + high) >>> 1];
+            int i = low, j = high;
+            while (i <= j) {
+                while (values[i] < pivot)
+                    i++;
+                while (values[j] > pivot)
+                    j--;
+                if (i <= j) {
+                    double swap = values[i];
+                    values[i] = values[j];
+                    values[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j)
+                high = j;
+            else if (k >= i)
+                low = i;
+            else
+                break;
+        }
+        return values[k];
+    }
+
+    private static long floorMod(long x, long y) {
+        long mod = x % y;
+        return mod < 0 ? mod + y : mod;
+    }
+
+}
@@ -0,0 +1,256 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/***
+ * Historical backfill of a Channel feed or field feed over an arbitrary time range. The range is split into windows fetched with bounded
+ * parallelism; a window reaching the ThingSpeak API limit of 8000 results is split in half and fetched again. Entries are deduplicated by
+ * entry ID at window edges and delivered to the listener in chronological order as soon as all earlier windows have arrived.
+ *
+ * @author Macro Yau
+ */
+public class FeedBackfill {
+
+    /***
+     * Listener for backfill events.
+     */
+    public interface BackfillListener {
+
+        /***
+         * The next chronological chunk of entries is available.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+         * @param chunk The entries, newer than all entries of previous chunks.
+         */
+        void onBackfillChunk(long channelId, int fieldId, FeedColumns chunk);
+
+        /***
+         * All entries in the time range have been delivered.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+         * @param totalEntries The number of entries delivered.
+         */
+        void onBackfillCompleted(long channelId, int fieldId, long totalEntries);
+
+        /***
+         * The backfill is stopped because a request failed.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+         * @param error The error of the failed request.
+         */
+        void onBackfillFailed(long channelId, int fieldId, RetrofitError error);
+
+    }
+
+    /***
+     * Maximum number of results the ThingSpeak API returns for a single feed request.
+     */
+    public static final int MAX_RESULTS = 8000;
+
+    private static final long DEFAULT_WINDOW_DURATION = 24 * 60 * 60 * 1000L;
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 3;
+    private static final long MIN_WINDOW_DURATION = 1000L;
+
+    private static class Window {
+
+        private final long mStart, mEnd;
+        private boolean mRequested;
+        private FeedColumns mResult;
+
+        private Window(long start, long end) {
+            this.mStart = start;
+            this.mEnd = end;
+        }
+
+    }
+
+    private final ThingSpeakChannel mChannel;
+    private final int mFieldId;
+    private final FeedQuery mQuery;
+    private final long mStart, mEnd;
+    private long mWindowDuration = DEFAULT_WINDOW_DURATION;
+    private int mMaxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+    private BackfillListener mListener;
+
+    private final List<Window> mWindows = new ArrayList<>();
+    private int mOutstanding;
+    private long mLastEntryId = Long.MIN_VALUE;
+    private long mTotalEntries;
+    private boolean mStarted, mCancelled, mFinished;
+
+    /***
+     * Constructor.
+     *
+     * @param channel The Channel to backfill.
+     * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+     * @param start The start date of the time range.
+     * @param end The end date of the time range.
+     */
+    public FeedBackfill(ThingSpeakChannel channel, int fieldId, Date start, Date end) {
+        this.mChannel = channel;
+        this.mFieldId = fieldId;
+        this.mQuery = channel.getFeedQuery();
+        this.mStart = start.getTime();
+        this.mEnd = end.getTime();
+    }
+
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.FeedBackfill.BackfillListener} to use.
+     *
+     * @param listener The listener.
+     */
+    public void setListener(BackfillListener listener) {
+        this.mListener = listener;
+    }
+
+    /***
+     * Set the initial duration of each window. Windows reaching the results limit are split further. The default duration is one day.
+     *
+     * @param millis The duration in milliseconds.
+     */
+    public void setWindowDuration(long millis) {
+        this.mWindowDuration = Math.max(millis, MIN_WINDOW_DURATION);
+    }
+
+    /***
+     * Set the maximum number of concurrent requests. The default is 3. Windows loaded before an earlier window are kept until they can be
+     * delivered and still count towards this limit, so that a slow window does not let loaded windows pile up in memory.
+     *
+     * @param maxConcurrentRequests The maximum number of concurrent requests.
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.mMaxConcurrentRequests = Math.max(maxConcurrentRequests, 1);
+    }
+
+    /***
+     * Start the backfill asynchronously.
+     */
+    public synchronized void start() {
+        if (mStarted)
+            return;
+        mStarted = true;
+
+        for (long start = mStart; start < mEnd; start += mWindowDuration)
+            mWindows.add(new Window(start, Math.min(start + mWindowDuration, mEnd)));
+
+        if (mWindows.isEmpty())
+            finish(null);
+        else
+            requestWindows();
+    }
+
+    /***
+     * Stop the backfill. No more requests are made and no more events are delivered.
+     */
+    public synchronized void cancel() {
+        mCancelled = true;
+    }
+
+    /***
+     * Return whether the backfill is completed, failed or cancelled.
+     *
+     * @return True if no more events will be delivered.
+     */
+    public synchronized boolean isDone() {
+        return mFinished || mCancelled;
+    }
+
+    private void requestWindows() {
+        // Windows are requested in order, so the earliest undelivered window is always among the requested ones
+        for (int i = 0; i < mWindows.size() && mOutstanding < mMaxConcurrentRequests; i++) {
+            Window window = mWindows.get(i);
+            if (!window.mRequested)
+                request(window);
+        }
+    }
+
+    private void request(final Window window) {
+        window.mRequested = true;
+        mOutstanding++;
+
+        Map<String, String> params = mChannel.getRangeRequestParams(mQuery, window.mStart, window.mEnd, MAX_RESULTS);
+        mChannel.loadFeedColumns(mFieldId, params, new Callback<FeedColumns>() {
+            @Override
+            public void success(FeedColumns columns, Response response) {
+                onWindowLoaded(window, columns);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                synchronized (FeedBackfill.this) {
+                    mOutstanding--;
+                    if (!isDone())
+                        finish(error);
+                }
+            }
+        });
+    }
+
+    private synchronized void onWindowLoaded(Window window, FeedColumns columns) {
+        if (isDone())
+            return;
+
+        int index = mWindows.indexOf(window);
+        if (columns.size() >= MAX_RESULTS && window.mEnd - window.mStart > MIN_WINDOW_DURATION) {
+            // The API returns the latest entries of a window, so a full window may have lost its earliest entries
+            long middle = window.mStart + (window.mEnd - window.mStart) / 2;
+            mOutstanding--;
+            mWindows.set(index, new Window(window.mStart, middle));
+            mWindows.add(index + 1, new Window(middle, window.mEnd));
+        } else {
+            // The rollups of the Channel get the history as well, whatever the order the windows arrive in
+            mChannel.updateRollupPyramids(mFieldId, mQuery, columns);
+            window.mResult = columns;
+            deliverCompletedWindows();
+        }
+
+        if (mWindows.isEmpty())
+            finish(null);
+        else if (!isDone())
+            requestWindows();
+    }
+
+    private void deliverCompletedWindows() {
+        while (!mWindows.isEmpty() && mWindows.get(0).mResult != null) {
+            FeedColumns result = mWindows.remove(0).mResult;
+            mOutstanding--;
+
+            // Window bounds are inclusive, so drop entries already delivered by the previous window
+            int skip = 0;
+            while (skip < result.size() && result.getEntryId(skip) <= mLastEntryId)
+                skip++;
+            if (skip == result.size())
+                continue;
+
+            FeedColumns chunk = skip == 0 ? result : result.slice(skip, result.size());
+            mLastEntryId = chunk.getEntryId(chunk.size() - 1);
+            mTotalEntries += chunk.size();
+            if (mListener != null)
+                mListener.onBackfillChunk(mChannel.getChannelId(), mFieldId, chunk);
+        }
+    }
+
+    private void finish(RetrofitError error) {
+        mFinished = true;
+        if (mListener == null)
+            return;
+
+        if (error == null)
+            mListener.onBackfillCompleted(mChannel.getChannelId(), mFieldId, mTotalEntries);
+        else
+            mListener.onBackfillFailed(mChannel.getChannelId(), mFieldId, error);
+    }
+
+}
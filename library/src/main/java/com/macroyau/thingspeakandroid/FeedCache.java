@@ -0,0 +1,423 @@
+package com.macroyau.thingspeakandroid;
+
+import com.google.gson.Gson;
+import com.macroyau.thingspeakandroid.model.Channel;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/***
+ * Persistent on-disk cache of Channel feeds, keyed by Channel and field. Each feed is stored as append-only segment files of fixed-width
+ * binary records, which are read in chunks into a single reused buffer. Only one instance should be used per directory.
+ *
+ * @author Macro Yau
+ */
+public class FeedCache {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHANNEL_FILE = "channel.json";
+    private static final String CHARSET = "UTF-8";
+    private static final int SEGMENT_CAPACITY = 4096;
+    private static final int DEFAULT_MAX_ENTRIES = 8000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File mDirectory;
+    private final int mMaxEntries;
+    private final Gson mGson = ThingSpeakClient.createGson();
+    private final Map<String, Store> mStores = new HashMap<>();
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /***
+     * Constructor keeping up to 8000 entries per feed.
+     *
+     * @param directory The directory in which the cache is stored, e.g. Context.getCacheDir().
+     */
+    public FeedCache(File directory) {
+        this(directory, DEFAULT_MAX_ENTRIES);
+    }
+
+    /***
+     * Constructor.
+     *
+     * @param directory The directory in which the cache is stored, e.g. Context.getCacheDir().
+     * @param maxEntries The number of most recent entries to keep per feed.
+     */
+    public FeedCache(File directory, int maxEntries) {
+        this.mDirectory = directory;
+        this.mMaxEntries = maxEntries;
+    }
+
+    /***
+     * Return the directory in which the cache is stored.
+     *
+     * @return The directory.
+     */
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /***
+     * Read the most recent cached entries of a specific feed.
+     *
+     * @param channelId The ID of the Channel.
+     * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+     * @param maxEntries The maximum number of entries to read.
+     * @return The cached entries, or null if nothing is cached.
+     * @throws IOException If the cache cannot be read.
+     */
+    public synchronized FeedColumns read(long channelId, int fieldId, int maxEntries) throws IOException {
+        return getStore(channelId, fieldId).read(maxEntries);
+    }
+
+    /***
+     * Append entries to a specific feed. Entries not newer than the last cached entry are ignored.
+     *
+     * @param channelId The ID of the Channel.
+     * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+     * @param columns The entries to append.
+     * @throws IOException If the cache cannot be written.
+     */
+    public synchronized void append(long channelId, int fieldId, FeedColumns columns) throws IOException {
+        if (columns.getChannel() != null)
+            writeChannel(channelId, columns.getChannel());
+        getStore(channelId, fieldId).append(columns);
+    }
+
+    /***
+     * Return the ID of the last cached entry of a specific feed.
+     *
+     * @param channelId The ID of the Channel.
+     * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+     * @return The entry ID, or -1 if nothing is cached.
+     * @throws IOException If the cache cannot be read.
+     */
+    public synchronized long getLastEntryId(long channelId, int fieldId) throws IOException {
+        return getStore(channelId, fieldId).getLastEntryId();
+    }
+
+    /***
+     * Delete all cached feeds of a specific Channel.
+     *
+     * @param channelId The ID of the Channel.
+     */
+    public synchronized void clear(long channelId) {
+        File channelDirectory = getChannelDirectory(channelId);
+        File[] fieldDirectories = channelDirectory.listFiles();
+        if (fieldDirectories != null) {
+            for (File file : fieldDirectories) {
+                File[] segments = file.listFiles();
+                if (segments != null) {
+                    for (File segment : segments)
+                        segment.delete();
+                }
+                file.delete();
+            }
+        }
+        channelDirectory.delete();
+
+        List<String> keys = new ArrayList<>();
+        for (String key : mStores.keySet()) {
+            if (key.startsWith(channelId + "/"))
+                keys.add(key);
+        }
+        mStores.keySet().removeAll(keys);
+    }
+
+    /***
+     * Delete a specific cached feed of a Channel.
+     *
+     * @param channelId The ID of the Channel.
+     * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+     */
+    public synchronized void clear(long channelId, int fieldId) {
+        File fieldDirectory = new File(getChannelDirectory(channelId), Integer.toString(fieldId));
+        File[] segments = fieldDirectory.listFiles();
+        if (segments != null) {
+            for (File segment : segments)
+                segment.delete();
+        }
+        fieldDirectory.delete();
+
+        mStores.remove(channelId + "/" + fieldId);
+    }
+
+    private File getChannelDirectory(long channelId) {
+        return new File(mDirectory, Long.toString(channelId));
+    }
+
+    private Store getStore(long channelId, int fieldId) throws IOException {
+        String key = channelId + "/" + fieldId;
+        Store store = mStores.get(key);
+        if (store == null) {
+            store = new Store(channelId, new File(getChannelDirectory(channelId), Integer.toString(fieldId)), fieldId);
+            mStores.put(key, store);
+        }
+        return store;
+    }
+
+    private Channel readChannel(long channelId) {
+        File file = new File(getChannelDirectory(channelId), CHANNEL_FILE);
+        if (!file.exists())
+            return null;
+
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), CHARSET);
+            return mGson.fromJson(reader, Channel.class);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private void writeChannel(long channelId, Channel channel) throws IOException {
+        File directory = getChannelDirectory(channelId);
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+
+        File temp = new File(directory, CHANNEL_FILE + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temp), CHARSET);
+        try {
+            mGson.toJson(channel, writer);
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(new File(directory, CHANNEL_FILE)))
+            throw new IOException("Cannot write " + CHANNEL_FILE);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /***
+     * Segment files of a single feed. A record consists of the date of creation and the entry ID as longs, followed by one double per field
+     * (eight for the whole Channel feed, one for a field feed).
+     */
+    private class Store {
+
+        private final long mChannelId;
+        private final File mDirectory;
+        private final int mFieldId;
+        private final int mValueCount;
+        private final int mRecordSize;
+
+        private List<File> mSegments;
+        private List<Integer> mSegmentSizes;
+        private long mLastEntryId = -1;
+
+        private Store(long channelId, File directory, int fieldId) throws IOException {
+            this.mChannelId = channelId;
+            this.mDirectory = directory;
+            this.mFieldId = fieldId;
+            this.mValueCount = fieldId == ThingSpeakChannel.ALL_FIELDS ? FeedColumns.FIELD_COUNT : 1;
+            this.mRecordSize = 16 + 8 * mValueCount;
+            open();
+        }
+
+        private void open() throws IOException {
+            mSegments = new ArrayList<>();
+            mSegmentSizes = new ArrayList<>();
+
+            File[] files = mDirectory.listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.endsWith(SEGMENT_SUFFIX);
+                }
+            });
+            if (files == null)
+                return;
+
+            // Segment names are zero-padded sequence numbers, so lexical order is append order
+            Arrays.sort(files);
+            for (File file : files) {
+                mSegments.add(file);
+                mSegmentSizes.add((int) (file.length() / mRecordSize));
+            }
+
+            int last = mSegments.size() - 1;
+            while (last >= 0 && mSegmentSizes.get(last) == 0)
+                last--;
+            if (last >= 0) {
+                ByteBuffer buffer = readRecords(mSegments.get(last), mSegmentSizes.get(last) - 1, 1);
+                mLastEntryId = buffer.getLong(8);
+            }
+        }
+
+        private long getLastEntryId() {
+            return mLastEntryId;
+        }
+
+        private FeedColumns read(int maxEntries) throws IOException {
+            int total = 0;
+            for (int size : mSegmentSizes)
+                total += size;
+            if (total == 0)
+                return null;
+
+            int count = Math.min(total, maxEntries);
+            int skip = total - count;
+            long[] createdAt = new long[count];
+            long[] entryIds = new long[count];
+            double[][] fields = new double[FeedColumns.FIELD_COUNT][];
+
+            int index = 0;
+            for (int s = 0; s < mSegments.size(); s++) {
+                int segmentSize = mSegmentSizes.get(s);
+                if (skip >= segmentSize) {
+                    skip -= segmentSize;
+                    continue;
+                }
+
+                // Read as many whole records as fit in the buffer at a time
+                final int chunk = BUFFER_SIZE / mRecordSize;
+                for (int first = skip; first < segmentSize; first += chunk) {
+                    int records = Math.min(chunk, segmentSize - first);
+                    ByteBuffer buffer = readRecords(mSegments.get(s), first, records);
+                    for (int r = 0; r < records; r++) {
+                        int offset = r * mRecordSize;
+                        createdAt[index] = buffer.getLong(offset);
+                        entryIds[index] = buffer.getLong(offset + 8);
+                        for (int v = 0; v < mValueCount; v++) {
+                            double value = buffer.getDouble(offset + 16 + v * 8);
+                            if (Double.isNaN(value))
+                                continue;
+                            int f = mValueCount == 1 ? mFieldId - 1 : v;
+                            if (fields[f] == null)
+                                fields[f] = FeedColumns.newMissingColumn(count);
+                            fields[f][index] = value;
+                        }
+                        index++;
+                    }
+                }
+                skip = 0;
+            }
+
+            return new FeedColumns(readChannel(mChannelId), count, createdAt, entryIds, fields);
+        }
+
+        private void append(FeedColumns columns) throws IOException {
+            int start = 0;
+            while (start < columns.size() && columns.getEntryId(start) <= mLastEntryId)
+                start++;
+            if (start == columns.size())
+                return;
+
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs())
+                throw new IOException("Cannot create " + mDirectory);
+
+            int index = start;
+            while (index < columns.size()) {
+                int last = mSegments.size() - 1;
+                if (last < 0 || mSegmentSizes.get(last) >= SEGMENT_CAPACITY) {
+                    mSegments.add(new File(mDirectory, String.format(Locale.US, "%020d%s", nextSequence(), SEGMENT_SUFFIX)));
+                    mSegmentSizes.add(0);
+                    last++;
+                }
+
+                File segment = mSegments.get(last);
+                int segmentSize = mSegmentSizes.get(last);
+                int count = Math.min(columns.size() - index, SEGMENT_CAPACITY - segmentSize);
+
+                // Drop any partial record left behind by an interrupted write
+                RandomAccessFile file = new RandomAccessFile(segment, "rw");
+                try {
+                    file.setLength((long) segmentSize * mRecordSize);
+                } finally {
+                    file.close();
+                }
+
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment, true)));
+                try {
+                    for (int i = index; i < index + count; i++) {
+                        out.writeLong(columns.getCreatedAt(i));
+                        out.writeLong(columns.getEntryId(i));
+                        if (mValueCount == 1) {
+                            out.writeDouble(columns.getValue(mFieldId, i));
+                        } else {
+                            for (int f = 1; f <= FeedColumns.FIELD_COUNT; f++)
+                                out.writeDouble(columns.getValue(f, i));
+                        }
+                    }
+                } finally {
+                    out.close();
+                }
+
+                mSegmentSizes.set(last, segmentSize + count);
+                index += count;
+            }
+
+            mLastEntryId = columns.getEntryId(columns.size() - 1);
+            trim();
+        }
+
+        private long nextSequence() {
+            if (mSegments.isEmpty())
+                return 0;
+            String name = mSegments.get(mSegments.size() - 1).getName();
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())) + 1;
+        }
+
+        private void trim() {
+            int total = 0;
+            for (int size : mSegmentSizes)
+                total += size;
+
+            while (mSegments.size() > 1 && total - mSegmentSizes.get(0) >= mMaxEntries) {
+                total -= mSegmentSizes.remove(0);
+                mSegments.remove(0).delete();
+            }
+        }
+
+        /***
+         * Read consecutive records of a segment into the shared buffer, which holds them from position 0 until the next read.
+         */
+        private ByteBuffer readRecords(File segment, int first, int records) throws IOException {
+            mBuffer.clear();
+            mBuffer.limit(records * mRecordSize);
+
+            RandomAccessFile file = new RandomAccessFile(segment, "r");
+            try {
+                FileChannel channel = file.getChannel();
+                long position = (long) first * mRecordSize;
+                while (mBuffer.hasRemaining()) {
+                    int read = channel.read(mBuffer, position);
+                    if (read < 0)
+                        throw new IOException("Truncated segment " + segment);
+                    position += read;
+                }
+            } finally {
+                file.close();
+            }
+            return mBuffer;
+        }
+
+    }
+
+}
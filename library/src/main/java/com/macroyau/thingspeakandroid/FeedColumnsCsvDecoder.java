@@ -0,0 +1,324 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/***
+ * Streaming decoder turning a ThingSpeak Channel feed or field feed in CSV format into {@link com.macroyau.thingspeakandroid.model.FeedColumns}.
+ * The response is tokenized in place in its byte buffer: timestamps, entry IDs and values are parsed straight from the bytes into the
+ * primitive columns, without creating a string per line or per cell. CSV feeds carry no Channel information, so the decoded columns have
+ * none.
+ *
+ * @author Macro Yau
+ */
+public class FeedColumnsCsvDecoder {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int COLUMN_IGNORED = -1;
+    private static final int COLUMN_CREATED_AT = -2;
+    private static final int COLUMN_ENTRY_ID = -3;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final boolean[] mProjection = new boolean[FeedColumns.FIELD_COUNT];
+
+    /***
+     * Constructor for a decoder keeping all fields.
+     */
+    public FeedColumnsCsvDecoder() {
+        this(null);
+    }
+
+    /***
+     * Constructor for a decoder keeping only the specific fields.
+     *
+     * @param fieldIds The IDs of fields to keep, or null to keep all fields.
+     */
+    public FeedColumnsCsvDecoder(int[] fieldIds) {
+        if (fieldIds == null) {
+            Arrays.fill(mProjection, true);
+        } else {
+            for (int fieldId : fieldIds) {
+                if (fieldId >= 1 && fieldId <= FeedColumns.FIELD_COUNT)
+                    mProjection[fieldId - 1] = true;
+            }
+        }
+    }
+
+    /***
+     * Decode a Channel feed document in CSV format, starting with a header line naming the columns, e.g. created_at,entry_id,field1.
+     *
+     * @param in The stream of the document.
+     * @return The decoded feed entries.
+     * @throws IOException If the document cannot be read or is malformed.
+     */
+    public FeedColumns decode(InputStream in) throws IOException {
+        Tokenizer tokenizer = new Tokenizer(in);
+        FeedColumnsDecoder.Columns columns = new FeedColumnsDecoder.Columns();
+
+        int[] roles = null;
+        while (tokenizer.nextRecord()) {
+            if (tokenizer.isBlankRecord())
+                continue;
+            if (roles == null) {
+                roles = readHeader(tokenizer);
+                continue;
+            }
+
+            int index = columns.append();
+            for (int column = 0; tokenizer.nextCell(); column++) {
+                int role = column < roles.length ? roles[column] : COLUMN_IGNORED;
+                if (role == COLUMN_IGNORED || tokenizer.isEmptyCell())
+                    continue;
+
+                if (role == COLUMN_CREATED_AT) {
+                    try {
+                        columns.mCreatedAt[index] = TimestampCodec.parse(tokenizer, tokenizer.mCellStart, tokenizer.mCellEnd);
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException(e.getMessage(), e);
+                    }
+                } else if (role == COLUMN_ENTRY_ID) {
+                    columns.mEntryIds[index] = tokenizer.parseLong();
+                } else {
+                    columns.setValue(role, index, tokenizer.parseDouble());
+                }
+            }
+        }
+
+        return new FeedColumns(null, columns.mSize, columns.mCreatedAt, columns.mEntryIds, columns.mFields);
+    }
+
+    private int[] readHeader(Tokenizer tokenizer) {
+        int[] roles = new int[4 + FeedColumns.FIELD_COUNT];
+        int count = 0;
+        while (tokenizer.nextCell()) {
+            if (count == roles.length)
+                roles = Arrays.copyOf(roles, count * 2);
+
+            String name = tokenizer.toString();
+            int role = COLUMN_IGNORED;
+            if ("created_at".equals(name)) {
+                role = COLUMN_CREATED_AT;
+            } else if ("entry_id".equals(name)) {
+                role = COLUMN_ENTRY_ID;
+            } else if (name.length() == 6 && name.startsWith("field")) {
+                int fieldId = name.charAt(5) - '0';
+                if (fieldId >= 1 && fieldId <= FeedColumns.FIELD_COUNT && mProjection[fieldId - 1])
+                    role = fieldId;
+            }
+            roles[count++] = role;
+        }
+        return Arrays.copyOf(roles, count);
+    }
+
+    /***
+     * Tokenizer of CSV records and cells over a byte buffer refilled from the stream. Quoted cells may contain commas, line breaks and
+     * doubled quotes. As a character sequence, it exposes the current cell as ASCII, so that it can be parsed without being copied.
+     */
+    private static class Tokenizer implements CharSequence {
+
+        private final InputStream mIn;
+        private byte[] mBuffer = new byte[BUFFER_SIZE];
+        private int mLength;
+        private boolean mEof;
+
+        private int mRecordStart, mRecordEnd, mNextRecord;
+        private int mCursor;
+        private int mCellStart, mCellEnd;
+
+        private Tokenizer(InputStream in) {
+            this.mIn = in;
+        }
+
+        private boolean nextRecord() throws IOException {
+            int scanFrom = mNextRecord;
+            while (true) {
+                boolean quoted = false;
+                for (int i = scanFrom; i < mLength; i++) {
+                    byte b = mBuffer[i];
+                    if (b == '"') {
+                        quoted = !quoted;
+                    } else if (b == '\n' && !quoted) {
+                        mRecordStart = mNextRecord;
+                        mRecordEnd = i > mRecordStart && mBuffer[i - 1] == '\r' ? i - 1 : i;
+                        mNextRecord = i + 1;
+                        mCursor = mRecordStart;
+                        return true;
+                    }
+                }
+
+                if (mEof) {
+                    if (mNextRecord >= mLength)
+                        return false;
+                    mRecordStart = mNextRecord;
+                    mRecordEnd = mLength > mRecordStart && mBuffer[mLength - 1] == '\r' ? mLength - 1 : mLength;
+                    mNextRecord = mLength;
+                    mCursor = mRecordStart;
+                    return true;
+                }
+
+                // Keep the partial record at the start of the buffer and rescan it once more bytes are read
+                int partial = mLength - mNextRecord;
+                if (mNextRecord > 0) {
+                    System.arraycopy(mBuffer, mNextRecord, mBuffer, 0, partial);
+                } else if (partial == mBuffer.length) {
+                    mBuffer = Arrays.copyOf(mBuffer, mBuffer.length * 2);
+                }
+                mNextRecord = 0;
+                mLength = partial;
+                scanFrom = 0;
+
+                int read = mIn.read(mBuffer, mLength, mBuffer.length - mLength);
+                if (read == -1)
+                    mEof = true;
+                else
+                    mLength += read;
+            }
+        }
+
+        private boolean isBlankRecord() {
+            return mRecordStart == mRecordEnd;
+        }
+
+        private boolean nextCell() {
+            if (mCursor > mRecordEnd)
+                return false;
+
+            if (mCursor < mRecordEnd && mBuffer[mCursor] == '"') {
+                // Quoted cells are only ever ignored or parsed as text, so the quotes are simply stripped
+                int i = mCursor + 1;
+                while (i < mRecordEnd && !(mBuffer[i] == '"' && (i + 1 == mRecordEnd || mBuffer[i + 1] != '"')))
+                    i += mBuffer[i] == '"' ? 2 : 1;
+                mCellStart = mCursor + 1;
+                mCellEnd = Math.min(i, mRecordEnd);
+                i++;
+                while (i < mRecordEnd && mBuffer[i] != ',')
+                    i++;
+                mCursor = i + 1;
+                return true;
+            }
+
+            int i = mCursor;
+            while (i < mRecordEnd && mBuffer[i] != ',')
+                i++;
+            mCellStart = mCursor;
+            mCellEnd = i;
+            mCursor = i + 1;
+            return true;
+        }
+
+        private boolean isEmptyCell() {
+            return mCellStart == mCellEnd;
+        }
+
+        private long parseLong() throws IOException {
+            long value = 0;
+            for (int i = mCellStart; i < mCellEnd; i++) {
+                int digit = mBuffer[i] - '0';
+                if (digit < 0 || digit > 9)
+                    throw new IOException("Malformed entry_id: " + toString());
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        /***
+         * Parse the current cell as a decimal number. Numbers with up to 15 significant digits and a small exponent, i.e. all sensor
+         * readings in practice, are computed exactly from an integer mantissa; others fall back to {@link Double#parseDouble(String)}.
+         */
+        private double parseDouble() {
+            int i = mCellStart;
+            boolean negative = false;
+            if (i < mCellEnd && (mBuffer[i] == '-' || mBuffer[i] == '+'))
+                negative = mBuffer[i++] == '-';
+
+            long mantissa = 0;
+            int significantDigits = 0;
+            int exponent = 0;
+            boolean anyDigit = false;
+            boolean fraction = false;
+            for (; i < mCellEnd; i++) {
+                byte b = mBuffer[i];
+                if (b == '.' && !fraction) {
+                    fraction = true;
+                    continue;
+                }
+                int digit = b - '0';
+                if (digit < 0 || digit > 9)
+                    break;
+
+                anyDigit = true;
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + digit;
+                    if (mantissa != 0)
+                        significantDigits++;
+                    if (fraction)
+                        exponent--;
+                } else if (!fraction) {
+                    exponent++;
+                }
+            }
+
+            if (i < mCellEnd && (mBuffer[i] == 'e' || mBuffer[i] == 'E') && anyDigit) {
+                i++;
+                boolean negativeExponent = false;
+                if (i < mCellEnd && (mBuffer[i] == '-' || mBuffer[i] == '+'))
+                    negativeExponent = mBuffer[i++] == '-';
+                int value = 0;
+                int start = i;
+                while (i < mCellEnd && mBuffer[i] >= '0' && mBuffer[i] <= '9' && value < 10000)
+                    value = value * 10 + (mBuffer[i++] - '0');
+                if (i == start)
+                    return parseSlowly();
+                exponent += negativeExponent ? -value : value;
+            }
+
+            if (!anyDigit || i != mCellEnd)
+                return parseSlowly();
+            if (mantissa >= MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22)
+                return parseSlowly();
+
+            double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+
+        private double parseSlowly() {
+            try {
+                return Double.parseDouble(toString().trim());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        @Override
+        public int length() {
+            return mCellEnd;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (mBuffer[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(mBuffer, start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[mCellEnd - mCellStart];
+            for (int i = 0; i < chars.length; i++)
+                chars[i] = (char) (mBuffer[mCellStart + i] & 0xFF);
+            return new String(chars);
+        }
+
+    }
+
+}
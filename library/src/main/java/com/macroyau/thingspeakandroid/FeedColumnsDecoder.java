@@ -0,0 +1,171 @@
+package com.macroyau.thingspeakandroid;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.macroyau.thingspeakandroid.model.Channel;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/***
+ * Streaming decoder turning a ThingSpeak Channel feed or field feed JSON document into {@link com.macroyau.thingspeakandroid.model.FeedColumns}
+ * in a single pass, without building {@link com.macroyau.thingspeakandroid.model.Feed} objects. Fields outside the projection are skipped
+ * without being read into strings.
+ *
+ * @author Macro Yau
+ */
+public class FeedColumnsDecoder {
+
+    private static final int INITIAL_CAPACITY = 128;
+
+    private final Gson mGson;
+    private final boolean[] mProjection = new boolean[FeedColumns.FIELD_COUNT];
+
+    /***
+     * Constructor for a decoder keeping all fields.
+     *
+     * @param gson The Gson instance used to decode the Channel information.
+     */
+    public FeedColumnsDecoder(Gson gson) {
+        this(gson, null);
+    }
+
+    /***
+     * Constructor for a decoder keeping only the specific fields.
+     *
+     * @param gson The Gson instance used to decode the Channel information.
+     * @param fieldIds The IDs of fields to keep, or null to keep all fields.
+     */
+    public FeedColumnsDecoder(Gson gson, int[] fieldIds) {
+        this.mGson = gson;
+
+        if (fieldIds == null) {
+            Arrays.fill(mProjection, true);
+        } else {
+            for (int fieldId : fieldIds) {
+                if (fieldId >= 1 && fieldId <= FeedColumns.FIELD_COUNT)
+                    mProjection[fieldId - 1] = true;
+            }
+        }
+    }
+
+    /***
+     * Decode a Channel feed document.
+     *
+     * @param reader The reader positioned at the start of the document.
+     * @return The decoded feed entries.
+     * @throws IOException If the document cannot be read or is malformed.
+     */
+    public FeedColumns decode(JsonReader reader) throws IOException {
+        Channel channel = null;
+        Columns columns = new Columns();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("channel".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                channel = mGson.fromJson(reader, Channel.class);
+            } else if ("feeds".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext())
+                    readEntry(reader, columns);
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new FeedColumns(channel, columns.mSize, columns.mCreatedAt, columns.mEntryIds, columns.mFields);
+    }
+
+    private void readEntry(JsonReader reader, Columns columns) throws IOException {
+        int index = columns.append();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            int fieldId = parseFieldId(name);
+            if (fieldId != -1) {
+                if (mProjection[fieldId - 1])
+                    columns.setValue(fieldId, index, readValue(reader));
+                else
+                    reader.skipValue();
+            } else if ("created_at".equals(name) && reader.peek() == JsonToken.STRING) {
+                String createdAt = reader.nextString();
+                try {
+                    columns.mCreatedAt[index] = TimestampCodec.parse(createdAt);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Malformed created_at: " + createdAt, e);
+                }
+            } else if ("entry_id".equals(name) && reader.peek() == JsonToken.NUMBER) {
+                columns.mEntryIds[index] = reader.nextLong();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static int parseFieldId(String name) {
+        if (name.length() == 6 && name.startsWith("field")) {
+            int fieldId = name.charAt(5) - '0';
+            if (fieldId >= 1 && fieldId <= FeedColumns.FIELD_COUNT)
+                return fieldId;
+        }
+        return -1;
+    }
+
+    private static double readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                try {
+                    return Double.parseDouble(reader.nextString());
+                } catch (NumberFormatException e) {
+                    return Double.NaN;
+                }
+            default:
+                reader.skipValue();
+                return Double.NaN;
+        }
+    }
+
+    /***
+     * Growable primitive columns filled by the decoders.
+     */
+    static class Columns {
+
+        int mSize;
+        long[] mCreatedAt = new long[INITIAL_CAPACITY];
+        long[] mEntryIds = new long[INITIAL_CAPACITY];
+        final double[][] mFields = new double[FeedColumns.FIELD_COUNT][];
+
+        int append() {
+            if (mSize == mCreatedAt.length) {
+                int capacity = mSize * 2;
+                mCreatedAt = Arrays.copyOf(mCreatedAt, capacity);
+                mEntryIds = Arrays.copyOf(mEntryIds, capacity);
+                for (int f = 0; f < mFields.length; f++) {
+                    if (mFields[f] != null) {
+                        mFields[f] = Arrays.copyOf(mFields[f], capacity);
+                        Arrays.fill(mFields[f], mSize, capacity, Double.NaN);
+                    }
+                }
+            }
+            return mSize++;
+        }
+
+        void setValue(int fieldId, int index, double value) {
+            if (Double.isNaN(value))
+                return;
+            if (mFields[fieldId - 1] == null)
+                mFields[fieldId - 1] = FeedColumns.newMissingColumn(mCreatedAt.length);
+            mFields[fieldId - 1][index] = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,289 @@
+package com.macroyau.thingspeakandroid;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/***
+ * Immutable query of Channel feed entries, i.e. the number of entries, the date range, the timescale and the timezone of a feed request.
+ * The request parameters and cache key are computed once when the query is built, so that a query can be shared between threads and
+ * passed to any number of concurrent requests of a {@link com.macroyau.thingspeakandroid.ThingSpeakChannel}.
+ *
+ * @author Macro Yau
+ */
+public final class FeedQuery {
+
+    /***
+     * Builder of {@link com.macroyau.thingspeakandroid.FeedQuery} instances.
+     */
+    public static final class Builder {
+
+        private int mResults = DEFAULT_RESULTS;
+        private int mDays = -1;
+        private long mStart = -1, mEnd = -1;
+        private int mTimescale = -1;
+        private String mTimezone;
+
+        /***
+         * Constructor for a query of the latest 100 entries.
+         */
+        public Builder() {
+        }
+
+        private Builder(FeedQuery query) {
+            this.mResults = query.mResults;
+            this.mDays = query.mDays;
+            this.mStart = query.mStart;
+            this.mEnd = query.mEnd;
+            this.mTimescale = query.mTimescale;
+            this.mTimezone = query.mTimezone;
+        }
+
+        /***
+         * Set the number of feed entries to be retrieved.
+         *
+         * @param results The number of entries.
+         * @return This builder.
+         */
+        public Builder setResults(int results) {
+            this.mResults = results;
+            return this;
+        }
+
+        /***
+         * Set the number of 24-hour periods before now to include in feed entries.
+         *
+         * @param days The number of 24-hour periods before now, or -1 for no limit.
+         * @return This builder.
+         */
+        public Builder setDays(int days) {
+            this.mDays = days;
+            return this;
+        }
+
+        /***
+         * Set the start date of feed entries.
+         *
+         * @param start The start date, or null for no limit.
+         * @return This builder.
+         */
+        public Builder setStartDate(Date start) {
+            this.mStart = start == null ? -1 : start.getTime();
+            return this;
+        }
+
+        /***
+         * Set the end date of feed entries.
+         *
+         * @param end The end date, or null for no limit.
+         * @return This builder.
+         */
+        public Builder setEndDate(Date end) {
+            this.mEnd = end == null ? -1 : end.getTime();
+            return this;
+        }
+
+        /***
+         * Set the timescale of feed entries, i.e. get first value in the specific many minutes. Valid values include 10, 15, 20, 30, 60, 240,
+         * 720, 1440, 9999 (daily).
+         *
+         * @param timescale A valid timescale value, or -1 for none.
+         * @return This builder.
+         * @throws IllegalArgumentException If the timescale is not valid.
+         */
+        public Builder setTimescale(int timescale) {
+            if (timescale != -1 && !isValidTimescale(timescale))
+                throw new IllegalArgumentException("Invalid timescale " + timescale);
+            this.mTimescale = timescale;
+            return this;
+        }
+
+        /***
+         * Set the timezone of feed entries.
+         *
+         * @param timezone The identifier of the timezone, or null for the default one of the Channel.
+         * @return This builder.
+         */
+        public Builder setTimezone(String timezone) {
+            this.mTimezone = timezone;
+            return this;
+        }
+
+        /***
+         * Build the query.
+         *
+         * @return The query.
+         */
+        public FeedQuery build() {
+            return new FeedQuery(this);
+        }
+
+    }
+
+    private static final int DEFAULT_RESULTS = 100;
+
+    /***
+     * Query of the latest 100 entries, the default of a {@link com.macroyau.thingspeakandroid.ThingSpeakChannel}.
+     */
+    public static final FeedQuery LATEST = new Builder().build();
+
+    private final int mResults;
+    private final int mDays;
+    private final long mStart, mEnd;
+    private final int mTimescale;
+    private final String mTimezone;
+    private final Map<String, String> mParams;
+    private final String mKey;
+
+    private FeedQuery(Builder builder) {
+        this.mResults = builder.mResults;
+        this.mDays = builder.mDays;
+        this.mStart = builder.mStart;
+        this.mEnd = builder.mEnd;
+        this.mTimescale = builder.mTimescale;
+        this.mTimezone = builder.mTimezone;
+
+        // The server reads dates in the timezone of the request, or UTC without one
+        final TimeZone timeZone = TimeZone.getTimeZone(mTimezone != null ? mTimezone : "UTC");
+        Map<String, String> params = new TreeMap<>();
+        params.put("results", Integer.toString(mResults));
+        if (mDays != -1)
+            params.put("days", Integer.toString(mDays));
+        if (mStart != -1)
+            params.put("start", TimestampCodec.formatRequestParam(mStart, timeZone));
+        if (mEnd != -1)
+            params.put("end", TimestampCodec.formatRequestParam(mEnd, timeZone));
+        if (mTimezone != null)
+            params.put("timezone", mTimezone);
+        if (mTimescale != -1)
+            params.put("timescale", getTimescaleParam());
+        this.mParams = Collections.unmodifiableMap(params);
+        this.mKey = params.toString();
+    }
+
+    /***
+     * Return a builder initialized with the settings of this query, e.g. to derive a query with a different date range.
+     *
+     * @return The builder.
+     */
+    public Builder newBuilder() {
+        return new Builder(this);
+    }
+
+    /***
+     * Return whether the specific value is a valid timescale.
+     *
+     * @param timescale The timescale value.
+     * @return True if it is one of 10, 15, 20, 30, 60, 240, 720, 1440 and 9999.
+     */
+    public static boolean isValidTimescale(int timescale) {
+        return (timescale == 10 || timescale == 15 || timescale == 20 ||
+                timescale == 30 || timescale == 60 || timescale == 240 ||
+                timescale == 720 || timescale == 1440 || timescale == 9999);
+    }
+
+    /***
+     * Return the number of feed entries to be retrieved.
+     *
+     * @return The number of entries.
+     */
+    public int getResults() {
+        return mResults;
+    }
+
+    /***
+     * Return the number of 24-hour periods before now to include in feed entries.
+     *
+     * @return The number of periods, or -1 for no limit.
+     */
+    public int getDays() {
+        return mDays;
+    }
+
+    /***
+     * Return the start date of feed entries.
+     *
+     * @return The start date, or null for no limit.
+     */
+    public Date getStartDate() {
+        return mStart == -1 ? null : new Date(mStart);
+    }
+
+    /***
+     * Return the end date of feed entries.
+     *
+     * @return The end date, or null for no limit.
+     */
+    public Date getEndDate() {
+        return mEnd == -1 ? null : new Date(mEnd);
+    }
+
+    /***
+     * Return the timescale of feed entries.
+     *
+     * @return The timescale value, or -1 for none.
+     */
+    public int getTimescale() {
+        return mTimescale;
+    }
+
+    /***
+     * Return the timezone of feed entries.
+     *
+     * @return The identifier of the timezone, or null for the default one of the Channel.
+     */
+    public String getTimezone() {
+        return mTimezone;
+    }
+
+    /***
+     * Return whether this query asks for the latest entries, i.e. no days, start date, end date or timescale is set.
+     *
+     * @return True for a query of the latest entries.
+     */
+    public boolean isLatestEntries() {
+        return mDays == -1 && mStart == -1 && mEnd == -1 && mTimescale == -1;
+    }
+
+    /***
+     * Return the request parameters of this query, excluding the Read API Key of the Channel.
+     *
+     * @return The unmodifiable parameters.
+     */
+    public Map<String, String> getParams() {
+        return mParams;
+    }
+
+    /***
+     * Return a key identifying the entries this query asks for, e.g. to cache results per query. Equal queries have equal keys.
+     *
+     * @return The key.
+     */
+    public String getKey() {
+        return mKey;
+    }
+
+    String getTimescaleParam() {
+        if (mTimescale == -1)
+            return null;
+        return mTimescale == 9999 ? "daily" : Integer.toString(mTimescale);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FeedQuery && mKey.equals(((FeedQuery) o).mKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return mKey.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "FeedQuery" + mKey;
+    }
+
+}
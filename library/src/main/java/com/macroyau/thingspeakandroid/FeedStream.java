@@ -0,0 +1,209 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import retrofit.RetrofitError;
+
+/***
+ * Subscription to the feed updates of a {@link com.macroyau.thingspeakandroid.ThingSpeakChannel}, created by
+ * {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#subscribe(int, com.macroyau.thingspeakandroid.FeedStream.Subscriber)}. Any number
+ * of streams can subscribe to the same feed. Each stream buffers a bounded number of updates and delivers them one at a time, so that a
+ * slow subscriber neither blocks the others nor builds up an unbounded backlog: when the buffer is full, the oldest update is dropped. With
+ * conflation, only the newest update is kept, so that a slow subscriber always gets the latest snapshot.
+ * <p>
+ * Updates are complete snapshots of the feed shared by all subscribers, so they must not be modified.
+ *
+ * @author Macro Yau
+ */
+public class FeedStream {
+
+    /***
+     * Subscriber of feed updates.
+     */
+    public interface Subscriber {
+
+        /***
+         * The feed is updated.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+         * @param columns The entries of the feed.
+         */
+        void onFeedUpdated(long channelId, int fieldId, FeedColumns columns);
+
+        /***
+         * A request for the feed failed. The stream stays subscribed.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+         * @param error The error of the failed request.
+         */
+        void onFeedFailed(long channelId, int fieldId, RetrofitError error);
+
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 16;
+
+    private final ThingSpeakChannel mChannel;
+    private final int mFieldId;
+    private final Subscriber mSubscriber;
+    private Executor mExecutor;
+    private int mBufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean mConflate;
+
+    private final ArrayDeque<Object> mPending = new ArrayDeque<>();
+    private boolean mDelivering;
+    private boolean mCancelled;
+    private long mDroppedCount;
+
+    private final Runnable mDelivery = new Runnable() {
+        @Override
+        public void run() {
+            deliverNext();
+        }
+    };
+
+    FeedStream(ThingSpeakChannel channel, int fieldId, Subscriber subscriber) {
+        this.mChannel = channel;
+        this.mFieldId = fieldId;
+        this.mSubscriber = subscriber;
+        this.mExecutor = channel.getClient().getCallbackExecutor();
+    }
+
+    /***
+     * Set the maximum number of updates buffered for the subscriber. The default is 16.
+     *
+     * @param bufferSize The number of updates.
+     */
+    public synchronized void setBufferSize(int bufferSize) {
+        this.mBufferSize = Math.max(bufferSize, 1);
+        while (mPending.size() > mBufferSize) {
+            mPending.removeFirst();
+            mDroppedCount++;
+        }
+    }
+
+    /***
+     * Set whether only the newest update is kept for the subscriber, replacing any update not delivered yet. It is disabled by default.
+     *
+     * @param conflate True to keep only the newest update.
+     */
+    public synchronized void setConflate(boolean conflate) {
+        this.mConflate = conflate;
+    }
+
+    /***
+     * Set the executor on which the subscriber is notified. The default is the callback executor of the client, usually the main thread.
+     *
+     * @param executor The executor.
+     */
+    public synchronized void setExecutor(Executor executor) {
+        this.mExecutor = executor;
+    }
+
+    /***
+     * Return the ID of the subscribed field.
+     *
+     * @return The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+     */
+    public int getFieldId() {
+        return mFieldId;
+    }
+
+    /***
+     * Return the number of updates dropped because the subscriber did not keep up.
+     *
+     * @return The number of updates.
+     */
+    public synchronized long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /***
+     * Unsubscribe from the feed. Buffered updates are discarded.
+     */
+    public void cancel() {
+        synchronized (this) {
+            mCancelled = true;
+            mPending.clear();
+        }
+        mChannel.removeStream(this);
+    }
+
+    /***
+     * Return whether this stream is cancelled.
+     *
+     * @return True if the stream is cancelled.
+     */
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    void publish(FeedColumns columns) {
+        enqueue(columns);
+    }
+
+    void publishError(RetrofitError error) {
+        enqueue(error);
+    }
+
+    private void enqueue(Object update) {
+        Executor executor;
+        synchronized (this) {
+            if (mCancelled)
+                return;
+
+            if (mConflate) {
+                mDroppedCount += mPending.size();
+                mPending.clear();
+            } else if (mPending.size() >= mBufferSize) {
+                mPending.removeFirst();
+                mDroppedCount++;
+            }
+            mPending.addLast(update);
+
+            if (mDelivering)
+                return;
+            mDelivering = true;
+            executor = mExecutor;
+        }
+        executor.execute(mDelivery);
+    }
+
+    private void deliverNext() {
+        Object update;
+        synchronized (this) {
+            update = mPending.pollFirst();
+            if (update == null) {
+                mDelivering = false;
+                return;
+            }
+        }
+
+        try {
+            if (update instanceof FeedColumns)
+                mSubscriber.onFeedUpdated(mChannel.getChannelId(), mFieldId, (FeedColumns) update);
+            else
+                mSubscriber.onFeedFailed(mChannel.getChannelId(), mFieldId, (RetrofitError) update);
+        } finally {
+            scheduleNext();
+        }
+    }
+
+    private void scheduleNext() {
+        // One update per task, so that a backlog on the main thread does not delay other work
+        Executor executor;
+        synchronized (this) {
+            if (mPending.isEmpty()) {
+                mDelivering = false;
+                return;
+            }
+            executor = mExecutor;
+        }
+        executor.execute(mDelivery);
+    }
+
+}
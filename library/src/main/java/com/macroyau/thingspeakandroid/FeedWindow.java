@@ -0,0 +1,103 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.Channel;
+import com.macroyau.thingspeakandroid.model.ChannelFeed;
+import com.macroyau.thingspeakandroid.model.Feed;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/***
+ * Local sliding window of feed entries used for incremental feed synchronization. Entries are kept in ascending order of their
+ * entry IDs, and the oldest entries are dropped once the window exceeds its capacity. A columnar copy of the window is kept up to date
+ * with each merge, so that only the new entries are converted.
+ *
+ * @author Macro Yau
+ */
+class FeedWindow {
+
+    private final int mCapacity;
+    private final ArrayList<Feed> mFeeds;
+    private FeedColumns mColumns = new FeedColumns(null, 0, new long[0], new long[0], new double[FeedColumns.FIELD_COUNT][]);
+    private Channel mChannel;
+    private long mLastEntryId = -1;
+    private Date mLastCreatedAt;
+
+    FeedWindow(int capacity) {
+        this.mCapacity = Math.max(capacity, 1);
+        this.mFeeds = new ArrayList<>(mCapacity);
+    }
+
+    /***
+     * Merge newly fetched entries into the window.
+     *
+     * @param channelFeed The newly fetched Channel feed.
+     * @return The entries that were not yet in the window, in ascending order of their entry IDs.
+     */
+    synchronized List<Feed> merge(ChannelFeed channelFeed) {
+        if (channelFeed.getChannel() != null)
+            mChannel = channelFeed.getChannel();
+
+        List<Feed> feeds = channelFeed.getFeeds();
+        if (feeds == null || feeds.isEmpty())
+            return Collections.emptyList();
+
+        List<Feed> delta = new ArrayList<>();
+        for (Feed feed : feeds) {
+            // Entries at or before the last seen one are overlaps from the inclusive start parameter
+            if (feed.getEntryId() > mLastEntryId) {
+                delta.add(feed);
+                mLastEntryId = feed.getEntryId();
+                mLastCreatedAt = feed.getCreatedAt();
+            }
+        }
+
+        mFeeds.addAll(delta);
+        int overflow = mFeeds.size() - mCapacity;
+        if (overflow > 0)
+            mFeeds.subList(0, overflow).clear();
+        if (!delta.isEmpty())
+            mColumns = mColumns.merge(new ChannelFeed(mChannel, delta).toColumns(), mCapacity);
+
+        return delta;
+    }
+
+    /***
+     * Return whether any entry has been merged into the window.
+     *
+     * @return True if at least one entry has been seen.
+     */
+    synchronized boolean isEmpty() {
+        return mLastEntryId == -1;
+    }
+
+    synchronized long getLastEntryId() {
+        return mLastEntryId;
+    }
+
+    synchronized Date getLastCreatedAt() {
+        return mLastCreatedAt;
+    }
+
+    /***
+     * Return a snapshot of the merged window as a Channel feed.
+     *
+     * @return The merged Channel feed.
+     */
+    synchronized ChannelFeed toChannelFeed() {
+        return new ChannelFeed(mChannel, Collections.unmodifiableList(new ArrayList<>(mFeeds)));
+    }
+
+    /***
+     * Return a snapshot of the merged window in columnar form, without converting the entries again.
+     *
+     * @return The merged feed entries.
+     */
+    synchronized FeedColumns toColumns() {
+        return mColumns;
+    }
+
+}
@@ -0,0 +1,332 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+import com.macroyau.thingspeakandroid.model.FeedUpdate;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/***
+ * Durable write-ahead log of readings to be written to a Channel feed, used by a {@link com.macroyau.thingspeakandroid.FeedWriter} to keep
+ * readings across connectivity loss and process death. Readings are appended to segment files of checksummed records and acknowledged in
+ * order once written; fully acknowledged segments are deleted. A record torn by an interrupted append is discarded when the log is opened.
+ * Only one instance should be used per directory, and each Channel needs its own directory.
+ *
+ * @author Macro Yau
+ */
+public class FeedWriteLog {
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String ACKNOWLEDGED_FILE = "acknowledged";
+    private static final int SEGMENT_CAPACITY = 4096;
+    private static final int STATUS_BIT = 1 << FeedColumns.FIELD_COUNT;
+
+    private static class Segment {
+
+        private final File mFile;
+        private final long mFirstSequence;
+        private int mSize;
+        private long mLength;
+
+        private Segment(File file, long firstSequence) {
+            this.mFile = file;
+            this.mFirstSequence = firstSequence;
+        }
+
+        private long getLastSequence() {
+            return mFirstSequence + mSize - 1;
+        }
+
+    }
+
+    private final File mDirectory;
+    private final List<Segment> mSegments = new ArrayList<>();
+    private final List<FeedUpdate> mPending = new ArrayList<>();
+    private long mAcknowledged = -1;
+    private long mNextSequence;
+    private boolean mSyncOnAppend = true;
+
+    /***
+     * Constructor opening the log in a specific directory, creating it if necessary.
+     *
+     * @param directory The directory in which the log is stored, e.g. a subdirectory of Context.getFilesDir().
+     * @throws IOException If the log cannot be read.
+     */
+    public FeedWriteLog(File directory) throws IOException {
+        this.mDirectory = directory;
+        open();
+    }
+
+    /***
+     * Set whether each append is forced to the storage device before returning. Disabling it is faster, but readings appended shortly
+     * before a power loss may be lost. It is enabled by default.
+     *
+     * @param syncOnAppend True to force each append to the storage device.
+     */
+    public synchronized void setSyncOnAppend(boolean syncOnAppend) {
+        this.mSyncOnAppend = syncOnAppend;
+    }
+
+    /***
+     * Append readings to the log.
+     *
+     * @param updates The readings in chronological order.
+     * @throws IOException If the log cannot be written.
+     */
+    public synchronized void append(List<FeedUpdate> updates) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs())
+            throw new IOException("Cannot create " + mDirectory);
+
+        int index = 0;
+        while (index < updates.size()) {
+            int last = mSegments.size() - 1;
+            if (last < 0 || mSegments.get(last).mSize >= SEGMENT_CAPACITY) {
+                File file = new File(mDirectory, String.format(Locale.US, "%020d%s", mNextSequence, SEGMENT_SUFFIX));
+                mSegments.add(new Segment(file, mNextSequence));
+                last++;
+            }
+
+            Segment segment = mSegments.get(last);
+            int count = Math.min(updates.size() - index, SEGMENT_CAPACITY - segment.mSize);
+
+            ByteArrayOutputStream records = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(records);
+            for (int i = index; i < index + count; i++)
+                writeRecord(out, mNextSequence + i - index, updates.get(i));
+
+            // Drop any partial record left behind by a failed append before writing after it
+            RandomAccessFile file = new RandomAccessFile(segment.mFile, "rw");
+            try {
+                file.setLength(segment.mLength);
+                file.seek(segment.mLength);
+                file.write(records.toByteArray());
+                if (mSyncOnAppend)
+                    file.getFD().sync();
+            } finally {
+                file.close();
+            }
+
+            segment.mSize += count;
+            segment.mLength += records.size();
+            mPending.addAll(updates.subList(index, index + count));
+            mNextSequence += count;
+            index += count;
+        }
+    }
+
+    /***
+     * Append a reading to the log.
+     *
+     * @param update The reading.
+     * @throws IOException If the log cannot be written.
+     */
+    public void append(FeedUpdate update) throws IOException {
+        append(Arrays.asList(update));
+    }
+
+    /***
+     * Mark the oldest pending readings as written. Segments whose readings are all written are deleted.
+     *
+     * @param count The number of readings.
+     * @throws IOException If the log cannot be written.
+     */
+    public synchronized void acknowledge(int count) throws IOException {
+        count = Math.min(count, mPending.size());
+        if (count <= 0)
+            return;
+
+        long acknowledged = mAcknowledged + count;
+        File temp = new File(mDirectory, ACKNOWLEDGED_FILE + ".tmp");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+        try {
+            out.writeLong(acknowledged);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(new File(mDirectory, ACKNOWLEDGED_FILE)))
+            throw new IOException("Cannot write " + ACKNOWLEDGED_FILE);
+
+        mAcknowledged = acknowledged;
+        mPending.subList(0, count).clear();
+
+        while (!mSegments.isEmpty() && mSegments.get(0).getLastSequence() <= mAcknowledged)
+            mSegments.remove(0).mFile.delete();
+    }
+
+    /***
+     * Return the readings not yet acknowledged, oldest first.
+     *
+     * @return The pending readings.
+     */
+    public synchronized List<FeedUpdate> getPending() {
+        return new ArrayList<>(mPending);
+    }
+
+    /***
+     * Return the number of readings not yet acknowledged.
+     *
+     * @return The number of readings.
+     */
+    public synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    private void open() throws IOException {
+        File acknowledgedFile = new File(mDirectory, ACKNOWLEDGED_FILE);
+        if (acknowledgedFile.exists()) {
+            DataInputStream in = new DataInputStream(new FileInputStream(acknowledgedFile));
+            try {
+                mAcknowledged = in.readLong();
+            } finally {
+                in.close();
+            }
+        }
+        mNextSequence = mAcknowledged + 1;
+
+        File[] files = mDirectory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (files == null)
+            return;
+
+        // Segment names are zero-padded first sequence numbers, so lexical order is append order
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            Segment segment = new Segment(file, Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            readSegment(segment);
+
+            if (segment.mSize == 0 || segment.getLastSequence() <= mAcknowledged) {
+                file.delete();
+                continue;
+            }
+            mSegments.add(segment);
+            mNextSequence = segment.getLastSequence() + 1;
+        }
+    }
+
+    private void readSegment(Segment segment) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.mFile)));
+        try {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                byte[] payload = readPayload(in, length);
+                if (payload == null)
+                    break;
+
+                long sequence = segment.mFirstSequence + segment.mSize;
+                FeedUpdate update = readRecord(payload, sequence);
+                if (update == null)
+                    break;
+
+                if (sequence > mAcknowledged)
+                    mPending.add(update);
+                segment.mSize++;
+                segment.mLength += 8 + length;
+            }
+        } finally {
+            in.close();
+        }
+
+        // Drop any partial record left behind by an interrupted append
+        if (segment.mLength < segment.mFile.length()) {
+            RandomAccessFile file = new RandomAccessFile(segment.mFile, "rw");
+            try {
+                file.setLength(segment.mLength);
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    private static byte[] readPayload(DataInputStream in, int length) throws IOException {
+        if (length <= 0 || length > 1 << 20)
+            return null;
+        try {
+            long checksum = in.readInt() & 0xFFFFFFFFL;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            return crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /***
+     * A record consists of the payload length and its CRC-32 as ints, followed by the payload: the sequence number and the date of creation
+     * as longs, a bit mask of present values as a short, and each present field value and the status as modified UTF-8.
+     */
+    private static void writeRecord(DataOutputStream out, long sequence, FeedUpdate update) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeLong(sequence);
+        payload.writeLong(update.getCreatedAt().getTime());
+
+        int mask = 0;
+        for (int f = 1; f <= FeedColumns.FIELD_COUNT; f++) {
+            if (update.getField(f) != null)
+                mask |= 1 << (f - 1);
+        }
+        if (update.getStatus() != null)
+            mask |= STATUS_BIT;
+        payload.writeShort(mask);
+
+        for (int f = 1; f <= FeedColumns.FIELD_COUNT; f++) {
+            if (update.getField(f) != null)
+                payload.writeUTF(update.getField(f));
+        }
+        if (update.getStatus() != null)
+            payload.writeUTF(update.getStatus());
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        out.writeInt(bytes.size());
+        out.writeInt((int) crc.getValue());
+        bytes.writeTo(out);
+    }
+
+    private static FeedUpdate readRecord(byte[] bytes, long expectedSequence) throws IOException {
+        DataInputStream payload = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (payload.readLong() != expectedSequence)
+            return null;
+
+        FeedUpdate update = new FeedUpdate(new Date(payload.readLong()));
+        int mask = payload.readUnsignedShort();
+        for (int f = 1; f <= FeedColumns.FIELD_COUNT; f++) {
+            if ((mask & (1 << (f - 1))) != 0)
+                update.setField(f, payload.readUTF());
+        }
+        if ((mask & STATUS_BIT) != 0)
+            update.setStatus(payload.readUTF());
+        return update;
+    }
+
+}
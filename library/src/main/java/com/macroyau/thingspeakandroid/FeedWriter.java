@@ -0,0 +1,336 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.BulkUpdate;
+import com.macroyau.thingspeakandroid.model.BulkUpdateResult;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+import com.macroyau.thingspeakandroid.model.FeedUpdate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/***
+ * Buffered writer of readings to the feed of a {@link com.macroyau.thingspeakandroid.ThingSpeakChannel}. Readings are kept locally and
+ * written in batches with the bulk update API when the batch is full or its oldest reading is too old, but no more often than the write rate
+ * limit of the Channel allows. Only one batch is written at a time, so readings arrive at the Channel in the order they are added. Failed
+ * batches are written again with exponential backoff.
+ * <p>
+ * With a {@link com.macroyau.thingspeakandroid.FeedWriteLog}, readings are also kept on disk until written, and replayed when the writer is
+ * created again after process death. Before readings are written again after a failure or a replay, the latest entry of the Channel is
+ * read, and readings not newer than it are dropped as already written. This requires the readings to be in chronological order, this writer
+ * to be the only writer of the Channel, and the Read API Key to be set for a private Channel.
+ *
+ * @author Macro Yau
+ */
+public class FeedWriter {
+
+    /***
+     * Listener for batch write events.
+     */
+    public interface WriteListener {
+
+        /***
+         * A batch of readings is written to the Channel feed.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param updates The readings written.
+         */
+        void onFeedUpdatesWritten(long channelId, List<FeedUpdate> updates);
+
+        /***
+         * A batch of readings could not be written. The readings are kept at the front of the buffer and written again after a backoff, or
+         * as soon as {@link #flush()} is called, e.g. when the network is available again.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param updates The readings not written.
+         * @param error The error of the failed request.
+         */
+        void onFeedUpdatesFailed(long channelId, List<FeedUpdate> updates, RetrofitError error);
+
+    }
+
+    /***
+     * Maximum number of readings the ThingSpeak API accepts in a single bulk update.
+     */
+    public static final int MAX_BATCH_SIZE = 14400;
+
+    private static final int DEFAULT_BATCH_SIZE = 960;
+    private static final long DEFAULT_MAX_BATCH_AGE = 60 * 1000L;
+    private static final long DEFAULT_MIN_WRITE_INTERVAL = 15 * 1000L;
+    private static final long MIN_RETRY_INTERVAL = 1000L;
+    private static final long MAX_RETRY_INTERVAL = 10 * 60 * 1000L;
+
+    private final ThingSpeakChannel mChannel;
+    private WriteListener mListener;
+    private FeedWriteLog mLog;
+    private int mBatchSize = DEFAULT_BATCH_SIZE;
+    private long mMaxBatchAge = DEFAULT_MAX_BATCH_AGE;
+    private long mMinWriteInterval = DEFAULT_MIN_WRITE_INTERVAL;
+
+    private final List<FeedUpdate> mBuffer = new ArrayList<>();
+    private long mOldestBufferedAt;
+    private long mLastWriteAt = Long.MIN_VALUE / 2;
+    private boolean mWriting, mFlushRequested, mReconcileRequired;
+    private int mFailures;
+    private long mRetryAt;
+    private int mWritingCount;
+    private ScheduledFuture<?> mScheduledWrite;
+    private long mScheduledWriteAt;
+
+    FeedWriter(ThingSpeakChannel channel) {
+        this.mChannel = channel;
+    }
+
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.FeedWriter.WriteListener} to use.
+     *
+     * @param listener The listener.
+     */
+    public synchronized void setListener(WriteListener listener) {
+        this.mListener = listener;
+    }
+
+    /***
+     * Set the number of readings written by a single request. A batch is written as soon as this number of readings is buffered. The
+     * default is 960, the limit of free ThingSpeak accounts.
+     *
+     * @param batchSize The number of readings, up to {@link #MAX_BATCH_SIZE}.
+     */
+    public synchronized void setBatchSize(int batchSize) {
+        this.mBatchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        scheduleWrite();
+    }
+
+    /***
+     * Set the longest time a reading is buffered before its batch is written, even if the batch is not full. The default is 1 minute.
+     *
+     * @param millis The time in milliseconds.
+     */
+    public synchronized void setMaxBatchAge(long millis) {
+        this.mMaxBatchAge = Math.max(millis, 0);
+        scheduleWrite();
+    }
+
+    /***
+     * Set the shortest time between two batches, i.e. the write rate limit of the Channel. The default is 15 seconds, the limit of free
+     * ThingSpeak accounts.
+     *
+     * @param millis The time in milliseconds.
+     */
+    public synchronized void setMinWriteInterval(long millis) {
+        this.mMinWriteInterval = Math.max(millis, 0);
+        scheduleWrite();
+    }
+
+    /***
+     * Keep readings in a durable log until they are written. Readings left in the log by a previous process are replayed before the readings
+     * already buffered. The log must be set before the first batch is written.
+     *
+     * @param log The log of this specific Channel.
+     * @throws IOException If the buffered readings cannot be appended to the log.
+     */
+    public synchronized void setWriteAheadLog(FeedWriteLog log) throws IOException {
+        if (mLog != null || mWriting)
+            throw new IllegalStateException("Write-ahead log must be set once before readings are written");
+
+        List<FeedUpdate> replay = log.getPending();
+        log.append(mBuffer);
+        mLog = log;
+        if (replay.isEmpty())
+            return;
+
+        // The process may have died after the server accepted a batch but before it was acknowledged
+        mBuffer.addAll(0, replay);
+        mOldestBufferedAt = now() - mMaxBatchAge;
+        mReconcileRequired = true;
+        scheduleWrite();
+    }
+
+    /***
+     * Buffer a reading to be written with the next batch.
+     *
+     * @param update The reading.
+     * @throws IOException If the reading cannot be appended to the write-ahead log.
+     */
+    public synchronized void add(FeedUpdate update) throws IOException {
+        if (mLog != null)
+            mLog.append(update);
+        if (mBuffer.isEmpty())
+            mOldestBufferedAt = now();
+        mBuffer.add(update);
+        scheduleWrite();
+    }
+
+    /***
+     * Write all buffered readings as soon as the write rate limit of the Channel allows, without waiting for batches to fill up or for the
+     * backoff after a failure to expire.
+     */
+    public synchronized void flush() {
+        if (mBuffer.isEmpty())
+            return;
+        mFlushRequested = true;
+        mRetryAt = 0;
+        scheduleWrite();
+    }
+
+    /***
+     * Return the number of readings not yet written, including those of a batch being written.
+     *
+     * @return The number of readings.
+     */
+    public synchronized int getPendingCount() {
+        return mBuffer.size() + mWritingCount;
+    }
+
+    private void scheduleWrite() {
+        if (mWriting || mBuffer.isEmpty())
+            return;
+
+        long now = now();
+        long writeAt = mFlushRequested || mBuffer.size() >= mBatchSize ? now : mOldestBufferedAt + mMaxBatchAge;
+        writeAt = Math.max(writeAt, Math.max(mLastWriteAt + mMinWriteInterval, mRetryAt));
+
+        if (mScheduledWrite != null) {
+            if (mScheduledWriteAt <= writeAt)
+                return;
+            mScheduledWrite.cancel(false);
+        }
+
+        mScheduledWriteAt = writeAt;
+        mScheduledWrite = mChannel.getClient().getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, Math.max(writeAt - now, 0), TimeUnit.MILLISECONDS);
+    }
+
+    private void write() {
+        final List<FeedUpdate> batch;
+        synchronized (this) {
+            mScheduledWrite = null;
+            if (mWriting || mBuffer.isEmpty())
+                return;
+
+            mWriting = true;
+            if (mReconcileRequired) {
+                reconcile();
+                return;
+            }
+
+            List<FeedUpdate> head = mBuffer.subList(0, Math.min(mBuffer.size(), mBatchSize));
+            batch = Collections.unmodifiableList(new ArrayList<>(head));
+            head.clear();
+            if (mBuffer.isEmpty())
+                mFlushRequested = false;
+
+            mWritingCount = batch.size();
+            mLastWriteAt = now();
+        }
+
+        mChannel.bulkUpdate(new BulkUpdate(mChannel.getWriteApiKey(), batch), new Callback<BulkUpdateResult>() {
+            @Override
+            public void success(BulkUpdateResult result, Response response) {
+                if (result == null || !result.isSuccess()) {
+                    // The readings are rejected by the Channel, so they are kept and written again
+                    String url = response == null ? null : response.getUrl();
+                    onBatchFailed(batch, RetrofitError.unexpectedError(url, new IllegalStateException("Bulk update rejected")), false);
+                    return;
+                }
+
+                WriteListener listener;
+                synchronized (FeedWriter.this) {
+                    mWriting = false;
+                    mWritingCount = 0;
+                    mFailures = 0;
+                    acknowledge(batch.size());
+                    listener = mListener;
+                    scheduleWrite();
+                }
+                if (listener != null)
+                    listener.onFeedUpdatesWritten(mChannel.getChannelId(), batch);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                // The batch may have been written even though the response was lost
+                onBatchFailed(batch, error, true);
+            }
+        });
+    }
+
+    private void onBatchFailed(List<FeedUpdate> batch, RetrofitError error, boolean mayBeWritten) {
+        WriteListener listener;
+        synchronized (this) {
+            mWriting = false;
+            mWritingCount = 0;
+            mOldestBufferedAt = mBuffer.isEmpty() ? mLastWriteAt : Math.min(mOldestBufferedAt, mLastWriteAt);
+            mBuffer.addAll(0, batch);
+            mFlushRequested = false;
+            mReconcileRequired = mayBeWritten && mLog != null;
+            backOff();
+            listener = mListener;
+        }
+        if (listener != null)
+            listener.onFeedUpdatesFailed(mChannel.getChannelId(), batch, error);
+    }
+
+    private void reconcile() {
+        mChannel.loadLatestEntry(new Callback<FeedColumns>() {
+            @Override
+            public void success(FeedColumns columns, Response response) {
+                synchronized (FeedWriter.this) {
+                    mWriting = false;
+                    mReconcileRequired = false;
+
+                    int written = 0;
+                    if (columns.size() > 0) {
+                        long lastCreatedAt = columns.getCreatedAt(columns.size() - 1);
+                        while (written < mBuffer.size() && mBuffer.get(written).getCreatedAt().getTime() <= lastCreatedAt)
+                            written++;
+                    }
+                    mBuffer.subList(0, written).clear();
+                    acknowledge(written);
+                    scheduleWrite();
+                }
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                synchronized (FeedWriter.this) {
+                    mWriting = false;
+                    backOff();
+                }
+            }
+        });
+    }
+
+    private void acknowledge(int count) {
+        if (mLog == null)
+            return;
+        try {
+            mLog.acknowledge(count);
+        } catch (IOException ignored) {
+            // Readings left unacknowledged are dropped by reconciliation when replayed
+        }
+    }
+
+    private void backOff() {
+        mFailures++;
+        long interval = Math.max(mMinWriteInterval, MIN_RETRY_INTERVAL) << Math.min(mFailures - 1, 16);
+        mRetryAt = now() + Math.min(interval, MAX_RETRY_INTERVAL);
+        scheduleWrite();
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+}
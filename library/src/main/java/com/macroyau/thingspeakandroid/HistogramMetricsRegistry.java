@@ -0,0 +1,154 @@
+package com.macroyau.thingspeakandroid;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * In-memory {@link com.macroyau.thingspeakandroid.MetricsRegistry} keeping counters, byte counts and a
+ * {@link com.macroyau.thingspeakandroid.LatencyHistogram} per phase for each endpoint.
+ *
+ * @author Macro Yau
+ */
+public class HistogramMetricsRegistry implements MetricsRegistry {
+
+    /***
+     * Metrics of all calls to a single endpoint.
+     */
+    public static class EndpointStats {
+
+        private final Map<RequestMetrics.Phase, LatencyHistogram> mLatencies = new EnumMap<>(RequestMetrics.Phase.class);
+        private final LatencyHistogram mTotalLatency = new LatencyHistogram();
+        private long mRequestCount, mErrorCount;
+        private long mRequestBytes, mResponseBytes;
+
+        private EndpointStats() {
+            for (RequestMetrics.Phase phase : RequestMetrics.Phase.values())
+                mLatencies.put(phase, new LatencyHistogram());
+        }
+
+        private void record(RequestMetrics metrics) {
+            synchronized (this) {
+                mRequestCount++;
+                if (!metrics.isSuccess())
+                    mErrorCount++;
+                mRequestBytes += metrics.getRequestBytes();
+                mResponseBytes += metrics.getResponseBytes();
+            }
+            for (RequestMetrics.Phase phase : RequestMetrics.Phase.values())
+                mLatencies.get(phase).record(metrics.getNanos(phase));
+            mTotalLatency.record(metrics.getTotalNanos());
+        }
+
+        /***
+         * Return the number of calls.
+         *
+         * @return The number of calls.
+         */
+        public synchronized long getRequestCount() {
+            return mRequestCount;
+        }
+
+        /***
+         * Return the number of failed calls.
+         *
+         * @return The number of failed calls.
+         */
+        public synchronized long getErrorCount() {
+            return mErrorCount;
+        }
+
+        /***
+         * Return the fraction of failed calls.
+         *
+         * @return The error rate from 0 to 1.
+         */
+        public synchronized double getErrorRate() {
+            return mRequestCount == 0 ? 0 : (double) mErrorCount / mRequestCount;
+        }
+
+        /***
+         * Return the total size of request bodies.
+         *
+         * @return The size in bytes.
+         */
+        public synchronized long getRequestBytes() {
+            return mRequestBytes;
+        }
+
+        /***
+         * Return the total size of response bodies.
+         *
+         * @return The size in bytes.
+         */
+        public synchronized long getResponseBytes() {
+            return mResponseBytes;
+        }
+
+        /***
+         * Return the latency histogram of a phase of the calls.
+         *
+         * @param phase The phase.
+         * @return The histogram.
+         */
+        public LatencyHistogram getLatency(RequestMetrics.Phase phase) {
+            return mLatencies.get(phase);
+        }
+
+        /***
+         * Return the latency histogram of the calls from start to end.
+         *
+         * @return The histogram.
+         */
+        public LatencyHistogram getTotalLatency() {
+            return mTotalLatency;
+        }
+
+    }
+
+    private final Map<String, EndpointStats> mStats = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(RequestMetrics metrics) {
+        EndpointStats stats = mStats.get(metrics.getEndpoint());
+        if (stats == null) {
+            synchronized (mStats) {
+                stats = mStats.get(metrics.getEndpoint());
+                if (stats == null) {
+                    stats = new EndpointStats();
+                    mStats.put(metrics.getEndpoint(), stats);
+                }
+            }
+        }
+        stats.record(metrics);
+    }
+
+    /***
+     * Return the names of all endpoints called so far.
+     *
+     * @return The endpoint names in alphabetical order.
+     */
+    public Set<String> getEndpoints() {
+        return new TreeSet<>(mStats.keySet());
+    }
+
+    /***
+     * Return the metrics of a specific endpoint.
+     *
+     * @param endpoint The name of the service method, e.g. getChannelFeed.
+     * @return The metrics, or null if the endpoint has not been called.
+     */
+    public EndpointStats getStats(String endpoint) {
+        return mStats.get(endpoint);
+    }
+
+    /***
+     * Remove the metrics of all endpoints.
+     */
+    public void reset() {
+        mStats.clear();
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.macroyau.thingspeakandroid;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import retrofit.Callback;
+
+/***
+ * Dynamic proxy routing asynchronous Retrofit service calls through a list of {@link com.macroyau.thingspeakandroid.ServiceInterceptor}s.
+ *
+ * @author Macro Yau
+ */
+final class InterceptedService implements InvocationHandler {
+
+    private final Object mDelegate;
+    private final List<ServiceInterceptor> mInterceptors;
+    private final int mPriority;
+    private final String mVariant;
+
+    private InterceptedService(Object delegate, List<ServiceInterceptor> interceptors, int priority, String variant) {
+        this.mDelegate = delegate;
+        this.mInterceptors = interceptors;
+        this.mPriority = priority;
+        this.mVariant = variant;
+    }
+
+    static <T> T create(Class<T> service, T delegate, List<ServiceInterceptor> interceptors, int priority) {
+        return create(service, delegate, interceptors, priority, null);
+    }
+
+    static <T> T create(Class<T> service, T delegate, List<ServiceInterceptor> interceptors, int priority, String variant) {
+        return service.cast(Proxy.newProxyInstance(service.getClassLoader(), new Class<?>[] { service },
+                new InterceptedService(delegate, interceptors, priority, variant)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            if ("equals".equals(method.getName()))
+                return proxy == args[0];
+            if ("hashCode".equals(method.getName()))
+                return System.identityHashCode(proxy);
+            return "Intercepted" + mDelegate.toString();
+        }
+
+        if (args == null || args.length == 0 || !(args[args.length - 1] instanceof Callback)) {
+            try {
+                return method.invoke(mDelegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        new ServiceCall(mDelegate, method, args, mInterceptors, mPriority, mVariant).proceed((Callback<Object>) args[args.length - 1]);
+        return null;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.macroyau.thingspeakandroid;
+
+/***
+ * Thread-safe latency histogram with log-linear buckets in the manner of HdrHistogram. Values are kept at microsecond resolution with a
+ * relative error of about 3% over a range from 1 microsecond to several hours, in a fixed amount of memory regardless of the number of
+ * values recorded.
+ *
+ * @author Macro Yau
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_MICROS = (1L << 35) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_MICROS) + 1;
+
+    private long[] mCounts;
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    /***
+     * Record a value.
+     *
+     * @param nanos The value in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        if (mCounts == null)
+            mCounts = new long[BUCKET_COUNT];
+
+        mCounts[indexOf(Math.min(nanos / 1000, MAX_MICROS))]++;
+        mCount++;
+        mTotalNanos += nanos;
+        mMaxNanos = Math.max(mMaxNanos, nanos);
+    }
+
+    /***
+     * Return the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /***
+     * Return the mean of the recorded values.
+     *
+     * @return The mean in nanoseconds, or 0 if nothing is recorded.
+     */
+    public synchronized long getMeanNanos() {
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    /***
+     * Return the largest recorded value.
+     *
+     * @return The maximum in nanoseconds.
+     */
+    public synchronized long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    /***
+     * Return the value below which a percentage of the recorded values fall, e.g. 99 for the 99th percentile.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The value in nanoseconds, or 0 if nothing is recorded.
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (mCount == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * mCount));
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            seen += mCounts[i];
+            // Values beyond the range are clamped into the last bucket, whose upper bound is then the maximum
+            if (seen >= target)
+                return i == mCounts.length - 1 ? mMaxNanos : Math.min(highestMicrosOf(i) * 1000 + 999, mMaxNanos);
+        }
+        return mMaxNanos;
+    }
+
+    /***
+     * Remove all recorded values.
+     */
+    public synchronized void reset() {
+        mCounts = null;
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < 2 * SUB_BUCKET_COUNT)
+            return (int) micros;
+
+        // Values in [2^k, 2^(k+1)) share SUB_BUCKET_COUNT linear buckets
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return 2 * SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_COUNT + (int) (micros >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    private static long highestMicrosOf(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT)
+            return index;
+
+        int offset = index - 2 * SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_COUNT + 1;
+        long subBucket = offset % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.macroyau.thingspeakandroid;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/***
+ * Interceptor reporting the {@link com.macroyau.thingspeakandroid.RequestMetrics} of each call to the registered
+ * {@link com.macroyau.thingspeakandroid.MetricsRegistry} instances. Calls pass through untouched while no registry is registered.
+ *
+ * @author Macro Yau
+ */
+class MetricsInterceptor implements ServiceInterceptor {
+
+    /***
+     * Timestamps of a call shared along the interceptor chain.
+     */
+    static class Trace {
+
+        private final long mStartedAt = System.nanoTime();
+        private volatile long mSentAt;
+
+        void onSent() {
+            mSentAt = System.nanoTime();
+        }
+
+    }
+
+    private final List<MetricsRegistry> mRegistries = new CopyOnWriteArrayList<>();
+
+    void addRegistry(MetricsRegistry registry) {
+        mRegistries.add(registry);
+    }
+
+    void removeRegistry(MetricsRegistry registry) {
+        mRegistries.remove(registry);
+    }
+
+    @Override
+    public void intercept(final ServiceCall call, final Callback<Object> callback) {
+        if (mRegistries.isEmpty()) {
+            call.proceed(callback);
+            return;
+        }
+
+        final Trace trace = new Trace();
+        call.setTrace(trace);
+        call.proceed(new Callback<Object>() {
+            @Override
+            public void success(Object result, Response response) {
+                complete(call, trace, callback, result, response, null);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                complete(call, trace, callback, null, error.getResponse(), error);
+            }
+        });
+    }
+
+    private void complete(ServiceCall call, Trace trace, Callback<Object> callback, Object result, Response response, RetrofitError error) {
+        TransportMetrics transport = TransportMetrics.current();
+        long dispatchStart = System.nanoTime();
+        try {
+            if (error == null)
+                callback.success(result, response);
+            else
+                callback.failure(error);
+        } finally {
+            long dispatchNanos = System.nanoTime() - dispatchStart;
+            long queueNanos = (trace.mSentAt != 0 ? trace.mSentAt : dispatchStart) - trace.mStartedAt;
+            RequestMetrics metrics = new RequestMetrics(call.getEndpoint(), error == null, response != null ? response.getStatus() : 0,
+                    error != null ? error.getKind() : null, queueNanos,
+                    transport != null ? transport.mNetworkNanos : 0,
+                    transport != null ? transport.mDecodeNanos : 0,
+                    dispatchNanos + (transport != null ? transport.mHandOffNanos : 0),
+                    transport != null ? transport.mRequestBytes : 0,
+                    transport != null ? transport.mResponseBytes : 0);
+            for (MetricsRegistry registry : mRegistries)
+                registry.record(metrics);
+        }
+    }
+
+}
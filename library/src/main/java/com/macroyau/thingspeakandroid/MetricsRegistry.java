@@ -0,0 +1,20 @@
+package com.macroyau.thingspeakandroid;
+
+/***
+ * Registry receiving the {@link com.macroyau.thingspeakandroid.RequestMetrics} of every completed service call of a
+ * {@link com.macroyau.thingspeakandroid.ThingSpeakClient}, e.g. to export them to a monitoring system. Metrics are recorded on the callback
+ * executor right after the listeners of the call return, so implementations must be thread-safe and fast.
+ *
+ * @author Macro Yau
+ * @see com.macroyau.thingspeakandroid.HistogramMetricsRegistry
+ */
+public interface MetricsRegistry {
+
+    /***
+     * Record the metrics of a completed call.
+     *
+     * @param metrics The metrics.
+     */
+    void record(RequestMetrics metrics);
+
+}
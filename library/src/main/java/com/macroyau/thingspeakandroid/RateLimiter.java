@@ -0,0 +1,292 @@
+package com.macroyau.thingspeakandroid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.Callback;
+
+/***
+ * Interceptor limiting the request rate of all {@link com.macroyau.thingspeakandroid.ThingSpeakChannel} and
+ * {@link com.macroyau.thingspeakandroid.TalkBack} instances sharing a {@link com.macroyau.thingspeakandroid.ThingSpeakClient}. Calls take a
+ * token from a global bucket and, if they carry an API key with a configured budget, from the bucket of that API key. Calls without tokens
+ * are queued by {@link com.macroyau.thingspeakandroid.ServiceCall#getPriority()} and sent in order of priority and arrival as tokens refill.
+ *
+ * @author Macro Yau
+ */
+public class RateLimiter implements ServiceInterceptor {
+
+    /***
+     * Default number of requests per second of the global budget.
+     */
+    public static final double DEFAULT_GLOBAL_RATE = 8;
+
+    /***
+     * Default number of requests that may be sent at once by the global budget.
+     */
+    public static final int DEFAULT_GLOBAL_BURST = 16;
+
+    private static class TokenBucket {
+
+        private final double mRate;
+        private final double mCapacity;
+        private double mTokens;
+        private long mLastRefill;
+
+        private TokenBucket(double rate, int burst, long now) {
+            this.mRate = rate;
+            this.mCapacity = Math.max(burst, 1);
+            this.mTokens = mCapacity;
+            this.mLastRefill = now;
+        }
+
+        private void refill(long now) {
+            if (now > mLastRefill) {
+                mTokens = Math.min(mCapacity, mTokens + (now - mLastRefill) * mRate / 1000);
+                mLastRefill = now;
+            }
+        }
+
+        private boolean hasToken() {
+            return mRate <= 0 || mTokens >= 1;
+        }
+
+        private void take() {
+            if (mRate > 0)
+                mTokens--;
+        }
+
+        private long getMillisUntilToken() {
+            if (hasToken())
+                return 0;
+            return (long) Math.ceil((1 - mTokens) * 1000 / mRate);
+        }
+
+    }
+
+    private static class PendingCall {
+
+        private final ServiceCall mCall;
+        private final Callback<Object> mCallback;
+        private final long mSequence;
+        private final long mEnqueuedAt;
+
+        private PendingCall(ServiceCall call, Callback<Object> callback, long sequence, long enqueuedAt) {
+            this.mCall = call;
+            this.mCallback = callback;
+            this.mSequence = sequence;
+            this.mEnqueuedAt = enqueuedAt;
+        }
+
+        private boolean isBefore(PendingCall other) {
+            if (mCall.getPriority() != other.mCall.getPriority())
+                return mCall.getPriority() > other.mCall.getPriority();
+            return mSequence < other.mSequence;
+        }
+
+    }
+
+    private final ScheduledExecutorService mScheduler;
+    private final List<PendingCall> mQueue = new ArrayList<>();
+
+    private TokenBucket mGlobalBucket;
+    private double mApiKeyRate;
+    private int mApiKeyBurst;
+    private final Map<String, double[]> mApiKeyRates = new HashMap<>();
+    private final Map<String, TokenBucket> mApiKeyBuckets = new HashMap<>();
+
+    private long mSequence;
+    private long mNextDrainAt = Long.MAX_VALUE;
+    private long mDispatchedCount;
+    private long mTotalWaitMillis;
+    private long mMaxWaitMillis;
+
+    RateLimiter(ScheduledExecutorService scheduler) {
+        this.mScheduler = scheduler;
+        this.mGlobalBucket = new TokenBucket(DEFAULT_GLOBAL_RATE, DEFAULT_GLOBAL_BURST, now());
+    }
+
+    /***
+     * Set the global budget shared by all calls. The default is {@link #DEFAULT_GLOBAL_RATE} requests per second with bursts of
+     * {@link #DEFAULT_GLOBAL_BURST} requests.
+     *
+     * @param perSecond The number of requests per second, or 0 for no limit.
+     * @param burst The number of requests that may be sent at once.
+     */
+    public synchronized void setGlobalRate(double perSecond, int burst) {
+        mGlobalBucket = new TokenBucket(perSecond, burst, now());
+        scheduleDrain(0);
+    }
+
+    /***
+     * Set the budget of each API key without a budget of its own. API keys are not limited individually by default.
+     *
+     * @param perSecond The number of requests per second of each API key, or 0 for no limit.
+     * @param burst The number of requests of each API key that may be sent at once.
+     */
+    public synchronized void setApiKeyRate(double perSecond, int burst) {
+        mApiKeyRate = perSecond;
+        mApiKeyBurst = burst;
+        for (String apiKey : new ArrayList<>(mApiKeyBuckets.keySet())) {
+            if (!mApiKeyRates.containsKey(apiKey))
+                mApiKeyBuckets.remove(apiKey);
+        }
+        scheduleDrain(0);
+    }
+
+    /***
+     * Set the budget of a specific API key, e.g. the Write API Key of a Channel updated by many widgets.
+     *
+     * @param apiKey The API key.
+     * @param perSecond The number of requests per second of this API key, or 0 for no limit.
+     * @param burst The number of requests of this API key that may be sent at once.
+     */
+    public synchronized void setApiKeyRate(String apiKey, double perSecond, int burst) {
+        mApiKeyRates.put(apiKey, new double[]{perSecond, burst});
+        mApiKeyBuckets.remove(apiKey);
+        scheduleDrain(0);
+    }
+
+    @Override
+    public void intercept(ServiceCall call, Callback<Object> callback) {
+        synchronized (this) {
+            PendingCall pending = new PendingCall(call, callback, mSequence++, now());
+            int index = mQueue.size();
+            while (index > 0 && pending.isBefore(mQueue.get(index - 1)))
+                index--;
+            mQueue.add(index, pending);
+        }
+        drain();
+    }
+
+    private void drain() {
+        List<PendingCall> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = now();
+            long retryMillis = Long.MAX_VALUE;
+            mGlobalBucket.refill(now);
+
+            for (int i = 0; i < mQueue.size(); i++) {
+                if (!mGlobalBucket.hasToken()) {
+                    retryMillis = Math.min(retryMillis, mGlobalBucket.getMillisUntilToken());
+                    break;
+                }
+
+                PendingCall pending = mQueue.get(i);
+                TokenBucket keyBucket = getApiKeyBucket(pending.mCall.getApiKey(), now);
+                if (keyBucket != null) {
+                    keyBucket.refill(now);
+                    if (!keyBucket.hasToken()) {
+                        // Let calls of other API keys overtake this one rather than block the whole queue
+                        retryMillis = Math.min(retryMillis, keyBucket.getMillisUntilToken());
+                        continue;
+                    }
+                    keyBucket.take();
+                }
+                mGlobalBucket.take();
+
+                mQueue.remove(i--);
+                long waitMillis = now - pending.mEnqueuedAt;
+                mDispatchedCount++;
+                mTotalWaitMillis += waitMillis;
+                mMaxWaitMillis = Math.max(mMaxWaitMillis, waitMillis);
+                ready.add(pending);
+            }
+
+            if (!mQueue.isEmpty() && retryMillis != Long.MAX_VALUE)
+                scheduleDrain(retryMillis);
+        }
+
+        for (PendingCall pending : ready)
+            pending.mCall.proceed(pending.mCallback);
+    }
+
+    private TokenBucket getApiKeyBucket(String apiKey, long now) {
+        if (apiKey == null)
+            return null;
+
+        TokenBucket bucket = mApiKeyBuckets.get(apiKey);
+        if (bucket == null) {
+            double[] rate = mApiKeyRates.get(apiKey);
+            if (rate != null)
+                bucket = new TokenBucket(rate[0], (int) rate[1], now);
+            else if (mApiKeyRate > 0)
+                bucket = new TokenBucket(mApiKeyRate, mApiKeyBurst, now);
+            else
+                return null;
+            mApiKeyBuckets.put(apiKey, bucket);
+        }
+        return bucket;
+    }
+
+    private void scheduleDrain(long delayMillis) {
+        long drainAt = now() + delayMillis;
+        if (drainAt >= mNextDrainAt)
+            return;
+        mNextDrainAt = drainAt;
+
+        mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (RateLimiter.this) {
+                    if (mNextDrainAt <= now())
+                        mNextDrainAt = Long.MAX_VALUE;
+                }
+                drain();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * Return the number of calls waiting for a token.
+     *
+     * @return The number of queued calls.
+     */
+    public synchronized int getQueueDepth() {
+        return mQueue.size();
+    }
+
+    /***
+     * Return the average time calls have waited in the queue since the statistics were last reset.
+     *
+     * @return The average wait time in milliseconds.
+     */
+    public synchronized double getAverageWaitMillis() {
+        return mDispatchedCount == 0 ? 0 : (double) mTotalWaitMillis / mDispatchedCount;
+    }
+
+    /***
+     * Return the longest time a call has waited in the queue since the statistics were last reset.
+     *
+     * @return The maximum wait time in milliseconds.
+     */
+    public synchronized long getMaxWaitMillis() {
+        return mMaxWaitMillis;
+    }
+
+    /***
+     * Return the number of calls sent since the statistics were last reset.
+     *
+     * @return The number of calls.
+     */
+    public synchronized long getDispatchedCount() {
+        return mDispatchedCount;
+    }
+
+    /***
+     * Reset the wait time statistics.
+     */
+    public synchronized void resetStatistics() {
+        mDispatchedCount = 0;
+        mTotalWaitMillis = 0;
+        mMaxWaitMillis = 0;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+}
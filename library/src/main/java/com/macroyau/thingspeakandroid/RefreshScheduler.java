@@ -0,0 +1,194 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.Feed;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.RetrofitError;
+
+/***
+ * Adaptive scheduler refreshing Channel feeds with incremental synchronization. The update cadence of each feed is learned from the dates
+ * of creation of new entries, so that it is polled shortly after the next entry is expected. Idle feeds are polled with exponential backoff,
+ * and a random jitter spreads the polls of many feeds. All feeds share the single timer thread of a {@link com.macroyau.thingspeakandroid.ThingSpeakClient}.
+ *
+ * @author Macro Yau
+ */
+public class RefreshScheduler {
+
+    private static final long DEFAULT_MIN_INTERVAL = 15 * 1000L;
+    private static final long DEFAULT_MAX_INTERVAL = 10 * 60 * 1000L;
+    private static final long GRACE_PERIOD = 2000L;
+    private static final double SMOOTHING_FACTOR = 0.3;
+    private static final double BACKOFF_FACTOR = 1.5;
+    private static final double JITTER = 0.1;
+
+    private final ScheduledExecutorService mScheduler;
+    private final List<Registration> mRegistrations = new ArrayList<>();
+    private final Random mRandom = new Random();
+
+    RefreshScheduler(ScheduledExecutorService scheduler) {
+        this.mScheduler = scheduler;
+    }
+
+    /***
+     * Start refreshing a specific feed, polling at most every 15 seconds and at least every 10 minutes.
+     *
+     * @param channel The Channel.
+     * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+     */
+    public void register(ThingSpeakChannel channel, int fieldId) {
+        register(channel, fieldId, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL);
+    }
+
+    /***
+     * Start refreshing a specific feed. The first poll is made immediately.
+     *
+     * @param channel The Channel.
+     * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+     * @param minInterval The minimum interval between polls in milliseconds.
+     * @param maxInterval The maximum interval between polls in milliseconds.
+     */
+    public synchronized void register(ThingSpeakChannel channel, int fieldId, long minInterval, long maxInterval) {
+        if (find(channel, fieldId) != null)
+            return;
+
+        Registration registration = new Registration(channel, fieldId, minInterval, Math.max(minInterval, maxInterval));
+        mRegistrations.add(registration);
+        registration.schedule(0);
+    }
+
+    /***
+     * Stop refreshing a specific feed.
+     *
+     * @param channel The Channel.
+     * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+     */
+    public synchronized void unregister(ThingSpeakChannel channel, int fieldId) {
+        Iterator<Registration> iterator = mRegistrations.iterator();
+        while (iterator.hasNext()) {
+            Registration registration = iterator.next();
+            if (registration.mChannel == channel && registration.mFieldId == fieldId) {
+                registration.cancel();
+                iterator.remove();
+            }
+        }
+    }
+
+    /***
+     * Return the learned interval between entries of a specific feed.
+     *
+     * @param channel The Channel.
+     * @param fieldId The ID of the field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+     * @return The interval in milliseconds, or -1 if it is not known yet.
+     */
+    public synchronized long getExpectedInterval(ThingSpeakChannel channel, int fieldId) {
+        Registration registration = find(channel, fieldId);
+        return registration == null || registration.mInterval < 0 ? -1 : (long) registration.mInterval;
+    }
+
+    private Registration find(ThingSpeakChannel channel, int fieldId) {
+        for (Registration registration : mRegistrations) {
+            if (registration.mChannel == channel && registration.mFieldId == fieldId)
+                return registration;
+        }
+        return null;
+    }
+
+    private long jitter(long delay, long minInterval, long maxInterval) {
+        long jittered;
+        synchronized (mRandom) {
+            jittered = (long) (delay * (1 + JITTER * (2 * mRandom.nextDouble() - 1)));
+        }
+        // Clamp after the jitter, so that it cannot push polls outside of the bounds
+        return Math.min(Math.max(jittered, minInterval), maxInterval);
+    }
+
+    private class Registration implements Runnable, ThingSpeakChannel.FeedSyncObserver {
+
+        private final ThingSpeakChannel mChannel;
+        private final int mFieldId;
+        private final long mMinInterval, mMaxInterval;
+
+        private double mInterval = -1;
+        private long mLastCreatedAt = -1;
+        private long mIdleDelay;
+        private boolean mCancelled;
+        private ScheduledFuture<?> mFuture;
+
+        private Registration(ThingSpeakChannel channel, int fieldId, long minInterval, long maxInterval) {
+            this.mChannel = channel;
+            this.mFieldId = fieldId;
+            this.mMinInterval = minInterval;
+            this.mMaxInterval = maxInterval;
+        }
+
+        @Override
+        public void run() {
+            synchronized (RefreshScheduler.this) {
+                if (mCancelled)
+                    return;
+            }
+            mChannel.syncFeed(mFieldId, this);
+        }
+
+        @Override
+        public void onSyncCompleted(int fieldId, List<Feed> newFeeds) {
+            synchronized (RefreshScheduler.this) {
+                if (mCancelled)
+                    return;
+
+                for (Feed feed : newFeeds) {
+                    if (feed.getCreatedAt() == null)
+                        continue;
+                    long createdAt = feed.getCreatedAt().getTime();
+                    if (mLastCreatedAt != -1 && createdAt > mLastCreatedAt) {
+                        // Exponentially weighted moving average of the intervals between entries
+                        long delta = createdAt - mLastCreatedAt;
+                        mInterval = mInterval < 0 ? delta : mInterval + SMOOTHING_FACTOR * (delta - mInterval);
+                    }
+                    mLastCreatedAt = Math.max(mLastCreatedAt, createdAt);
+                }
+
+                long delay;
+                if (newFeeds.isEmpty()) {
+                    mIdleDelay = mIdleDelay == 0 ? mMinInterval : Math.min((long) (mIdleDelay * BACKOFF_FACTOR), mMaxInterval);
+                    delay = mIdleDelay;
+                } else {
+                    mIdleDelay = 0;
+                    delay = mInterval < 0 ? mMinInterval
+                            : mLastCreatedAt + (long) mInterval + GRACE_PERIOD - System.currentTimeMillis();
+                }
+                schedule(jitter(delay, mMinInterval, mMaxInterval));
+            }
+        }
+
+        @Override
+        public void onSyncFailed(int fieldId, RetrofitError error) {
+            synchronized (RefreshScheduler.this) {
+                if (mCancelled)
+                    return;
+
+                mIdleDelay = mIdleDelay == 0 ? mMinInterval : Math.min((long) (mIdleDelay * BACKOFF_FACTOR), mMaxInterval);
+                schedule(jitter(mIdleDelay, mMinInterval, mMaxInterval));
+            }
+        }
+
+        private void schedule(long delay) {
+            mFuture = mScheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void cancel() {
+            mCancelled = true;
+            if (mFuture != null)
+                mFuture.cancel(false);
+        }
+
+    }
+
+}
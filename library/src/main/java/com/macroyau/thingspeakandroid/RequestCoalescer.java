@@ -0,0 +1,127 @@
+package com.macroyau.thingspeakandroid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/***
+ * Interceptor sharing one request among concurrent identical read-only calls. Calls are identical if they have the same
+ * {@link com.macroyau.thingspeakandroid.ServiceCall#getKey()}, i.e. the same endpoint, Channel, field and request parameters. The single
+ * result is delivered to every waiting callback, so it must not be modified by them.
+ *
+ * @author Macro Yau
+ */
+public class RequestCoalescer implements ServiceInterceptor {
+
+    private final Executor mCallbackExecutor;
+    private final Map<String, List<Callback<Object>>> mInFlight = new HashMap<>();
+
+    RequestCoalescer(Executor callbackExecutor) {
+        this.mCallbackExecutor = callbackExecutor;
+    }
+
+    @Override
+    public void intercept(ServiceCall call, Callback<Object> callback) {
+        if (!call.isReadOnly()) {
+            call.proceed(callback);
+            return;
+        }
+
+        final String key = call.getKey();
+        final List<Callback<Object>> waiting;
+        synchronized (mInFlight) {
+            List<Callback<Object>> joined = mInFlight.get(key);
+            if (joined != null) {
+                joined.add(callback);
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(callback);
+            mInFlight.put(key, waiting);
+        }
+
+        try {
+            call.proceed(new Callback<Object>() {
+                @Override
+                public void success(Object result, Response response) {
+                    deliverSuccess(complete(key, waiting), result, response);
+                }
+
+                @Override
+                public void failure(RetrofitError error) {
+                    deliverFailure(complete(key, waiting), error);
+                }
+            });
+        } catch (RuntimeException e) {
+            // The request is never made, so identical calls must not keep joining it; the caller gets the exception itself
+            final List<Callback<Object>> joined = complete(key, waiting);
+            if (joined.size() > 1) {
+                final RetrofitError error = RetrofitError.unexpectedError(call.getEndpoint(), e);
+                mCallbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliverFailure(joined.subList(1, joined.size()), error);
+                    }
+                });
+            }
+            throw e;
+        }
+    }
+
+    private static void deliverSuccess(List<Callback<Object>> callbacks, Object result, Response response) {
+        // A throwing callback must not keep the result from the other callbacks, so the first exception is rethrown after all of them
+        RuntimeException thrown = null;
+        for (Callback<Object> callback : callbacks) {
+            try {
+                callback.success(result, response);
+            } catch (RuntimeException e) {
+                if (thrown == null)
+                    thrown = e;
+            }
+        }
+        if (thrown != null)
+            throw thrown;
+    }
+
+    private static void deliverFailure(List<Callback<Object>> callbacks, RetrofitError error) {
+        RuntimeException thrown = null;
+        for (Callback<Object> callback : callbacks) {
+            try {
+                callback.failure(error);
+            } catch (RuntimeException e) {
+                if (thrown == null)
+                    thrown = e;
+            }
+        }
+        if (thrown != null)
+            throw thrown;
+    }
+
+    private List<Callback<Object>> complete(String key, List<Callback<Object>> waiting) {
+        synchronized (mInFlight) {
+            // The entry may belong to a later request if this one has already completed
+            if (mInFlight.get(key) != waiting)
+                return new ArrayList<>();
+            mInFlight.remove(key);
+            return waiting;
+        }
+    }
+
+    /***
+     * Return the number of distinct requests currently in flight.
+     *
+     * @return The number of requests.
+     */
+    public int getInFlightCount() {
+        synchronized (mInFlight) {
+            return mInFlight.size();
+        }
+    }
+
+}
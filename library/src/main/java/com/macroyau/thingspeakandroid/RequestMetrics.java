@@ -0,0 +1,138 @@
+package com.macroyau.thingspeakandroid;
+
+import retrofit.RetrofitError;
+
+/***
+ * Metrics of a single completed service call. The latency of the call is split into phases, so that the time spent waiting for a rate
+ * limit or retry, on the network, decoding the response and in listeners can be told apart.
+ *
+ * @author Macro Yau
+ */
+public final class RequestMetrics {
+
+    /***
+     * Phase of a service call.
+     */
+    public enum Phase {
+        /***
+         * From the call until its last attempt is sent, including rate limiting and retry backoff.
+         */
+        QUEUE,
+        /***
+         * Sending the request and receiving the response, including the download of the response body.
+         */
+        NETWORK,
+        /***
+         * Decoding the response body, excluding the time waiting for the body to be downloaded.
+         */
+        DECODE,
+        /***
+         * Handing the result over to the callback executor and running the listeners.
+         */
+        DISPATCH
+    }
+
+    private final String mEndpoint;
+    private final boolean mSuccess;
+    private final int mStatus;
+    private final RetrofitError.Kind mErrorKind;
+    private final long mQueueNanos, mNetworkNanos, mDecodeNanos, mDispatchNanos;
+    private final long mRequestBytes, mResponseBytes;
+
+    RequestMetrics(String endpoint, boolean success, int status, RetrofitError.Kind errorKind, long queueNanos, long networkNanos,
+                   long decodeNanos, long dispatchNanos, long requestBytes, long responseBytes) {
+        this.mEndpoint = endpoint;
+        this.mSuccess = success;
+        this.mStatus = status;
+        this.mErrorKind = errorKind;
+        this.mQueueNanos = queueNanos;
+        this.mNetworkNanos = networkNanos;
+        this.mDecodeNanos = decodeNanos;
+        this.mDispatchNanos = dispatchNanos;
+        this.mRequestBytes = requestBytes;
+        this.mResponseBytes = responseBytes;
+    }
+
+    /***
+     * Return the name of the service method, e.g. getChannelFeed.
+     *
+     * @return The endpoint name.
+     */
+    public String getEndpoint() {
+        return mEndpoint;
+    }
+
+    /***
+     * Return whether the call succeeded.
+     *
+     * @return True if successful.
+     */
+    public boolean isSuccess() {
+        return mSuccess;
+    }
+
+    /***
+     * Return the HTTP status of the response.
+     *
+     * @return The status, or 0 if no response is received.
+     */
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /***
+     * Return the kind of error of a failed call.
+     *
+     * @return The kind of error, or null if successful.
+     */
+    public RetrofitError.Kind getErrorKind() {
+        return mErrorKind;
+    }
+
+    /***
+     * Return the duration of a phase of the call.
+     *
+     * @param phase The phase.
+     * @return The duration in nanoseconds.
+     */
+    public long getNanos(Phase phase) {
+        switch (phase) {
+            case QUEUE:
+                return mQueueNanos;
+            case NETWORK:
+                return mNetworkNanos;
+            case DECODE:
+                return mDecodeNanos;
+            default:
+                return mDispatchNanos;
+        }
+    }
+
+    /***
+     * Return the total duration of the call.
+     *
+     * @return The duration in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return mQueueNanos + mNetworkNanos + mDecodeNanos + mDispatchNanos;
+    }
+
+    /***
+     * Return the size of the request body.
+     *
+     * @return The size in bytes.
+     */
+    public long getRequestBytes() {
+        return mRequestBytes;
+    }
+
+    /***
+     * Return the size of the response body as read, i.e. after any transparent decompression.
+     *
+     * @return The size in bytes, or 0 if there is no body.
+     */
+    public long getResponseBytes() {
+        return mResponseBytes;
+    }
+
+}
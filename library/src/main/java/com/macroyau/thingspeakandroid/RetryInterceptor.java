@@ -0,0 +1,198 @@
+package com.macroyau.thingspeakandroid;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.client.Response;
+
+/***
+ * Interceptor retrying calls failed by transient errors, i.e. network errors and HTTP status 408, 429, 500, 502, 503 and 504. Retries are
+ * delayed with exponential backoff and jitter, so that many clients failing together do not retry together, and never earlier than a
+ * Retry-After header asks for. Only read-only calls are retried by default, as writes may have taken effect before failing.
+ *
+ * @author Macro Yau
+ */
+public class RetryInterceptor implements ServiceInterceptor {
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_INITIAL_DELAY = 1000L;
+    private static final long DEFAULT_MAX_DELAY = 30 * 1000L;
+    private static final long DEFAULT_MAX_RETRY_AFTER = 60 * 1000L;
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final ScheduledExecutorService mScheduler;
+    private final Random mRandom = new Random();
+    private final Map<String, Integer> mEndpointMaxAttempts = new ConcurrentHashMap<>();
+    private volatile int mMaxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long mInitialDelay = DEFAULT_INITIAL_DELAY;
+    private volatile long mMaxDelay = DEFAULT_MAX_DELAY;
+    private volatile long mMaxRetryAfter = DEFAULT_MAX_RETRY_AFTER;
+    private volatile boolean mRetryWrites;
+
+    RetryInterceptor(ScheduledExecutorService scheduler) {
+        this.mScheduler = scheduler;
+    }
+
+    /***
+     * Set the maximum number of attempts of each call, including the first one. The default is 3.
+     *
+     * @param maxAttempts The number of attempts, or 1 to disable retries.
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.mMaxAttempts = Math.max(maxAttempts, 1);
+    }
+
+    /***
+     * Set the maximum number of attempts of calls to a specific endpoint, overriding {@link #setMaxAttempts(int)}.
+     *
+     * @param endpoint The name of the service method, e.g. getChannelFeed.
+     * @param maxAttempts The number of attempts, or 1 to disable retries.
+     */
+    public void setMaxAttempts(String endpoint, int maxAttempts) {
+        mEndpointMaxAttempts.put(endpoint, Math.max(maxAttempts, 1));
+    }
+
+    /***
+     * Set the delay before the first retry, doubled for each further retry up to a maximum. The actual delay is randomized between half
+     * and all of it. The defaults are 1 second and 30 seconds.
+     *
+     * @param initialMillis The delay before the first retry in milliseconds.
+     * @param maxMillis The maximum delay in milliseconds.
+     */
+    public void setDelay(long initialMillis, long maxMillis) {
+        this.mInitialDelay = Math.max(initialMillis, 1);
+        this.mMaxDelay = Math.max(maxMillis, mInitialDelay);
+    }
+
+    /***
+     * Set the longest Retry-After delay to wait for. Calls asked to wait longer fail immediately. The default is 1 minute.
+     *
+     * @param millis The delay in milliseconds.
+     */
+    public void setMaxRetryAfter(long millis) {
+        this.mMaxRetryAfter = millis;
+    }
+
+    /***
+     * Set whether calls writing data are retried as well. They are not retried by default.
+     *
+     * @param retryWrites True to retry all calls.
+     */
+    public void setRetryWrites(boolean retryWrites) {
+        this.mRetryWrites = retryWrites;
+    }
+
+    @Override
+    public void intercept(ServiceCall call, Callback<Object> callback) {
+        Integer maxAttempts = mEndpointMaxAttempts.get(call.getEndpoint());
+        int attempts = maxAttempts != null ? maxAttempts : mMaxAttempts;
+        if (attempts <= 1 || !(call.isReadOnly() || mRetryWrites))
+            call.proceed(callback);
+        else
+            attempt(call, callback, 1, attempts);
+    }
+
+    private void attempt(final ServiceCall call, final Callback<Object> callback, final int attempt, final int maxAttempts) {
+        call.proceed(new Callback<Object>() {
+            @Override
+            public void success(Object result, Response response) {
+                callback.success(result, response);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                long delay = attempt < maxAttempts ? getRetryDelay(error, attempt) : -1;
+                if (delay < 0) {
+                    callback.failure(error);
+                    return;
+                }
+
+                mScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        attempt(call, callback, attempt + 1, maxAttempts);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private long getRetryDelay(RetrofitError error, int attempt) {
+        if (!isTransient(error))
+            return -1;
+
+        long backoff = Math.min(mMaxDelay, mInitialDelay << Math.min(attempt - 1, 20));
+        long delay;
+        synchronized (mRandom) {
+            delay = backoff / 2 + (long) (mRandom.nextDouble() * (backoff / 2));
+        }
+
+        long retryAfter = getRetryAfterMillis(error);
+        if (retryAfter > mMaxRetryAfter)
+            return -1;
+        return Math.max(delay, retryAfter);
+    }
+
+    /***
+     * Return whether a call failed because of a condition that may clear by itself, i.e. a network error or HTTP status 408, 429, 500,
+     * 502, 503 or 504.
+     */
+    static boolean isTransient(RetrofitError error) {
+        if (error.getKind() == RetrofitError.Kind.NETWORK)
+            return true;
+        if (error.getKind() != RetrofitError.Kind.HTTP || error.getResponse() == null)
+            return false;
+
+        switch (error.getResponse().getStatus()) {
+            case 408:
+            case 429:
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /***
+     * Return the delay asked for by the Retry-After header of a failed call, given either in seconds or as an HTTP date.
+     *
+     * @return The delay in milliseconds, or -1 if there is no valid header.
+     */
+    static long getRetryAfterMillis(RetrofitError error) {
+        Response response = error.getResponse();
+        if (response == null || response.getHeaders() == null)
+            return -1;
+
+        for (Header header : response.getHeaders()) {
+            if (!RETRY_AFTER_HEADER.equalsIgnoreCase(header.getName()) || header.getValue() == null)
+                continue;
+
+            String value = header.getValue().trim();
+            try {
+                return Math.max(Long.parseLong(value) * 1000, 0);
+            } catch (NumberFormatException e) {
+                try {
+                    SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+                    return Math.max(format.parse(value).getTime() - System.currentTimeMillis(), 0);
+                } catch (ParseException ignored) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+}
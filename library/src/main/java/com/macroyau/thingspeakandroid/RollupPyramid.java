@@ -0,0 +1,481 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/***
+ * Multi-resolution rollups of a field feed, e.g. to chart a month or a year of entries. Each level aggregates the entries into buckets of a
+ * fixed duration, keeping the number of entries, the sum, the minimum and the maximum of each bucket, so that peaks are not hidden as with
+ * the first value of a timescale. The levels are updated incrementally as entries arrive, in constant time per entry and level, and each
+ * level keeps a bounded number of the latest buckets.
+ * <p>
+ * Entries may be added in any order, e.g. older history from a {@link com.macroyau.thingspeakandroid.FeedBackfill} or lazily loaded
+ * segments after the latest feed: an entry older than the buckets of a level is merged into the bucket it belongs to. The time ranges of
+ * the feeds added are remembered, and entries within them are ignored, so that overlapping feeds can be added as is. Ranges older than
+ * the buckets kept are forgotten with them.
+ *
+ * @author Macro Yau
+ */
+public class RollupPyramid {
+
+    /***
+     * Aggregates of the buckets of a level within a time range.
+     */
+    public static final class Buckets {
+
+        private final long mBucketWidth;
+        private final int mSize;
+        private final long[] mStart;
+        private final int[] mCount;
+        private final double[] mSum, mMin, mMax;
+
+        private Buckets(long bucketWidth, int size) {
+            this.mBucketWidth = bucketWidth;
+            this.mSize = size;
+            this.mStart = new long[size];
+            this.mCount = new int[size];
+            this.mSum = new double[size];
+            this.mMin = new double[size];
+            this.mMax = new double[size];
+        }
+
+        /***
+         * Return the duration of each bucket.
+         *
+         * @return The duration in milliseconds.
+         */
+        public long getBucketWidth() {
+            return mBucketWidth;
+        }
+
+        /***
+         * Return the number of buckets.
+         *
+         * @return The number of buckets.
+         */
+        public int size() {
+            return mSize;
+        }
+
+        /***
+         * Return the start date of a specific bucket.
+         *
+         * @param index The index of the bucket.
+         * @return The start date in milliseconds since epoch.
+         */
+        public long getStart(int index) {
+            return mStart[index];
+        }
+
+        /***
+         * Return the number of entries in a specific bucket.
+         *
+         * @param index The index of the bucket.
+         * @return The number of entries.
+         */
+        public int getCount(int index) {
+            return mCount[index];
+        }
+
+        /***
+         * Return the sum of the values in a specific bucket.
+         *
+         * @param index The index of the bucket.
+         * @return The sum.
+         */
+        public double getSum(int index) {
+            return mSum[index];
+        }
+
+        /***
+         * Return the average of the values in a specific bucket.
+         *
+         * @param index The index of the bucket.
+         * @return The average.
+         */
+        public double getAverage(int index) {
+            return mSum[index] / mCount[index];
+        }
+
+        /***
+         * Return the minimum value in a specific bucket.
+         *
+         * @param index The index of the bucket.
+         * @return The minimum value.
+         */
+        public double getMin(int index) {
+            return mMin[index];
+        }
+
+        /***
+         * Return the maximum value in a specific bucket.
+         *
+         * @param index The index of the bucket.
+         * @return The maximum value.
+         */
+        public double getMax(int index) {
+            return mMax[index];
+        }
+
+    }
+
+    /***
+     * Buckets of a single duration in a ring buffer, the oldest bucket being replaced when it is full.
+     */
+    private static final class Level {
+
+        private final long mWidth;
+        private final long[] mStart;
+        private final int[] mCount;
+        private final double[] mSum, mMin, mMax;
+        private int mHead;
+        private int mSize;
+
+        Level(long width, int capacity) {
+            this.mWidth = width;
+            this.mStart = new long[capacity];
+            this.mCount = new int[capacity];
+            this.mSum = new double[capacity];
+            this.mMin = new double[capacity];
+            this.mMax = new double[capacity];
+        }
+
+        void add(long date, double value) {
+            final long start = date - (date % mWidth);
+            int last = mSize == 0 ? -1 : slot(mSize - 1);
+            if (last != -1 && mStart[last] == start) {
+                update(last, value);
+                return;
+            }
+
+            // Entries usually arrive in chronological order, so the bucket is only searched for older entries
+            int index = last == -1 || mStart[last] < start ? mSize : indexAfter(start);
+            if (index < mSize && getStart(index) == start) {
+                update(slot(index), value);
+                return;
+            }
+
+            if (mSize == mStart.length) {
+                // Older than all buckets kept
+                if (index == 0)
+                    return;
+                mHead = slot(1);
+                mSize--;
+                index--;
+            }
+            for (int i = mSize; i > index; i--)
+                move(slot(i - 1), slot(i));
+            mSize++;
+
+            int s = slot(index);
+            mStart[s] = start;
+            mCount[s] = 1;
+            mSum[s] = value;
+            mMin[s] = value;
+            mMax[s] = value;
+        }
+
+        private void update(int s, double value) {
+            mCount[s]++;
+            mSum[s] += value;
+            if (value < mMin[s])
+                mMin[s] = value;
+            if (value > mMax[s])
+                mMax[s] = value;
+        }
+
+        private void move(int from, int to) {
+            mStart[to] = mStart[from];
+            mCount[to] = mCount[from];
+            mSum[to] = mSum[from];
+            mMin[to] = mMin[from];
+            mMax[to] = mMax[from];
+        }
+
+        long getStart(int index) {
+            return mStart[slot(index)];
+        }
+
+        /***
+         * Return the index of the first bucket ending after the specific date, by binary search.
+         */
+        int indexAfter(long date) {
+            int low = 0, high = mSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (getStart(mid) + mWidth <= date)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+
+        Buckets copy(int from, int to) {
+            Buckets buckets = new Buckets(mWidth, to - from);
+            for (int i = from; i < to; i++) {
+                int s = slot(i);
+                buckets.mStart[i - from] = mStart[s];
+                buckets.mCount[i - from] = mCount[s];
+                buckets.mSum[i - from] = mSum[s];
+                buckets.mMin[i - from] = mMin[s];
+                buckets.mMax[i - from] = mMax[s];
+            }
+            return buckets;
+        }
+
+        private int slot(int index) {
+            int slot = mHead + index;
+            return slot >= mStart.length ? slot - mStart.length : slot;
+        }
+
+    }
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long[] DEFAULT_BUCKET_WIDTHS = {MINUTE, 10 * MINUTE, 60 * MINUTE, 24 * 60 * MINUTE};
+    private static final int DEFAULT_CAPACITY = 1440;
+
+    private final int mFieldId;
+    private final Level[] mLevels;
+    private final TreeMap<Long, Long> mAddedRanges = new TreeMap<>();
+    private long mLastCreatedAt = Long.MIN_VALUE;
+
+    /***
+     * Constructor for rollups at 1 minute, 10 minutes, 1 hour and 1 day, each keeping the latest 1440 buckets.
+     *
+     * @param fieldId The ID of the field.
+     */
+    public RollupPyramid(int fieldId) {
+        this(fieldId, DEFAULT_BUCKET_WIDTHS, DEFAULT_CAPACITY);
+    }
+
+    /***
+     * Constructor for rollups of specific durations. Buckets are aligned to multiples of their duration since epoch, i.e. in UTC.
+     *
+     * @param fieldId The ID of the field.
+     * @param bucketWidths The durations of the buckets of each level in milliseconds, in ascending order.
+     * @param capacity The maximum number of buckets kept in each level.
+     */
+    public RollupPyramid(int fieldId, long[] bucketWidths, int capacity) {
+        if (bucketWidths.length == 0)
+            throw new IllegalArgumentException("No rollup level");
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+
+        this.mFieldId = fieldId;
+        this.mLevels = new Level[bucketWidths.length];
+        for (int i = 0; i < bucketWidths.length; i++) {
+            if (bucketWidths[i] <= 0 || (i > 0 && bucketWidths[i] <= bucketWidths[i - 1]))
+                throw new IllegalArgumentException("Invalid bucket width " + bucketWidths[i]);
+            mLevels[i] = new Level(bucketWidths[i], capacity);
+        }
+    }
+
+    /***
+     * Return the ID of the field.
+     *
+     * @return The ID of the field.
+     */
+    public int getFieldId() {
+        return mFieldId;
+    }
+
+    /***
+     * Return the number of levels, from the finest to the coarsest.
+     *
+     * @return The number of levels.
+     */
+    public int getLevelCount() {
+        return mLevels.length;
+    }
+
+    /***
+     * Return the duration of the buckets of a specific level.
+     *
+     * @param level The index of the level.
+     * @return The duration in milliseconds.
+     */
+    public long getBucketWidth(int level) {
+        return mLevels[level].mWidth;
+    }
+
+    /***
+     * Add an entry to all levels. Missing values and entries within the time range of a feed already added are ignored.
+     *
+     * @param createdAt The date of creation of the entry in milliseconds since epoch.
+     * @param value The value of the field.
+     */
+    public synchronized void add(long createdAt, double value) {
+        if (isAdded(createdAt))
+            return;
+        addEntry(createdAt, value);
+        addRange(createdAt, createdAt);
+        trimRanges();
+    }
+
+    /***
+     * Add the entries of a feed in chronological order, except those within the time range of a feed already added. Only the new entries
+     * are visited when the feed overlaps the latest feed added, so that a refreshed feed window can be added on every update.
+     * <p>
+     * The feed must hold all entries between its first and last ones, as its time range is then ignored by later feeds. Sampled feeds,
+     * e.g. retrieved with a timescale, must not be added, or the rollups would miss the other entries of their time range.
+     *
+     * @param columns The entries of the feed.
+     */
+    public synchronized void addAll(FeedColumns columns) {
+        final int size = columns.size();
+        if (!columns.hasField(mFieldId) || size == 0)
+            return;
+
+        final long[] createdAt = columns.getCreatedAtColumn();
+        final double[] values = columns.getFieldColumn(mFieldId);
+
+        // Entries within the latest range are skipped without being visited, and older entries are checked against the other ranges
+        Map.Entry<Long, Long> latest = mAddedRanges.lastEntry();
+        int from = latest == null ? size : indexAfter(createdAt, size, latest.getKey() - 1);
+        int to = latest == null ? size : indexAfter(createdAt, size, latest.getValue());
+        for (int i = 0; i < from; i++) {
+            if (!isAdded(createdAt[i]))
+                addEntry(createdAt[i], values[i]);
+        }
+        for (int i = to; i < size; i++)
+            addEntry(createdAt[i], values[i]);
+
+        // A feed holds all entries between its first and last ones
+        addRange(createdAt[0], createdAt[size - 1]);
+        trimRanges();
+    }
+
+    /***
+     * Return the index of the first date after the specific date in ascending dates, by binary search.
+     */
+    private static int indexAfter(long[] dates, int size, long date) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dates[mid] <= date)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private void addEntry(long createdAt, double value) {
+        if (Double.isNaN(value))
+            return;
+        mLastCreatedAt = Math.max(mLastCreatedAt, createdAt);
+        for (Level level : mLevels)
+            level.add(createdAt, value);
+    }
+
+    private boolean isAdded(long createdAt) {
+        Map.Entry<Long, Long> range = mAddedRanges.floorEntry(createdAt);
+        return range != null && createdAt <= range.getValue();
+    }
+
+    private void addRange(long start, long end) {
+        // Merge with the overlapping ranges
+        Map.Entry<Long, Long> range = mAddedRanges.floorEntry(start);
+        if (range != null && range.getValue() >= start) {
+            start = range.getKey();
+            end = Math.max(end, range.getValue());
+        }
+        range = mAddedRanges.ceilingEntry(start);
+        while (range != null && range.getKey() <= end) {
+            end = Math.max(end, range.getValue());
+            mAddedRanges.remove(range.getKey());
+            range = mAddedRanges.higherEntry(start);
+        }
+        mAddedRanges.put(start, end);
+    }
+
+    /***
+     * Remove the ranges before the oldest bucket of every level once all levels are full, as entries within them are dropped anyway. This
+     * bounds the ranges by the history kept, even when single entries are added one by one.
+     */
+    private void trimRanges() {
+        long oldest = Long.MAX_VALUE;
+        for (Level level : mLevels) {
+            if (level.mSize < level.mStart.length)
+                return;
+            oldest = Math.min(oldest, level.getStart(0));
+        }
+
+        Map.Entry<Long, Long> range = mAddedRanges.firstEntry();
+        while (range != null && range.getValue() < oldest) {
+            mAddedRanges.remove(range.getKey());
+            range = mAddedRanges.firstEntry();
+        }
+    }
+
+    synchronized int getAddedRangeCount() {
+        return mAddedRanges.size();
+    }
+
+    /***
+     * Return the date of creation of the last entry added.
+     *
+     * @return The date in milliseconds since epoch, or -1 if no entry is added.
+     */
+    public synchronized long getEndDate() {
+        return mLastCreatedAt == Long.MIN_VALUE ? -1 : mLastCreatedAt;
+    }
+
+    /***
+     * Return the start date of the earliest bucket kept by any level, i.e. the start of the history covered by the rollups.
+     *
+     * @return The date in milliseconds since epoch, or -1 if no entry is added.
+     */
+    public synchronized long getStartDate() {
+        // Coarser levels cover a longer history with the same capacity
+        Level coarsest = mLevels[mLevels.length - 1];
+        return coarsest.mSize == 0 ? -1 : coarsest.getStart(0);
+    }
+
+    /***
+     * Select the finest level with at most a specific number of buckets within a time range.
+     *
+     * @param start The start date of the time range in milliseconds since epoch.
+     * @param end The end date of the time range in milliseconds since epoch.
+     * @param maxBuckets The maximum number of buckets, e.g. the width of the chart view in pixels.
+     * @return The index of the level, or the coarsest level if all have more buckets.
+     */
+    public int selectLevel(long start, long end, int maxBuckets) {
+        final long duration = Math.max(end - start, 0);
+        for (int i = 0; i < mLevels.length; i++) {
+            if (duration / mLevels[i].mWidth < maxBuckets)
+                return i;
+        }
+        return mLevels.length - 1;
+    }
+
+    /***
+     * Return the buckets of a specific level overlapping a time range.
+     *
+     * @param level The index of the level.
+     * @param start The start date of the time range in milliseconds since epoch.
+     * @param end The end date of the time range in milliseconds since epoch.
+     * @return A copy of the buckets in chronological order.
+     */
+    public synchronized Buckets getBuckets(int level, long start, long end) {
+        Level l = mLevels[level];
+        int from = l.indexAfter(start);
+        int to = l.indexAfter(end + l.mWidth);
+        return l.copy(from, Math.max(to, from));
+    }
+
+    /***
+     * Return all buckets of a specific level.
+     *
+     * @param level The index of the level.
+     * @return A copy of the buckets in chronological order.
+     */
+    public synchronized Buckets getBuckets(int level) {
+        Level l = mLevels[level];
+        return l.copy(0, l.mSize);
+    }
+
+}
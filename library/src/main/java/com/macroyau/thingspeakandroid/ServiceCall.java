@@ -0,0 +1,199 @@
+package com.macroyau.thingspeakandroid;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import retrofit.Callback;
+import retrofit.http.GET;
+import retrofit.http.Query;
+import retrofit.http.QueryMap;
+
+/***
+ * An asynchronous call to a Retrofit service method passing through the {@link com.macroyau.thingspeakandroid.ServiceInterceptor} chain of a
+ * {@link com.macroyau.thingspeakandroid.ThingSpeakClient}.
+ *
+ * @author Macro Yau
+ */
+public final class ServiceCall {
+
+    /***
+     * Priority of calls that should be made before all others, e.g. user-initiated refreshes.
+     */
+    public static final int PRIORITY_HIGH = 10;
+
+    /***
+     * Default priority of calls.
+     */
+    public static final int PRIORITY_NORMAL = 0;
+
+    /***
+     * Priority of calls that may wait, e.g. background backfills.
+     */
+    public static final int PRIORITY_LOW = -10;
+
+    private static final String API_KEY_PARAM = "api_key";
+
+    private final Object mService;
+    private final Method mMethod;
+    private final Object[] mArguments;
+    private final List<ServiceInterceptor> mInterceptors;
+    private final int mPriority;
+    private final int mIndex;
+    private final String mVariant;
+    private String mKey;
+    private MetricsInterceptor.Trace mTrace;
+
+    ServiceCall(Object service, Method method, Object[] arguments, List<ServiceInterceptor> interceptors, int priority, String variant) {
+        this(service, method, arguments, interceptors, priority, variant, 0);
+    }
+
+    private ServiceCall(Object service, Method method, Object[] arguments, List<ServiceInterceptor> interceptors, int priority,
+                        String variant, int index) {
+        this.mService = service;
+        this.mMethod = method;
+        this.mArguments = arguments;
+        this.mInterceptors = interceptors;
+        this.mPriority = priority;
+        this.mVariant = variant;
+        this.mIndex = index;
+    }
+
+    /***
+     * Return the name of the service method, e.g. getChannelFeed.
+     *
+     * @return The endpoint name.
+     */
+    public String getEndpoint() {
+        return mMethod.getName();
+    }
+
+    /***
+     * Return the service method.
+     *
+     * @return The service method.
+     */
+    public Method getMethod() {
+        return mMethod;
+    }
+
+    /***
+     * Return a copy of the arguments of the call, excluding the callback.
+     *
+     * @return The arguments.
+     */
+    public Object[] getArguments() {
+        return Arrays.copyOf(mArguments, mArguments.length - 1);
+    }
+
+    /***
+     * Return the priority of the call, e.g. {@link #PRIORITY_NORMAL}. Calls of higher priority are preferred by interceptors queueing calls.
+     *
+     * @return The priority.
+     */
+    public int getPriority() {
+        return mPriority;
+    }
+
+    /***
+     * Return the API key sent with the call, either as a query parameter or in the query parameter map.
+     *
+     * @return The API key, or null if the call has none.
+     */
+    public String getApiKey() {
+        Annotation[][] annotations = mMethod.getParameterAnnotations();
+        for (int i = 0; i < mArguments.length - 1; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof Query && API_KEY_PARAM.equals(((Query) annotation).value()) && mArguments[i] != null)
+                    return mArguments[i].toString();
+                if (annotation instanceof QueryMap && mArguments[i] instanceof Map) {
+                    Object apiKey = ((Map<?, ?>) mArguments[i]).get(API_KEY_PARAM);
+                    if (apiKey != null)
+                        return apiKey.toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    /***
+     * Return whether the call only reads data, i.e. it is an HTTP GET request.
+     *
+     * @return True for read-only calls.
+     */
+    public boolean isReadOnly() {
+        return mMethod.isAnnotationPresent(GET.class);
+    }
+
+    /***
+     * Return a key identifying identical calls, made of the endpoint, its normalized arguments and the variant of the service decoding the
+     * response, e.g. its feed projection.
+     *
+     * @return The key.
+     */
+    public String getKey() {
+        if (mKey == null) {
+            StringBuilder builder = new StringBuilder(mMethod.getDeclaringClass().getSimpleName())
+                    .append('.').append(mMethod.getName());
+            for (int i = 0; i < mArguments.length - 1; i++) {
+                Object argument = mArguments[i];
+                builder.append('|');
+                if (argument instanceof Map)
+                    builder.append(new TreeMap<>((Map<?, ?>) argument));
+                else
+                    builder.append(argument);
+            }
+            if (mVariant != null)
+                builder.append('|').append(mVariant);
+            mKey = builder.toString();
+        }
+        return mKey;
+    }
+
+    /***
+     * Pass the call on to the next interceptor, or perform the actual request if this is the last interceptor. A call may be proceeded more than once,
+     * e.g. to retry it.
+     *
+     * @param callback The callback receiving the result.
+     */
+    @SuppressWarnings("unchecked")
+    public void proceed(Callback<Object> callback) {
+        if (mIndex < mInterceptors.size()) {
+            ServiceCall next = new ServiceCall(mService, mMethod, mArguments, mInterceptors, mPriority, mVariant, mIndex + 1);
+            next.mKey = mKey;
+            next.mTrace = mTrace;
+            mInterceptors.get(mIndex).intercept(next, callback);
+            return;
+        }
+
+        if (mTrace != null)
+            mTrace.onSent();
+
+        Object[] arguments = mArguments.clone();
+        arguments[arguments.length - 1] = callback;
+        try {
+            mMethod.invoke(mService, arguments);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    void setTrace(MetricsInterceptor.Trace trace) {
+        this.mTrace = trace;
+    }
+
+    @Override
+    public String toString() {
+        return getKey();
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.macroyau.thingspeakandroid;
+
+import retrofit.Callback;
+
+/***
+ * Interceptor for asynchronous calls to {@link com.macroyau.thingspeakandroid.ThingSpeakService} and {@link com.macroyau.thingspeakandroid.TalkBackService}
+ * made through a {@link com.macroyau.thingspeakandroid.ThingSpeakClient}. An interceptor may pass the call on, delay it, repeat it or complete
+ * it by itself.
+ *
+ * @author Macro Yau
+ */
+public interface ServiceInterceptor {
+
+    /***
+     * Intercept a service call.
+     *
+     * @param call The service call; use {@link com.macroyau.thingspeakandroid.ServiceCall#proceed(retrofit.Callback)} to pass it on to the next interceptor.
+     * @param callback The callback to complete exactly once with the result of the call.
+     */
+    void intercept(ServiceCall call, Callback<Object> callback);
+
+}
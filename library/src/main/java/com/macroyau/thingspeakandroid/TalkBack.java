@@ -1,17 +1,12 @@
 package com.macroyau.thingspeakandroid;
 
-import com.google.gson.FieldNamingPolicy;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.macroyau.thingspeakandroid.model.TalkBackCommand;
 
 import java.util.List;
 
 import retrofit.Callback;
-import retrofit.RestAdapter;
 import retrofit.RetrofitError;
 import retrofit.client.Response;
-import retrofit.converter.GsonConverter;
 
 /***
  * Java representation of a ThingSpeak TalkBack. Please refer to https://thingspeak.com/docs/talkback for the actual mechanism of the TalkBack API.
@@ -36,10 +31,25 @@ public class TalkBack {
 
     }
 
-    private static final String THINGSPEAK_API = "https://api.thingspeak.com";
+    /***
+     * Listener for failed requests of a TalkBack.
+     */
+    public interface TalkBackErrorListener {
+
+        /***
+         * A request of the specific TalkBack failed after all retries, or failed fast because the API is degraded.
+         *
+         * @param talkBackId The ID of this specific TalkBack.
+         * @param error The error of the failed request.
+         */
+        void onTalkBackRequestFailed(long talkBackId, RetrofitError error);
+
+    }
 
     private TalkBackUpdateListener mListener;
+    private TalkBackErrorListener mErrorListener;
 
+    private ThingSpeakClient mClient;
     private TalkBackService mService;
 
     private long mTalkBackId;
@@ -54,20 +64,22 @@ public class TalkBack {
      * @param talkBackApiKey The API key for this specific TalkBack.
      */
     public TalkBack(long talkBackId, String talkBackApiKey) {
+        this(talkBackId, talkBackApiKey, ThingSpeakClient.getDefault());
+    }
+
+    /***
+     * Constructor using a specific {@link com.macroyau.thingspeakandroid.ThingSpeakClient}.
+     *
+     * @param talkBackId The ID of this specific TalkBack.
+     * @param talkBackApiKey The API key for this specific TalkBack.
+     * @param client The client used to perform requests.
+     */
+    public TalkBack(long talkBackId, String talkBackApiKey, ThingSpeakClient client) {
         this.mTalkBackId = talkBackId;
         this.mTalkBackApiKey = talkBackApiKey;
 
-        Gson gson = new GsonBuilder()
-                .setDateFormat("yyyy-MM-dd'T'HH:mm:ssZ")
-                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-                .create();
-
-        RestAdapter restAdapter = new RestAdapter.Builder()
-                .setEndpoint(THINGSPEAK_API)
-                .setConverter(new GsonConverter(gson))
-                .build();
-
-        mService = restAdapter.create(TalkBackService.class);
+        mClient = client;
+        mService = client.getTalkBackService();
 
         mService.listAllCommands(talkBackId, talkBackApiKey, new Callback<List<TalkBackCommand>>() {
             @Override
@@ -78,10 +90,39 @@ public class TalkBack {
             @Override
             public void failure(RetrofitError error) {
                 mCommandsList = null;
+                notifyRequestFailed(error);
             }
         });
     }
 
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.TalkBack.TalkBackUpdateListener} to use.
+     *
+     * @param listener The listener.
+     */
+    public void setTalkBackUpdateListener(TalkBackUpdateListener listener) {
+        this.mListener = listener;
+    }
+
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.TalkBack.TalkBackErrorListener} to use.
+     *
+     * @param listener The listener.
+     */
+    public void setTalkBackErrorListener(TalkBackErrorListener listener) {
+        this.mErrorListener = listener;
+    }
+
+    /**
+     * Set the priority of all requests of this TalkBack. Requests of higher priority are sent first when the
+     * {@link com.macroyau.thingspeakandroid.RateLimiter} of the client queues requests.
+     *
+     * @param priority The priority, e.g. {@link com.macroyau.thingspeakandroid.ServiceCall#PRIORITY_HIGH}.
+     */
+    public void setRequestPriority(int priority) {
+        mService = mClient.getTalkBackService(priority);
+    }
+
     /**
      * Add the specific command to be sent to the target device at the specific queue position.
      *
@@ -98,7 +139,7 @@ public class TalkBack {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
@@ -118,7 +159,7 @@ public class TalkBack {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
@@ -140,7 +181,7 @@ public class TalkBack {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
@@ -177,7 +218,7 @@ public class TalkBack {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
@@ -195,7 +236,7 @@ public class TalkBack {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
@@ -215,7 +256,7 @@ public class TalkBack {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
@@ -233,7 +274,7 @@ public class TalkBack {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
@@ -251,11 +292,107 @@ public class TalkBack {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
 
+    /**
+     * Add the specific command asynchronously as a future, without notifying any listener.
+     *
+     * @param commandString The command to be sent with a maximum length of 255 characters.
+     * @param position The position that the command will be appeared in the queue.
+     * @return The future added command.
+     * @see #addCommand(String, int)
+     */
+    public ThingSpeakFuture<TalkBackCommand> addCommandAsync(String commandString, int position) {
+        ThingSpeakFuture<TalkBackCommand> future = new ThingSpeakFuture<>(mClient);
+        mService.addCommand(mTalkBackId, mTalkBackApiKey, commandString, position, future.asCallback());
+        return future;
+    }
+
+    /**
+     * Get the command of the specific ID asynchronously as a future, without notifying any listener.
+     *
+     * @param commandId The ID of the command to be retrieved.
+     * @return The future command.
+     */
+    public ThingSpeakFuture<TalkBackCommand> getCommandAsync(long commandId) {
+        ThingSpeakFuture<TalkBackCommand> future = new ThingSpeakFuture<>(mClient);
+        mService.getCommand(mTalkBackId, commandId, mTalkBackApiKey, future.asCallback());
+        return future;
+    }
+
+    /**
+     * Update an existing command of the specific ID asynchronously as a future, without notifying any listener.
+     *
+     * @param commandId The ID of the command to be updated.
+     * @param commandString The new command string.
+     * @param position The new position in the queue.
+     * @return The future updated command.
+     */
+    public ThingSpeakFuture<TalkBackCommand> updateCommandAsync(long commandId, String commandString, int position) {
+        ThingSpeakFuture<TalkBackCommand> future = new ThingSpeakFuture<>(mClient);
+        mService.updateCommand(mTalkBackId, commandId, mTalkBackApiKey, commandString, position, future.asCallback());
+        return future;
+    }
+
+    /**
+     * Execute the next command in the queue asynchronously as a future, without notifying any listener.
+     *
+     * @return The future executed command.
+     */
+    public ThingSpeakFuture<TalkBackCommand> executeNextCommandAsync() {
+        ThingSpeakFuture<TalkBackCommand> future = new ThingSpeakFuture<>(mClient);
+        mService.executeNextCommand(mTalkBackId, mTalkBackApiKey, future.asCallback());
+        return future;
+    }
+
+    /**
+     * Get the most recently executed command asynchronously as a future, without notifying any listener.
+     *
+     * @return The future command.
+     */
+    public ThingSpeakFuture<TalkBackCommand> getLastExecutedCommandAsync() {
+        ThingSpeakFuture<TalkBackCommand> future = new ThingSpeakFuture<>(mClient);
+        mService.getLastExecutedCommand(mTalkBackId, mTalkBackApiKey, future.asCallback());
+        return future;
+    }
+
+    /**
+     * Delete an existing command of the specific ID asynchronously as a future, without notifying any listener.
+     *
+     * @param commandId The ID of the command to be deleted.
+     * @return The future deleted command.
+     */
+    public ThingSpeakFuture<TalkBackCommand> deleteCommandAsync(long commandId) {
+        ThingSpeakFuture<TalkBackCommand> future = new ThingSpeakFuture<>(mClient);
+        mService.deleteCommand(mTalkBackId, commandId, mTalkBackApiKey, future.asCallback());
+        return future;
+    }
+
+    /**
+     * Get a list of all commands of the TalkBack asynchronously as a future, without notifying any listener.
+     *
+     * @return The future list of commands.
+     */
+    public ThingSpeakFuture<List<TalkBackCommand>> listAllCommandsAsync() {
+        ThingSpeakFuture<List<TalkBackCommand>> future = new ThingSpeakFuture<>(mClient);
+        mService.listAllCommands(mTalkBackId, mTalkBackApiKey, future.asCallback());
+        return future;
+    }
+
+    /**
+     * Delete all commands of the TalkBack asynchronously as a future, without notifying any listener.
+     *
+     * @return The future list of remaining commands, empty if all commands are deleted.
+     */
+    public ThingSpeakFuture<List<TalkBackCommand>> deleteAllCommandsAsync() {
+        ThingSpeakFuture<List<TalkBackCommand>> future = new ThingSpeakFuture<>(mClient);
+        mService.deleteAllCommands(mTalkBackId, mTalkBackApiKey, future.asCallback());
+        return future;
+    }
+
     /**
      * Get a list of the currently available commands of the TalkBack.
      *
@@ -265,4 +402,9 @@ public class TalkBack {
         return mCommandsList;
     }
 
+    private void notifyRequestFailed(RetrofitError error) {
+        if (mErrorListener != null)
+            mErrorListener.onTalkBackRequestFailed(mTalkBackId, error);
+    }
+
 }
@@ -1,23 +1,25 @@
 package com.macroyau.thingspeakandroid;
 
-import com.google.gson.FieldNamingPolicy;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.macroyau.thingspeakandroid.model.BulkUpdate;
+import com.macroyau.thingspeakandroid.model.BulkUpdateResult;
 import com.macroyau.thingspeakandroid.model.ChannelFeed;
 import com.macroyau.thingspeakandroid.model.Feed;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+import com.macroyau.thingspeakandroid.model.FeedUpdate;
 import com.macroyau.thingspeakandroid.model.StatusUpdates;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import retrofit.Callback;
-import retrofit.RestAdapter;
 import retrofit.RetrofitError;
 import retrofit.client.Response;
-import retrofit.converter.GsonConverter;
 
 /***
  * Java representation of a ThingSpeak Channel.
@@ -74,6 +76,39 @@ public class ThingSpeakChannel {
 
     }
 
+    /***
+     * Listener for Channel feed update events in columnar form.
+     */
+    public interface ChannelFeedColumnsUpdateListener {
+
+        /***
+         * The specific Channel feed or field feed is updated.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param fieldId The ID of the specific field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+         * @param columns The feed entries in columnar form.
+         */
+        void onChannelFeedColumnsUpdated(long channelId, int fieldId, FeedColumns columns);
+
+    }
+
+    /***
+     * Listener for incremental feed synchronization events.
+     */
+    public interface FeedSyncListener {
+
+        /***
+         * New feed entries are merged into the local feed window.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param fieldId The ID of the synchronized field, or {@link com.macroyau.thingspeakandroid.ThingSpeakChannel#ALL_FIELDS} for the whole Channel feed.
+         * @param newFeeds The feed entries that are new since the last synchronization, in ascending order.
+         * @param mergedFeed The Channel feed containing the whole local feed window.
+         */
+        void onFeedSynced(long channelId, int fieldId, List<Feed> newFeeds, ChannelFeed mergedFeed);
+
+    }
+
     /***
      * Listener for Channel status update events.
      */
@@ -89,23 +124,73 @@ public class ThingSpeakChannel {
 
     }
 
-    private static final String THINGSPEAK_API = "https://api.thingspeak.com";
-    private static final String REQUEST_PARAMS_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    /***
+     * Listener for failed requests of a Channel.
+     */
+    public interface ChannelErrorListener {
+
+        /***
+         * A request of the specific Channel failed after all retries, or failed fast because the API is degraded. Failures to read or write
+         * the {@link com.macroyau.thingspeakandroid.FeedCache} are reported as well, with the cache directory as URL, and the affected
+         * cached feed is discarded.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param error The error of the failed request.
+         */
+        void onChannelRequestFailed(long channelId, RetrofitError error);
+
+    }
+
+    /***
+     * Internal observer of incremental feed synchronization results, notified even if no new entries are found.
+     */
+    interface FeedSyncObserver {
+
+        void onSyncCompleted(int fieldId, List<Feed> newFeeds);
+
+        void onSyncFailed(int fieldId, RetrofitError error);
+
+    }
+
+    /***
+     * Field ID used by {@link com.macroyau.thingspeakandroid.ThingSpeakChannel.FeedSyncListener} for the whole Channel feed.
+     */
+    public static final int ALL_FIELDS = 0;
+
+    /***
+     * Feed format of JSON documents, the default.
+     */
+    public static final int FORMAT_JSON = 0;
+
+    /***
+     * Feed format of CSV documents, smaller and faster to decode than JSON but without Channel information.
+     */
+    public static final int FORMAT_CSV = 1;
 
     private ChannelFeedUpdateListener mChannelFeedUpdateListener;
     private FeedEntryUpdateListener mFeedUpdateListener;
     private ChannelFieldFeedUpdateListener mChannelFieldFeedUpdateListener;
     private ChannelStatusUpdateListener mChannelStatusUpdateListener;
+    private FeedSyncListener mFeedSyncListener;
+    private FeedCache mFeedCache;
+    private ChannelFeedColumnsUpdateListener mChannelFeedColumnsUpdateListener;
+    private ChannelErrorListener mChannelErrorListener;
 
+    private ThingSpeakClient mClient;
     private ThingSpeakService mService;
 
     private long mChannelId;
     private String mReadApiKey;
-    private int mResults = 100;
-    private int mDays = -1;
-    private String mTimezone;
-    private Date mStartDate, mEndDate;
-    private String mTimescale;
+    private String mWriteApiKey;
+    private FeedWriter mFeedWriter;
+    private int mFeedFormat = FORMAT_JSON;
+    private int mRequestPriority = ServiceCall.PRIORITY_NORMAL;
+    private int[] mFeedProjection;
+    private volatile FeedQuery mQuery = FeedQuery.LATEST;
+
+    private final Map<Integer, FeedWindow> mFeedWindows = new HashMap<>();
+    private final List<FeedStream> mStreams = new CopyOnWriteArrayList<>();
+    private final Map<Integer, RollupPyramid> mRollupPyramids = new ConcurrentHashMap<>();
 
     /***
      * Constructor for public Channels.
@@ -123,20 +208,21 @@ public class ThingSpeakChannel {
      * @param readApiKey The Read API Key for this specific Channel.
      */
     public ThingSpeakChannel(long channelId, String readApiKey) {
+        this(channelId, readApiKey, ThingSpeakClient.getDefault());
+    }
+
+    /***
+     * Constructor for private Channels using a specific {@link com.macroyau.thingspeakandroid.ThingSpeakClient}.
+     *
+     * @param channelId The ID of this specific Channel.
+     * @param readApiKey The Read API Key for this specific Channel, or null for public Channels.
+     * @param client The client used to perform requests.
+     */
+    public ThingSpeakChannel(long channelId, String readApiKey, ThingSpeakClient client) {
         this.mChannelId = channelId;
         this.mReadApiKey = readApiKey;
-
-        Gson gson = new GsonBuilder()
-                .setDateFormat("yyyy-MM-dd'T'HH:mm:ssZ")
-                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-                .create();
-
-        RestAdapter restAdapter = new RestAdapter.Builder()
-                .setEndpoint(THINGSPEAK_API)
-                .setConverter(new GsonConverter(gson))
-                .build();
-
-        mService = restAdapter.create(ThingSpeakService.class);
+        this.mClient = client;
+        this.mService = client.getThingSpeakService();
     }
 
     /***
@@ -175,6 +261,80 @@ public class ThingSpeakChannel {
         this.mChannelStatusUpdateListener = listener;
     }
 
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.ThingSpeakChannel.ChannelFeedColumnsUpdateListener} to use.
+     *
+     * @param listener The listener.
+     */
+    public void setChannelFeedColumnsUpdateListener(ChannelFeedColumnsUpdateListener listener) {
+        this.mChannelFeedColumnsUpdateListener = listener;
+    }
+
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.ThingSpeakChannel.FeedSyncListener} to use.
+     *
+     * @param listener The listener.
+     */
+    public void setFeedSyncListener(FeedSyncListener listener) {
+        this.mFeedSyncListener = listener;
+    }
+
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.ThingSpeakChannel.ChannelErrorListener} to use.
+     *
+     * @param listener The listener.
+     */
+    public void setChannelErrorListener(ChannelErrorListener listener) {
+        this.mChannelErrorListener = listener;
+    }
+
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.FeedCache} used by {@link #loadChannelFeedColumns()} and {@link #loadChannelFieldFeedColumns(int)}.
+     * When the latest entries are requested, i.e. no days, start date, end date or timescale is set, cached entries are delivered first and then
+     * only the entries newer than the cached ones are retrieved. If more new entries exist than the number of results, the cached entries of
+     * the feed are discarded, as the entries in between are not retrieved. The cache is not used while a feed projection is set, as projected
+     * feeds lack the values of the other fields.
+     *
+     * @param cache The cache, or null to disable caching.
+     */
+    public synchronized void setFeedCache(FeedCache cache) {
+        this.mFeedCache = cache;
+    }
+
+    /***
+     * Set the format in which {@link #loadChannelFeedColumns()} and {@link #loadChannelFieldFeedColumns(int)} retrieve feeds. With
+     * {@link #FORMAT_CSV}, the delivered {@link com.macroyau.thingspeakandroid.model.FeedColumns} carry no Channel information.
+     *
+     * @param format {@link #FORMAT_JSON} or {@link #FORMAT_CSV}.
+     */
+    public void setFeedFormat(int format) {
+        this.mFeedFormat = format;
+    }
+
+    /***
+     * Set the priority of all requests of this specific Channel. Requests of higher priority are sent first when the
+     * {@link com.macroyau.thingspeakandroid.RateLimiter} of the client queues requests.
+     *
+     * @param priority The priority, e.g. {@link com.macroyau.thingspeakandroid.ServiceCall#PRIORITY_HIGH}.
+     */
+    public synchronized void setRequestPriority(int priority) {
+        this.mRequestPriority = priority;
+        this.mService = mClient.getThingSpeakService(priority, mFeedProjection);
+    }
+
+    /***
+     * Set the fields to keep when feeds of this specific Channel are decoded into
+     * {@link com.macroyau.thingspeakandroid.model.FeedColumns}. Values of other fields are skipped by the streaming decoder without being
+     * allocated. The projection only applies to the requests of this Channel, not to other Channels sharing its client. The
+     * {@link com.macroyau.thingspeakandroid.FeedCache} is not used while a projection is set.
+     *
+     * @param fieldIds The IDs of fields to keep, or null to keep all fields.
+     */
+    public synchronized void setFeedProjection(int... fieldIds) {
+        this.mFeedProjection = fieldIds == null ? null : fieldIds.clone();
+        this.mService = mClient.getThingSpeakService(mRequestPriority, mFeedProjection);
+    }
+
     /***
      * Set the Read API Key for a private channel.
      *
@@ -182,6 +342,29 @@ public class ThingSpeakChannel {
      */
     public void setReadApiKey(String readApiKey) {
         this.mReadApiKey = readApiKey;
+        resetFeedSync();
+    }
+
+    /***
+     * Set the Write API Key required to write readings to this specific Channel.
+     *
+     * @param writeApiKey The Write API Key for this specific Channel.
+     */
+    public void setWriteApiKey(String writeApiKey) {
+        this.mWriteApiKey = writeApiKey;
+    }
+
+    String getWriteApiKey() {
+        return mWriteApiKey;
+    }
+
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.FeedWriter.WriteListener} to use.
+     *
+     * @param listener The listener.
+     */
+    public void setFeedWriteListener(FeedWriter.WriteListener listener) {
+        getFeedWriter().setListener(listener);
     }
 
     /***
@@ -189,8 +372,8 @@ public class ThingSpeakChannel {
      *
      * @param timezone A valid timezone identifier (https://thingspeak.com/docs#timezones).
      */
-    public void setTimezone(String timezone) {
-        this.mTimezone = timezone;
+    public synchronized void setTimezone(String timezone) {
+        setFeedQuery(mQuery.newBuilder().setTimezone(timezone).build());
     }
 
     /***
@@ -198,8 +381,8 @@ public class ThingSpeakChannel {
      *
      * @param results The number of entries.
      */
-    public void setNumberOfEntries(int results) {
-        this.mResults = results;
+    public synchronized void setNumberOfEntries(int results) {
+        setFeedQuery(mQuery.newBuilder().setResults(results).build());
     }
 
     /***
@@ -207,8 +390,8 @@ public class ThingSpeakChannel {
      *
      * @param days The number of 24-hour periods before now.
      */
-    public void setDaysToInclude(int days) {
-        this.mDays = days;
+    public synchronized void setDaysToInclude(int days) {
+        setFeedQuery(mQuery.newBuilder().setDays(days).build());
     }
 
     /***
@@ -216,8 +399,8 @@ public class ThingSpeakChannel {
      *
      * @param start The start date.
      */
-    public void setStartDate(Date start) {
-        this.mStartDate = start;
+    public synchronized void setStartDate(Date start) {
+        setFeedQuery(mQuery.newBuilder().setStartDate(start).build());
     }
 
     /***
@@ -225,8 +408,8 @@ public class ThingSpeakChannel {
      *
      * @param end The end date.
      */
-    public void setEndDate(Date end) {
-        this.mEndDate = end;
+    public synchronized void setEndDate(Date end) {
+        setFeedQuery(mQuery.newBuilder().setEndDate(end).build());
     }
 
     /***
@@ -234,54 +417,102 @@ public class ThingSpeakChannel {
      *
      * @param timescale A valid timescale value.
      */
-    public void setTimescale(int timescale) {
-        if (validateTimescale(timescale)) {
-            if (timescale == 9999)
-                mTimescale = "daily";
-            else
-                mTimescale = Integer.toString(timescale);
-        }
+    public synchronized void setTimescale(int timescale) {
+        if (FeedQuery.isValidTimescale(timescale))
+            setFeedQuery(mQuery.newBuilder().setTimescale(timescale).build());
     }
 
-    private boolean validateTimescale(int timescale) {
-        return (timescale == 10 || timescale == 15 || timescale == 20 ||
-                timescale == 30 || timescale == 60 || timescale == 240 ||
-                timescale == 720 || timescale == 1440 || timescale == 9999);
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.FeedQuery} used by all requests in this specific Channel that are not given a query,
+     * replacing the number of entries, days, start date, end date, timescale and timezone set before.
+     *
+     * @param query The query.
+     */
+    public synchronized void setFeedQuery(FeedQuery query) {
+        this.mQuery = query;
+        resetFeedSync();
+    }
+
+    /***
+     * Return the {@link com.macroyau.thingspeakandroid.FeedQuery} used by all requests in this specific Channel that are not given a query.
+     *
+     * @return The query.
+     */
+    public FeedQuery getFeedQuery() {
+        return mQuery;
     }
 
     private Map<String, String> getEntryRequestParams() {
-        final DateFormat df = new SimpleDateFormat(REQUEST_PARAMS_DATE_FORMAT);
         Map<String, String> params = new HashMap<>();
+        String timezone = mQuery.getTimezone();
+
+        if (mReadApiKey != null)
+            params.put("api_key", mReadApiKey);
+        if (timezone != null)
+            params.put("timezone", timezone);
+
+        return params;
+    }
+
+    private Map<String, String> getChannelRequestParams(FeedQuery query) {
+        Map<String, String> params = new HashMap<>(query.getParams());
 
         if (mReadApiKey != null)
             params.put("api_key", mReadApiKey);
-        if (mTimezone != null)
-            params.put("timezone", mTimezone);
 
         return params;
     }
 
-    private Map<String, String> getChannelRequestParams() {
-        final DateFormat df = new SimpleDateFormat(REQUEST_PARAMS_DATE_FORMAT);
+    private Map<String, String> getChannelRequestParamsAfter(FeedQuery query, long lastCreatedAt) {
+        Map<String, String> params = getChannelRequestParams(query);
+
+        // Only ask for entries from the last seen one onwards; the start parameter is inclusive and overlaps are dropped on merge
+        final TimeZone timeZone = TimeZone.getTimeZone(query.getTimezone() != null ? query.getTimezone() : "UTC");
+        params.remove("days");
+        params.put("start", TimestampCodec.formatRequestParam(lastCreatedAt, timeZone));
+
+        return params;
+    }
+
+    Map<String, String> getRangeRequestParams(FeedQuery query, long start, long end, int results) {
+        final TimeZone timeZone = TimeZone.getTimeZone(query.getTimezone() != null ? query.getTimezone() : "UTC");
         Map<String, String> params = new HashMap<>();
 
         if (mReadApiKey != null)
             params.put("api_key", mReadApiKey);
-        params.put("results", Integer.toString(mResults));
-        if (mDays != -1)
-            params.put("days", Integer.toString(mDays));
-        if (mStartDate != null)
-            params.put("start", df.format(mStartDate));
-        if (mEndDate != null)
-            params.put("end", df.format(mEndDate));
-        if (mTimezone != null)
-            params.put("timezone", mTimezone);
-        if (mTimescale != null)
-            params.put("timescale", mTimescale);
+        if (query.getTimezone() != null)
+            params.put("timezone", query.getTimezone());
+        params.put("results", Integer.toString(results));
+        params.put("start", TimestampCodec.formatRequestParam(start, timeZone));
+        params.put("end", TimestampCodec.formatRequestParam(end, timeZone));
+        if (query.getTimescaleParam() != null)
+            params.put("timescale", query.getTimescaleParam());
 
         return params;
     }
 
+    private Map<String, String> getSyncRequestParams(FeedQuery query, FeedWindow window) {
+        if (window.isEmpty())
+            return getChannelRequestParams(query);
+        return getChannelRequestParamsAfter(query, window.getLastCreatedAt().getTime());
+    }
+
+    private synchronized FeedWindow getFeedWindow(int fieldId, int results) {
+        FeedWindow window = mFeedWindows.get(fieldId);
+        if (window == null) {
+            window = new FeedWindow(results);
+            mFeedWindows.put(fieldId, window);
+        }
+        return window;
+    }
+
+    /***
+     * Discard the local feed windows so that the next synchronization downloads the whole results window again.
+     */
+    public synchronized void resetFeedSync() {
+        mFeedWindows.clear();
+    }
+
     /***
      * Return the configured ThingSpeakService instance for direct REST API operations of this specific Channel.
      *
@@ -291,6 +522,15 @@ public class ThingSpeakChannel {
         return mService;
     }
 
+    /***
+     * Return the {@link com.macroyau.thingspeakandroid.ThingSpeakClient} used by this specific Channel.
+     *
+     * @return The client.
+     */
+    public ThingSpeakClient getClient() {
+        return mClient;
+    }
+
     /***
      * Return the ID of this specific Channel.
      *
@@ -304,17 +544,19 @@ public class ThingSpeakChannel {
      * Retrieve the Channel Feed of this specific Channel asynchronously.
      */
     public void loadChannelFeed() {
-        mService.getChannelFeed(mChannelId, getChannelRequestParams(), new Callback<ChannelFeed>() {
+        final FeedQuery query = mQuery;
+        mService.getChannelFeed(mChannelId, getChannelRequestParams(query), new Callback<ChannelFeed>() {
             @Override
             public void success(ChannelFeed channelFeed, Response response) {
                 if (mChannelFeedUpdateListener != null) {
                     mChannelFeedUpdateListener.onChannelFeedUpdated(mChannelId, channelFeed.getChannel().getName(), channelFeed);
                 }
+                publish(ALL_FIELDS, query, channelFeed);
             }
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyFeedFailed(ALL_FIELDS, error);
             }
         });
     }
@@ -333,7 +575,7 @@ public class ThingSpeakChannel {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
@@ -354,7 +596,7 @@ public class ThingSpeakChannel {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
@@ -368,21 +610,508 @@ public class ThingSpeakChannel {
         if (fieldId < 1 || fieldId > 8)
             return;
 
-        mService.getChannelFieldFeed(mChannelId, fieldId, getChannelRequestParams(), new Callback<ChannelFeed>() {
+        final FeedQuery query = mQuery;
+        mService.getChannelFieldFeed(mChannelId, fieldId, getChannelRequestParams(query), new Callback<ChannelFeed>() {
             @Override
             public void success(ChannelFeed channelFeed, Response response) {
                 if (mChannelFieldFeedUpdateListener != null) {
                     mChannelFieldFeedUpdateListener.onChannelFieldFeedUpdated(mChannelId, fieldId, channelFeed);
                 }
+                publish(fieldId, query, channelFeed);
             }
 
             @Override
             public void failure(RetrofitError error) {
+                notifyFeedFailed(fieldId, error);
+            }
+        });
+    }
+
+    /***
+     * Retrieve the Channel Feed of this specific Channel asynchronously in columnar form. The response is decoded by a streaming decoder
+     * without creating {@link com.macroyau.thingspeakandroid.model.Feed} objects.
+     */
+    public void loadChannelFeedColumns() {
+        FeedQuery query = mQuery;
+        FeedCache cache = getFeedCache(query);
+        if (cache != null)
+            loadFeedColumnsWithCache(cache, ALL_FIELDS, query);
+        else
+            loadFeedColumns(ALL_FIELDS, getChannelRequestParams(query), getFeedColumnsCallback(ALL_FIELDS, query));
+    }
+
+    /***
+     * Retrieve a specific field feed of this specific Channel asynchronously in columnar form.
+     *
+     * @param fieldId The ID of a field.
+     * @see #loadChannelFeedColumns()
+     */
+    public void loadChannelFieldFeedColumns(int fieldId) {
+        if (fieldId < 1 || fieldId > 8)
+            return;
+
+        FeedQuery query = mQuery;
+        FeedCache cache = getFeedCache(query);
+        if (cache != null)
+            loadFeedColumnsWithCache(cache, fieldId, query);
+        else
+            loadFeedColumns(fieldId, getChannelRequestParams(query), getFeedColumnsCallback(fieldId, query));
+    }
+
+    void loadFeedColumns(int fieldId, Map<String, String> params, Callback<FeedColumns> callback) {
+        if (mFeedFormat == FORMAT_CSV) {
+            if (fieldId == ALL_FIELDS)
+                mService.getChannelFeedColumnsCsv(mChannelId, params, callback);
+            else
+                mService.getChannelFieldFeedColumnsCsv(mChannelId, fieldId, params, callback);
+        } else {
+            if (fieldId == ALL_FIELDS)
+                mService.getChannelFeedColumns(mChannelId, params, callback);
+            else
+                mService.getChannelFieldFeedColumns(mChannelId, fieldId, params, callback);
+        }
+    }
+
+    private synchronized FeedCache getFeedCache(FeedQuery query) {
+        // Projected feeds would store missing values for the other fields, which later loads without a projection would merge in
+        return mFeedProjection == null && query.isLatestEntries() ? mFeedCache : null;
+    }
+
+    private void loadFeedColumnsWithCache(final FeedCache cache, final int fieldId, final FeedQuery query) {
+        final int results = query.getResults();
+
+        // Read the cache off the calling thread, then top it up with the missing tail only
+        mClient.getHttpExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                FeedColumns cached = null;
+                try {
+                    cached = cache.read(mChannelId, fieldId, results);
+                } catch (IOException e) {
+                    onFeedCacheFailed(cache, fieldId, e);
+                }
+
+                final FeedColumns cachedColumns = cached != null && cached.size() > 0 ? cached : null;
+                if (cachedColumns != null) {
+                    // Cached entries come without an HTTP response, so they bypass the Retrofit callback
+                    mClient.getCallbackExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            notifyFeedColumnsUpdated(fieldId, query, cachedColumns);
+                        }
+                    });
+                }
+
+                Callback<FeedColumns> callback = new Callback<FeedColumns>() {
+                    @Override
+                    public void success(final FeedColumns columns, Response response) {
+                        // A full page holds only the latest entries after the cached ones; unless it reaches back to the last cached
+                        // entry, older new entries are missing and the cached entries must not be joined to it
+                        final boolean gap = cachedColumns != null && columns.size() >= results
+                                && columns.getEntryId(0) > cachedColumns.getEntryId(cachedColumns.size() - 1);
+                        mClient.getHttpExecutor().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    if (gap)
+                                        cache.clear(mChannelId, fieldId);
+                                    cache.append(mChannelId, fieldId, columns);
+                                } catch (IOException e) {
+                                    onFeedCacheFailed(cache, fieldId, e);
+                                }
+                            }
+                        });
+
+                        FeedColumns merged = cachedColumns == null || gap ? columns : cachedColumns.merge(columns, results);
+                        getFeedColumnsCallback(fieldId, query).success(merged, response);
+                    }
+
+                    @Override
+                    public void failure(RetrofitError error) {
+                        notifyFeedFailed(fieldId, error);
+                    }
+                };
+
+                Map<String, String> params = cachedColumns == null
+                        ? getChannelRequestParams(query)
+                        : getChannelRequestParamsAfter(query, cachedColumns.getCreatedAt(cachedColumns.size() - 1));
+                loadFeedColumns(fieldId, params, callback);
+            }
+        });
+    }
+
+    private void onFeedCacheFailed(FeedCache cache, int fieldId, IOException e) {
+        // A store that cannot be read or written would otherwise fail on every load, so start it over
+        cache.clear(mChannelId, fieldId);
 
+        final RetrofitError error = RetrofitError.unexpectedError(cache.getDirectory().getPath(), e);
+        mClient.getCallbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                notifyRequestFailed(error);
             }
         });
     }
 
+    private Callback<FeedColumns> getFeedColumnsCallback(final int fieldId, final FeedQuery query) {
+        return new Callback<FeedColumns>() {
+            @Override
+            public void success(FeedColumns columns, Response response) {
+                notifyFeedColumnsUpdated(fieldId, query, columns);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                notifyFeedFailed(fieldId, error);
+            }
+        };
+    }
+
+    /***
+     * Retrieve all entries of the Channel Feed of this specific Channel within a time range, beyond the limit of 8000 results per request.
+     * The Read API Key, timezone and timescale settings of this Channel apply.
+     *
+     * @param start The start date of the time range.
+     * @param end The end date of the time range.
+     * @param listener The listener receiving the entries in chronological chunks.
+     * @return The started backfill, which can be cancelled.
+     */
+    public FeedBackfill backfillChannelFeed(Date start, Date end, FeedBackfill.BackfillListener listener) {
+        return backfill(ALL_FIELDS, start, end, listener);
+    }
+
+    /***
+     * Retrieve all entries of a specific field feed of this specific Channel within a time range.
+     *
+     * @param fieldId The ID of a field.
+     * @param start The start date of the time range.
+     * @param end The end date of the time range.
+     * @param listener The listener receiving the entries in chronological chunks.
+     * @return The started backfill, which can be cancelled.
+     * @see #backfillChannelFeed(java.util.Date, java.util.Date, com.macroyau.thingspeakandroid.FeedBackfill.BackfillListener)
+     */
+    public FeedBackfill backfillChannelFieldFeed(int fieldId, Date start, Date end, FeedBackfill.BackfillListener listener) {
+        if (fieldId < 1 || fieldId > 8)
+            throw new IllegalArgumentException("Invalid field ID " + fieldId);
+
+        return backfill(fieldId, start, end, listener);
+    }
+
+    private FeedBackfill backfill(int fieldId, Date start, Date end, FeedBackfill.BackfillListener listener) {
+        FeedBackfill backfill = new FeedBackfill(this, fieldId, start, end);
+        backfill.setListener(listener);
+        backfill.start();
+        return backfill;
+    }
+
+    /***
+     * Start refreshing the Channel Feed of this specific Channel automatically with incremental synchronization. New entries are delivered
+     * to the {@link com.macroyau.thingspeakandroid.ThingSpeakChannel.FeedSyncListener}. The polling interval adapts to the update cadence of the Channel.
+     *
+     * @see com.macroyau.thingspeakandroid.RefreshScheduler
+     */
+    public void startAutoRefresh() {
+        mClient.getRefreshScheduler().register(this, ALL_FIELDS);
+    }
+
+    /***
+     * Stop refreshing the Channel Feed of this specific Channel automatically.
+     */
+    public void stopAutoRefresh() {
+        mClient.getRefreshScheduler().unregister(this, ALL_FIELDS);
+    }
+
+    /***
+     * Synchronize the Channel Feed of this specific Channel incrementally and asynchronously. The first call retrieves the whole results
+     * window; subsequent calls retrieve only the entries newer than the last seen entry and merge them into the local window.
+     */
+    public void syncChannelFeed() {
+        syncFeed(ALL_FIELDS, null);
+    }
+
+    /***
+     * Synchronize a specific field feed of this specific Channel incrementally and asynchronously.
+     *
+     * @param fieldId The ID of a field.
+     * @see #syncChannelFeed()
+     */
+    public void syncChannelFieldFeed(int fieldId) {
+        if (fieldId < 1 || fieldId > 8)
+            return;
+
+        syncFeed(fieldId, null);
+    }
+
+    void syncFeed(final int fieldId, final FeedSyncObserver observer) {
+        final FeedQuery query = mQuery;
+        final FeedWindow window = getFeedWindow(fieldId, query.getResults());
+        Callback<ChannelFeed> callback = new Callback<ChannelFeed>() {
+            @Override
+            public void success(ChannelFeed channelFeed, Response response) {
+                List<Feed> newFeeds = window.merge(channelFeed);
+                if (mFeedSyncListener != null && !newFeeds.isEmpty()) {
+                    mFeedSyncListener.onFeedSynced(mChannelId, fieldId, newFeeds, window.toChannelFeed());
+                }
+                // The window keeps its columns up to date with the new entries, so only they are converted
+                if (!newFeeds.isEmpty() && (hasStream(fieldId) || hasRollupPyramid(fieldId, query)))
+                    publish(fieldId, query, window.toColumns());
+                if (observer != null)
+                    observer.onSyncCompleted(fieldId, newFeeds);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                notifyFeedFailed(fieldId, error);
+                if (observer != null)
+                    observer.onSyncFailed(fieldId, error);
+            }
+        };
+
+        if (fieldId == ALL_FIELDS)
+            mService.getChannelFeed(mChannelId, getSyncRequestParams(query, window), callback);
+        else
+            mService.getChannelFieldFeed(mChannelId, fieldId, getSyncRequestParams(query, window), callback);
+    }
+
+    /***
+     * Retrieve the Channel Feed of this specific Channel asynchronously as a future, without notifying any listener.
+     *
+     * @return The future Channel Feed.
+     */
+    public ThingSpeakFuture<ChannelFeed> fetchChannelFeed() {
+        return fetchChannelFeed(mQuery);
+    }
+
+    /***
+     * Retrieve the Channel Feed entries of this specific Channel matching a specific query asynchronously as a future.
+     *
+     * @param query The query.
+     * @return The future Channel Feed.
+     * @see #fetchChannelFeed()
+     */
+    public ThingSpeakFuture<ChannelFeed> fetchChannelFeed(FeedQuery query) {
+        ThingSpeakFuture<ChannelFeed> future = new ThingSpeakFuture<>(mClient);
+        mService.getChannelFeed(mChannelId, getChannelRequestParams(query), future.asCallback());
+        return future;
+    }
+
+    /***
+     * Retrieve a specific field feed of this specific Channel asynchronously as a future, without notifying any listener.
+     *
+     * @param fieldId The ID of a field.
+     * @return The future field feed.
+     */
+    public ThingSpeakFuture<ChannelFeed> fetchChannelFieldFeed(int fieldId) {
+        return fetchChannelFieldFeed(fieldId, mQuery);
+    }
+
+    /***
+     * Retrieve the entries of a specific field feed of this specific Channel matching a specific query asynchronously as a future.
+     *
+     * @param fieldId The ID of a field.
+     * @param query The query.
+     * @return The future field feed.
+     * @see #fetchChannelFieldFeed(int)
+     */
+    public ThingSpeakFuture<ChannelFeed> fetchChannelFieldFeed(int fieldId, FeedQuery query) {
+        ThingSpeakFuture<ChannelFeed> future = new ThingSpeakFuture<>(mClient);
+        if (validateFieldId(future, fieldId))
+            mService.getChannelFieldFeed(mChannelId, fieldId, getChannelRequestParams(query), future.asCallback());
+        return future;
+    }
+
+    /***
+     * Retrieve the last entry in this specific Channel Feed asynchronously as a future, without notifying any listener.
+     *
+     * @return The future entry.
+     */
+    public ThingSpeakFuture<Feed> fetchLastEntryInChannelFeed() {
+        ThingSpeakFuture<Feed> future = new ThingSpeakFuture<>(mClient);
+        mService.getLastEntryInChannelFeed(mChannelId, getEntryRequestParams(), future.asCallback());
+        return future;
+    }
+
+    /***
+     * Retrieve a specific entry in this specific Channel Feed asynchronously as a future, without notifying any listener.
+     *
+     * @param entryId The ID of a feed entry.
+     * @return The future entry.
+     */
+    public ThingSpeakFuture<Feed> fetchSpecificEntryInChannelFeed(long entryId) {
+        ThingSpeakFuture<Feed> future = new ThingSpeakFuture<>(mClient);
+        mService.getSpecificEntryInChannelFeed(mChannelId, entryId, getEntryRequestParams(), future.asCallback());
+        return future;
+    }
+
+    /***
+     * Retrieve the Channel Feed of this specific Channel asynchronously in columnar form as a future, without notifying any listener. The
+     * {@link com.macroyau.thingspeakandroid.FeedCache} is not used.
+     *
+     * @return The future feed entries.
+     */
+    public ThingSpeakFuture<FeedColumns> fetchChannelFeedColumns() {
+        return fetchChannelFeedColumns(mQuery);
+    }
+
+    /***
+     * Retrieve the Channel Feed entries of this specific Channel matching a specific query asynchronously in columnar form as a future.
+     *
+     * @param query The query.
+     * @return The future feed entries.
+     * @see #fetchChannelFeedColumns()
+     */
+    public ThingSpeakFuture<FeedColumns> fetchChannelFeedColumns(FeedQuery query) {
+        ThingSpeakFuture<FeedColumns> future = new ThingSpeakFuture<>(mClient);
+        loadFeedColumns(ALL_FIELDS, getChannelRequestParams(query), future.asCallback());
+        return future;
+    }
+
+    /***
+     * Retrieve a specific field feed of this specific Channel asynchronously in columnar form as a future, without notifying any listener.
+     *
+     * @param fieldId The ID of a field.
+     * @return The future feed entries.
+     * @see #fetchChannelFeedColumns()
+     */
+    public ThingSpeakFuture<FeedColumns> fetchChannelFieldFeedColumns(int fieldId) {
+        return fetchChannelFieldFeedColumns(fieldId, mQuery);
+    }
+
+    /***
+     * Retrieve the entries of a specific field feed of this specific Channel matching a specific query asynchronously in columnar form as a
+     * future.
+     *
+     * @param fieldId The ID of a field.
+     * @param query The query.
+     * @return The future feed entries.
+     * @see #fetchChannelFeedColumns()
+     */
+    public ThingSpeakFuture<FeedColumns> fetchChannelFieldFeedColumns(int fieldId, FeedQuery query) {
+        ThingSpeakFuture<FeedColumns> future = new ThingSpeakFuture<>(mClient);
+        if (validateFieldId(future, fieldId))
+            loadFeedColumns(fieldId, getChannelRequestParams(query), future.asCallback());
+        return future;
+    }
+
+    /***
+     * Retrieve the status updates of this specific Channel asynchronously as a future, without notifying any listener.
+     *
+     * @return The future status updates.
+     */
+    public ThingSpeakFuture<StatusUpdates> fetchStatusUpdates() {
+        ThingSpeakFuture<StatusUpdates> future = new ThingSpeakFuture<>(mClient);
+        mService.getStatusUpdates(mChannelId, getEntryRequestParams(), future.asCallback());
+        return future;
+    }
+
+    private static boolean validateFieldId(ThingSpeakFuture<?> future, int fieldId) {
+        if (fieldId >= 1 && fieldId <= 8)
+            return true;
+        future.complete(null, new IllegalArgumentException("Invalid field ID " + fieldId));
+        return false;
+    }
+
+    private void notifyRequestFailed(RetrofitError error) {
+        if (mChannelErrorListener != null)
+            mChannelErrorListener.onChannelRequestFailed(mChannelId, error);
+    }
+
+    private void notifyFeedColumnsUpdated(int fieldId, FeedQuery query, FeedColumns columns) {
+        if (mChannelFeedColumnsUpdateListener != null) {
+            mChannelFeedColumnsUpdateListener.onChannelFeedColumnsUpdated(mChannelId, fieldId, columns);
+        }
+        publish(fieldId, query, columns);
+    }
+
+    private void notifyFeedFailed(int fieldId, RetrofitError error) {
+        notifyRequestFailed(error);
+        for (FeedStream stream : mStreams) {
+            if (stream.getFieldId() == fieldId)
+                stream.publishError(error);
+        }
+    }
+
+    private void publish(int fieldId, FeedQuery query, ChannelFeed channelFeed) {
+        // Convert only once for all streams and rollups of the feed, and only if there is any
+        if (hasStream(fieldId) || hasRollupPyramid(fieldId, query))
+            publish(fieldId, query, channelFeed.toColumns());
+    }
+
+    private void publish(int fieldId, FeedQuery query, FeedColumns columns) {
+        for (FeedStream stream : mStreams) {
+            if (stream.getFieldId() == fieldId)
+                stream.publish(columns);
+        }
+        updateRollupPyramids(fieldId, query, columns);
+    }
+
+    private boolean hasStream(int fieldId) {
+        for (FeedStream stream : mStreams) {
+            if (stream.getFieldId() == fieldId)
+                return true;
+        }
+        return false;
+    }
+
+    private boolean hasRollupPyramid(int fieldId, FeedQuery query) {
+        // A timescale feed holds one sampled entry per period, which would be counted as all entries of the period
+        if (query.getTimescale() != -1)
+            return false;
+        return fieldId == ALL_FIELDS ? !mRollupPyramids.isEmpty() : mRollupPyramids.containsKey(fieldId);
+    }
+
+    void updateRollupPyramids(int fieldId, FeedQuery query, FeedColumns columns) {
+        if (!hasRollupPyramid(fieldId, query))
+            return;
+        for (RollupPyramid rollupPyramid : mRollupPyramids.values()) {
+            if (fieldId == ALL_FIELDS || fieldId == rollupPyramid.getFieldId())
+                rollupPyramid.addAll(columns);
+        }
+    }
+
+    /***
+     * Return the {@link com.macroyau.thingspeakandroid.RollupPyramid} of a specific field of this specific Channel, created on first use.
+     * The rollups are updated with the entries of every feed retrieved afterwards, in the same way as streams, as well as with the older
+     * entries of backfills and of the segments lazily loaded by charts, so that zoomed out charts need no further request. Feeds retrieved
+     * with a timescale are skipped, as they only hold a sample of the entries.
+     *
+     * @param fieldId The ID of a field.
+     * @return The rollups of the field.
+     */
+    public RollupPyramid getRollupPyramid(int fieldId) {
+        if (fieldId < 1 || fieldId > 8)
+            throw new IllegalArgumentException("Invalid field ID " + fieldId);
+
+        synchronized (mRollupPyramids) {
+            RollupPyramid rollupPyramid = mRollupPyramids.get(fieldId);
+            if (rollupPyramid == null) {
+                rollupPyramid = new RollupPyramid(fieldId);
+                mRollupPyramids.put(fieldId, rollupPyramid);
+            }
+            return rollupPyramid;
+        }
+    }
+
+    /***
+     * Subscribe to the updates of a specific feed of this specific Channel. Unlike the update listeners, any number of streams can subscribe
+     * to the same feed. Streams receive the entries retrieved by {@link #loadChannelFeed()}, {@link #loadChannelFieldFeed(int)},
+     * {@link #loadChannelFeedColumns()}, {@link #loadChannelFieldFeedColumns(int)} and the merged windows of incremental synchronization,
+     * e.g. by {@link #startAutoRefresh()}; they do not start any request themselves.
+     *
+     * @param fieldId The ID of a field, or {@link #ALL_FIELDS} for the whole Channel feed.
+     * @param subscriber The subscriber.
+     * @return The stream, which can be configured and cancelled.
+     */
+    public FeedStream subscribe(int fieldId, FeedStream.Subscriber subscriber) {
+        FeedStream stream = new FeedStream(this, fieldId, subscriber);
+        mStreams.add(stream);
+        return stream;
+    }
+
+    void removeStream(FeedStream stream) {
+        mStreams.remove(stream);
+    }
+
     /***
      * Retrieve the status updates of this specific Channel asynchronously.
      */
@@ -397,9 +1126,63 @@ public class ThingSpeakChannel {
 
             @Override
             public void failure(RetrofitError error) {
-
+                notifyRequestFailed(error);
             }
         });
     }
 
+    /***
+     * Return the {@link com.macroyau.thingspeakandroid.FeedWriter} buffering readings written to this specific Channel, e.g. to configure
+     * its batch size.
+     *
+     * @return The feed writer.
+     */
+    public synchronized FeedWriter getFeedWriter() {
+        if (mFeedWriter == null)
+            mFeedWriter = new FeedWriter(this);
+        return mFeedWriter;
+    }
+
+    /***
+     * Keep readings written to this specific Channel in a durable log until they are accepted by the server, so that they survive
+     * connectivity loss and process death. Readings left in the log by a previous process are written again.
+     *
+     * @param log The log of this specific Channel.
+     * @throws IOException If buffered readings cannot be appended to the log.
+     */
+    public void setFeedWriteLog(FeedWriteLog log) throws IOException {
+        getFeedWriter().setWriteAheadLog(log);
+    }
+
+    /***
+     * Write a reading to the Channel Feed of this specific Channel. The reading is buffered and written asynchronously with other readings
+     * in a single bulk update. The Write API Key must be set.
+     *
+     * @param update The reading.
+     * @throws IOException If the reading cannot be appended to the write-ahead log.
+     * @see #flushFeedUpdates()
+     */
+    public void writeFeedUpdate(FeedUpdate update) throws IOException {
+        if (mWriteApiKey == null)
+            throw new IllegalStateException("Write API Key is not set for Channel " + mChannelId);
+        getFeedWriter().add(update);
+    }
+
+    /***
+     * Write all buffered readings of this specific Channel as soon as its write rate limit allows, e.g. when the network is available again.
+     */
+    public void flushFeedUpdates() {
+        getFeedWriter().flush();
+    }
+
+    void loadLatestEntry(Callback<FeedColumns> callback) {
+        Map<String, String> params = getEntryRequestParams();
+        params.put("results", "1");
+        loadFeedColumns(ALL_FIELDS, params, callback);
+    }
+
+    void bulkUpdate(BulkUpdate bulkUpdate, Callback<BulkUpdateResult> callback) {
+        mService.bulkUpdateChannelFeed(mChannelId, bulkUpdate, callback);
+    }
+
 }
@@ -0,0 +1,435 @@
+package com.macroyau.thingspeakandroid;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit.RestAdapter;
+import retrofit.android.MainThreadExecutor;
+import retrofit.client.Client;
+import retrofit.client.UrlConnectionClient;
+
+/***
+ * Shared HTTP client, converter and executor for ThingSpeak API requests. All {@link com.macroyau.thingspeakandroid.ThingSpeakChannel},
+ * {@link com.macroyau.thingspeakandroid.TalkBack} and {@link com.macroyau.thingspeakandroid.ThingSpeakLineChart} instances use the
+ * process-wide default client unless another one is given, so that connections and converters are reused between them.
+ *
+ * @author Macro Yau
+ */
+public class ThingSpeakClient {
+
+    private static final String THINGSPEAK_API = "https://api.thingspeak.com";
+    private static final int MAX_HTTP_THREADS = 4;
+    private static final int MAX_COMPUTE_THREADS = 2;
+    private static final int ALL_FIELDS_MASK = (1 << FeedColumns.FIELD_COUNT) - 1;
+
+    private static ThingSpeakClient sDefaultClient;
+
+    private final String mEndpoint;
+    private final Gson mGson;
+    private final Client mHttpClient;
+    private final Executor mHttpExecutor;
+    private final ScheduledExecutorService mScheduler;
+    private final Executor mCallbackExecutor;
+    private final Executor mComputeExecutor;
+    private final RestAdapter mRestAdapter;
+    private final List<ServiceInterceptor> mInterceptors = new CopyOnWriteArrayList<>();
+
+    private final MetricsInterceptor mMetricsInterceptor;
+    private final RetryInterceptor mRetryInterceptor;
+    private final CircuitBreaker mCircuitBreaker;
+    private final RateLimiter mRateLimiter;
+    private ThingSpeakService mThingSpeakService;
+    private TalkBackService mTalkBackService;
+    private final Map<Integer, ThingSpeakService> mProjectedServices = new HashMap<>();
+    private final Map<Long, ThingSpeakService> mThingSpeakServices = new HashMap<>();
+    private final Map<Integer, TalkBackService> mTalkBackServices = new HashMap<>();
+    private RefreshScheduler mRefreshScheduler;
+
+    /***
+     * Return the process-wide default client, creating it on first use.
+     *
+     * @return The default client.
+     */
+    public static synchronized ThingSpeakClient getDefault() {
+        if (sDefaultClient == null)
+            sDefaultClient = new ThingSpeakClient();
+        return sDefaultClient;
+    }
+
+    /***
+     * Constructor for a client connecting to the official ThingSpeak API server.
+     */
+    public ThingSpeakClient() {
+        this(THINGSPEAK_API);
+    }
+
+    /***
+     * Constructor for a client connecting to a specific ThingSpeak API server, e.g. a self-hosted one.
+     *
+     * @param endpoint The base URL of the ThingSpeak API server.
+     */
+    public ThingSpeakClient(String endpoint) {
+        this(endpoint, new UrlConnectionClient(), new MainThreadExecutor());
+    }
+
+    /***
+     * Constructor for a client with a custom HTTP client and callback executor.
+     *
+     * @param endpoint The base URL of the ThingSpeak API server.
+     * @param httpClient The HTTP client shared by all requests of this client.
+     * @param callbackExecutor The executor on which request callbacks are delivered.
+     */
+    public ThingSpeakClient(String endpoint, Client httpClient, Executor callbackExecutor) {
+        this(endpoint, httpClient, null, callbackExecutor, null);
+    }
+
+    /***
+     * Constructor for a client with custom executors. Responses are decoded on the HTTP executor, CPU-bound work such as building chart
+     * data is performed on the compute executor, and only the results are delivered on the callback executor.
+     *
+     * @param endpoint The base URL of the ThingSpeak API server.
+     * @param httpClient The HTTP client shared by all requests of this client.
+     * @param httpExecutor The executor on which HTTP requests are performed and responses are decoded, or null for the default one.
+     * @param callbackExecutor The executor on which request callbacks are delivered.
+     * @param computeExecutor The executor on which chart data is built, or null for the default one.
+     */
+    public ThingSpeakClient(String endpoint, Client httpClient, Executor httpExecutor, Executor callbackExecutor, Executor computeExecutor) {
+        this.mEndpoint = endpoint;
+        this.mHttpClient = httpClient;
+        this.mCallbackExecutor = callbackExecutor;
+
+        mGson = createGson();
+
+        mHttpExecutor = httpExecutor != null ? httpExecutor : createHttpExecutor();
+        mComputeExecutor = computeExecutor != null ? computeExecutor : createComputeExecutor();
+        mScheduler = createScheduler();
+
+        mRestAdapter = createRestAdapter(new ThingSpeakConverter(mGson));
+
+        mMetricsInterceptor = new MetricsInterceptor();
+        mRetryInterceptor = new RetryInterceptor(mScheduler);
+        mCircuitBreaker = new CircuitBreaker(mCallbackExecutor);
+        mRateLimiter = new RateLimiter(mScheduler);
+        mInterceptors.add(new RequestCoalescer(mCallbackExecutor));
+        mInterceptors.add(mMetricsInterceptor);
+        mInterceptors.add(mRetryInterceptor);
+        mInterceptors.add(mCircuitBreaker);
+        mInterceptors.add(mRateLimiter);
+    }
+
+    static Gson createGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Date.class, new TimestampTypeAdapter())
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create();
+    }
+
+    private RestAdapter createRestAdapter(ThingSpeakConverter converter) {
+        return new RestAdapter.Builder()
+                .setEndpoint(mEndpoint)
+                .setClient(new TransportMetrics.MeteredClient(mHttpClient))
+                .setExecutors(mHttpExecutor, new TransportMetrics.MeteredExecutor(mCallbackExecutor))
+                .setConverter(converter)
+                .build();
+    }
+
+    private static ExecutorService createHttpExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_HTTP_THREADS, MAX_HTTP_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ThingSpeak-HTTP-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService createComputeExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_COMPUTE_THREADS, MAX_COMPUTE_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ThingSpeak-Compute-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ThingSpeak-Timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return scheduler;
+    }
+
+    /***
+     * Return the base URL of the ThingSpeak API server.
+     *
+     * @return The base URL.
+     */
+    public String getEndpoint() {
+        return mEndpoint;
+    }
+
+    /***
+     * Return the Gson instance used to convert API responses.
+     *
+     * @return The Gson instance.
+     */
+    public Gson getGson() {
+        return mGson;
+    }
+
+    /***
+     * Add a registry receiving the {@link com.macroyau.thingspeakandroid.RequestMetrics} of all service calls of this client. Metrics are
+     * only measured while a registry is registered.
+     *
+     * @param registry The registry, e.g. a {@link com.macroyau.thingspeakandroid.HistogramMetricsRegistry}.
+     */
+    public void addMetricsRegistry(MetricsRegistry registry) {
+        mMetricsInterceptor.addRegistry(registry);
+    }
+
+    /***
+     * Remove a registry added by {@link #addMetricsRegistry(com.macroyau.thingspeakandroid.MetricsRegistry)}.
+     *
+     * @param registry The registry.
+     */
+    public void removeMetricsRegistry(MetricsRegistry registry) {
+        mMetricsInterceptor.removeRegistry(registry);
+    }
+
+    /***
+     * Add an interceptor for all asynchronous service calls of this client. Interceptors are invoked in the order they are added, after the
+     * default {@link com.macroyau.thingspeakandroid.RequestCoalescer}, metrics, {@link com.macroyau.thingspeakandroid.RetryInterceptor},
+     * {@link com.macroyau.thingspeakandroid.CircuitBreaker} and {@link com.macroyau.thingspeakandroid.RateLimiter}.
+     *
+     * @param interceptor The interceptor.
+     */
+    public void addInterceptor(ServiceInterceptor interceptor) {
+        mInterceptors.add(interceptor);
+    }
+
+    /***
+     * Remove an interceptor, including the default ones.
+     *
+     * @param interceptor The interceptor.
+     */
+    public void removeInterceptor(ServiceInterceptor interceptor) {
+        mInterceptors.remove(interceptor);
+    }
+
+    /***
+     * Return the interceptors of this client in invocation order.
+     *
+     * @return The interceptors.
+     */
+    public List<ServiceInterceptor> getInterceptors() {
+        return Collections.unmodifiableList(mInterceptors);
+    }
+
+    /***
+     * Return the executor on which HTTP requests are performed and responses are decoded.
+     *
+     * @return The HTTP executor.
+     */
+    public Executor getHttpExecutor() {
+        return mHttpExecutor;
+    }
+
+    /***
+     * Return the executor on which request callbacks are delivered.
+     *
+     * @return The callback executor.
+     */
+    public Executor getCallbackExecutor() {
+        return mCallbackExecutor;
+    }
+
+    /***
+     * Return the executor on which CPU-bound work such as building chart data is performed, off the callback executor.
+     *
+     * @return The compute executor.
+     */
+    public Executor getComputeExecutor() {
+        return mComputeExecutor;
+    }
+
+    /***
+     * Return the single timer thread of this client, shared by all scheduled tasks such as automatic refreshes.
+     *
+     * @return The scheduler.
+     */
+    public ScheduledExecutorService getScheduler() {
+        return mScheduler;
+    }
+
+    /***
+     * Return the {@link com.macroyau.thingspeakandroid.RefreshScheduler} of this client.
+     *
+     * @return The refresh scheduler.
+     */
+    public synchronized RefreshScheduler getRefreshScheduler() {
+        if (mRefreshScheduler == null)
+            mRefreshScheduler = new RefreshScheduler(mScheduler);
+        return mRefreshScheduler;
+    }
+
+    /***
+     * Return the {@link com.macroyau.thingspeakandroid.RetryInterceptor} shared by all service calls of this client.
+     *
+     * @return The retry interceptor.
+     */
+    public RetryInterceptor getRetryInterceptor() {
+        return mRetryInterceptor;
+    }
+
+    /***
+     * Return the {@link com.macroyau.thingspeakandroid.CircuitBreaker} shared by all service calls of this client.
+     *
+     * @return The circuit breaker.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return mCircuitBreaker;
+    }
+
+    /***
+     * Return the {@link com.macroyau.thingspeakandroid.RateLimiter} shared by all service calls of this client.
+     *
+     * @return The rate limiter.
+     */
+    public RateLimiter getRateLimiter() {
+        return mRateLimiter;
+    }
+
+    /***
+     * Return the shared ThingSpeakService instance of this client.
+     *
+     * @return The ThingSpeakService instance.
+     */
+    public ThingSpeakService getThingSpeakService() {
+        return getThingSpeakService(ServiceCall.PRIORITY_NORMAL);
+    }
+
+    /***
+     * Return the shared ThingSpeakService instance of this client making calls of a specific priority.
+     *
+     * @param priority The priority of calls, e.g. {@link com.macroyau.thingspeakandroid.ServiceCall#PRIORITY_NORMAL}.
+     * @return The ThingSpeakService instance.
+     */
+    public ThingSpeakService getThingSpeakService(int priority) {
+        return getThingSpeakService(priority, null);
+    }
+
+    /***
+     * Return the shared ThingSpeakService instance of this client making calls of a specific priority, and keeping only specific fields when
+     * Channel feeds are decoded into {@link com.macroyau.thingspeakandroid.model.FeedColumns}. Values of other fields are skipped by the
+     * streaming decoder without being allocated. Services of different projections have their own converters, so that each request is
+     * decoded with the projection of the service it is made with.
+     *
+     * @param priority The priority of calls, e.g. {@link com.macroyau.thingspeakandroid.ServiceCall#PRIORITY_NORMAL}.
+     * @param fieldIds The IDs of fields to keep, or null to keep all fields.
+     * @return The ThingSpeakService instance.
+     */
+    public synchronized ThingSpeakService getThingSpeakService(int priority, int[] fieldIds) {
+        final int projection = getProjectionMask(fieldIds);
+        final long key = ((long) priority << 32) | projection;
+        ThingSpeakService service = mThingSpeakServices.get(key);
+        if (service != null)
+            return service;
+
+        ThingSpeakService delegate;
+        if (projection == ALL_FIELDS_MASK) {
+            if (mThingSpeakService == null)
+                mThingSpeakService = mRestAdapter.create(ThingSpeakService.class);
+            delegate = mThingSpeakService;
+        } else {
+            delegate = mProjectedServices.get(projection);
+            if (delegate == null) {
+                delegate = createRestAdapter(new ThingSpeakConverter(mGson, fieldIds)).create(ThingSpeakService.class);
+                mProjectedServices.put(projection, delegate);
+            }
+        }
+
+        // Calls of different projections must not be coalesced, as their responses are decoded differently
+        String variant = projection == ALL_FIELDS_MASK ? null : "fields=" + Integer.toBinaryString(projection);
+        service = InterceptedService.create(ThingSpeakService.class, delegate, mInterceptors, priority, variant);
+        mThingSpeakServices.put(key, service);
+        return service;
+    }
+
+    private static int getProjectionMask(int[] fieldIds) {
+        if (fieldIds == null)
+            return ALL_FIELDS_MASK;
+        int mask = 0;
+        for (int fieldId : fieldIds) {
+            if (fieldId >= 1 && fieldId <= FeedColumns.FIELD_COUNT)
+                mask |= 1 << (fieldId - 1);
+        }
+        return mask;
+    }
+
+    /***
+     * Return the shared TalkBackService instance of this client.
+     *
+     * @return The TalkBackService instance.
+     */
+    public TalkBackService getTalkBackService() {
+        return getTalkBackService(ServiceCall.PRIORITY_NORMAL);
+    }
+
+    /***
+     * Return the shared TalkBackService instance of this client making calls of a specific priority.
+     *
+     * @param priority The priority of calls, e.g. {@link com.macroyau.thingspeakandroid.ServiceCall#PRIORITY_NORMAL}.
+     * @return The TalkBackService instance.
+     */
+    public synchronized TalkBackService getTalkBackService(int priority) {
+        if (mTalkBackService == null)
+            mTalkBackService = mRestAdapter.create(TalkBackService.class);
+
+        TalkBackService service = mTalkBackServices.get(priority);
+        if (service == null) {
+            service = InterceptedService.create(TalkBackService.class, mTalkBackService, mInterceptors, priority);
+            mTalkBackServices.put(priority, service);
+        }
+        return service;
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.macroyau.thingspeakandroid;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+
+import retrofit.converter.ConversionException;
+import retrofit.converter.Converter;
+import retrofit.converter.GsonConverter;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+/***
+ * Retrofit converter decoding {@link com.macroyau.thingspeakandroid.model.FeedColumns} responses with the streaming
+ * {@link com.macroyau.thingspeakandroid.FeedColumnsDecoder}, or the {@link com.macroyau.thingspeakandroid.FeedColumnsCsvDecoder} for CSV
+ * responses, and all other types with Gson. Each converter keeps a fixed projection of the feed fields, so that clients use one converter per
+ * projection instead of changing the decoders of a converter shared by all requests.
+ *
+ * @author Macro Yau
+ */
+class ThingSpeakConverter implements Converter {
+
+    private static final String CHARSET = "UTF-8";
+    private static final String CSV_MIME_TYPE = "csv";
+
+    private final GsonConverter mGsonConverter;
+    private final FeedColumnsDecoder mFeedColumnsDecoder;
+    private final FeedColumnsCsvDecoder mFeedColumnsCsvDecoder;
+
+    ThingSpeakConverter(Gson gson) {
+        this(gson, null);
+    }
+
+    ThingSpeakConverter(Gson gson, int[] fieldIds) {
+        this.mGsonConverter = new GsonConverter(gson, CHARSET);
+        this.mFeedColumnsDecoder = new FeedColumnsDecoder(gson, fieldIds);
+        this.mFeedColumnsCsvDecoder = new FeedColumnsCsvDecoder(fieldIds);
+    }
+
+    @Override
+    public Object fromBody(TypedInput body, Type type) throws ConversionException {
+        long start = System.nanoTime();
+        try {
+            return decode(body, type);
+        } finally {
+            TransportMetrics.recordDecode(System.nanoTime() - start);
+        }
+    }
+
+    private Object decode(TypedInput body, Type type) throws ConversionException {
+        if (type != FeedColumns.class)
+            return mGsonConverter.fromBody(body, type);
+        if (body.mimeType() != null && body.mimeType().contains(CSV_MIME_TYPE))
+            return decodeCsv(body);
+
+        JsonReader reader = null;
+        try {
+            reader = new JsonReader(new InputStreamReader(body.in(), CHARSET));
+            return mFeedColumnsDecoder.decode(reader);
+        } catch (IOException | RuntimeException e) {
+            throw new ConversionException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private Object decodeCsv(TypedInput body) throws ConversionException {
+        InputStream in = null;
+        try {
+            in = body.in();
+            return mFeedColumnsCsvDecoder.decode(in);
+        } catch (IOException | RuntimeException e) {
+            throw new ConversionException(e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    @Override
+    public TypedOutput toBody(Object object) {
+        return mGsonConverter.toBody(object);
+    }
+
+}
@@ -0,0 +1,248 @@
+package com.macroyau.thingspeakandroid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
+/***
+ * Result of an asynchronous request, completed with either the result or the error of the request. Unlike the update listeners of a
+ * {@link com.macroyau.thingspeakandroid.ThingSpeakChannel} or {@link com.macroyau.thingspeakandroid.TalkBack}, each future belongs to a
+ * single request, so that many concurrent requests can be joined with {@link #allOf(List)} and bounded with {@link #timeout(long, TimeUnit)}.
+ * <p>
+ * Listeners are notified on the callback executor of the client, usually the main thread, when the request completes or times out. They are
+ * notified immediately if the future is already complete when added, or on the cancelling thread when it is cancelled. The blocking
+ * {@link #get()} methods must not be called on the callback executor, as the future could never complete.
+ *
+ * @param <T> The type of the result.
+ * @author Macro Yau
+ */
+public class ThingSpeakFuture<T> implements Future<T> {
+
+    /***
+     * Listener for the completion of a future.
+     *
+     * @param <T> The type of the result.
+     */
+    public interface Listener<T> {
+
+        /***
+         * The request succeeded.
+         *
+         * @param result The result of the request.
+         */
+        void onSuccess(T result);
+
+        /***
+         * The request failed, timed out or was cancelled.
+         *
+         * @param error The {@link retrofit.RetrofitError} of the request, a {@link java.util.concurrent.TimeoutException} or a
+         *              {@link java.util.concurrent.CancellationException}.
+         */
+        void onFailure(Throwable error);
+
+    }
+
+    private final ThingSpeakClient mClient;
+    private final List<Listener<? super T>> mListeners = new ArrayList<>();
+    private boolean mDone;
+    private T mResult;
+    private Throwable mError;
+    private ScheduledFuture<?> mTimeout;
+
+    ThingSpeakFuture(ThingSpeakClient client) {
+        this.mClient = client;
+    }
+
+    /***
+     * Return a future completed with the results of all the specific futures in the same order once they all succeed, or with the error of
+     * the first one failing.
+     *
+     * @param futures The futures to join, all created by the same client.
+     * @param <T> The type of the results.
+     * @return The joined future.
+     */
+    public static <T> ThingSpeakFuture<List<T>> allOf(final List<? extends ThingSpeakFuture<? extends T>> futures) {
+        ThingSpeakClient client = futures.isEmpty() ? null : ((ThingSpeakFuture<?>) futures.get(0)).mClient;
+        final ThingSpeakFuture<List<T>> joined = new ThingSpeakFuture<>(client);
+        if (futures.isEmpty()) {
+            joined.complete(Collections.<T>emptyList(), null);
+            return joined;
+        }
+
+        final Object[] results = new Object[futures.size()];
+        final int[] remaining = {futures.size()};
+        for (int i = 0; i < futures.size(); i++) {
+            final int index = i;
+            futures.get(i).addListener(new Listener<T>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void onSuccess(T result) {
+                    synchronized (results) {
+                        results[index] = result;
+                        if (--remaining[0] > 0)
+                            return;
+                    }
+                    joined.complete((List<T>) Arrays.asList(results), null);
+                }
+
+                @Override
+                public void onFailure(Throwable error) {
+                    joined.complete(null, error);
+                }
+            });
+        }
+        return joined;
+    }
+
+    /***
+     * Add a listener notified when this future completes.
+     *
+     * @param listener The listener.
+     * @return This future.
+     */
+    public ThingSpeakFuture<T> addListener(Listener<? super T> listener) {
+        synchronized (this) {
+            if (!mDone) {
+                mListeners.add(listener);
+                return this;
+            }
+        }
+        notifyListener(listener);
+        return this;
+    }
+
+    /***
+     * Fail this future with a {@link java.util.concurrent.TimeoutException} if it is not complete within the specific time. The request
+     * itself is not aborted, but its result is discarded.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the time.
+     * @return This future.
+     */
+    public ThingSpeakFuture<T> timeout(long timeout, TimeUnit unit) {
+        synchronized (this) {
+            if (mDone)
+                return this;
+            if (mTimeout != null)
+                mTimeout.cancel(false);
+            mTimeout = mClient.getScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    mClient.getCallbackExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            complete(null, new TimeoutException("Request not completed in time"));
+                        }
+                    });
+                }
+            }, timeout, unit);
+        }
+        return this;
+    }
+
+    /***
+     * Fail this future with a {@link java.util.concurrent.CancellationException}. The request itself is not aborted, but its result is
+     * discarded.
+     *
+     * @param mayInterruptIfRunning Ignored, as no thread is blocked by the request.
+     * @return False if this future is already complete.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(null, new CancellationException("Request cancelled"));
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mError instanceof CancellationException;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mDone;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (!mDone)
+            wait();
+        return getResult();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!mDone) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                throw new TimeoutException("Request not completed in time");
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getResult();
+    }
+
+    private T getResult() throws ExecutionException {
+        if (mError instanceof CancellationException)
+            throw (CancellationException) mError;
+        if (mError != null)
+            throw new ExecutionException(mError);
+        return mResult;
+    }
+
+    /***
+     * Return a Retrofit callback completing this future.
+     */
+    Callback<T> asCallback() {
+        return new Callback<T>() {
+            @Override
+            public void success(T result, Response response) {
+                complete(result, null);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                complete(null, error);
+            }
+        };
+    }
+
+    boolean complete(T result, Throwable error) {
+        List<Listener<? super T>> listeners;
+        synchronized (this) {
+            if (mDone)
+                return false;
+            mDone = true;
+            mResult = result;
+            mError = error;
+            if (mTimeout != null)
+                mTimeout.cancel(false);
+            mTimeout = null;
+            listeners = new ArrayList<>(mListeners);
+            mListeners.clear();
+            notifyAll();
+        }
+
+        for (Listener<? super T> listener : listeners)
+            notifyListener(listener);
+        return true;
+    }
+
+    private void notifyListener(Listener<? super T> listener) {
+        if (mError != null)
+            listener.onFailure(mError);
+        else
+            listener.onSuccess(mResult);
+    }
+
+}
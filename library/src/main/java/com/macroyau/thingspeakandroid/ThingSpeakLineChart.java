@@ -1,15 +1,25 @@
 package com.macroyau.thingspeakandroid;
 
 import com.macroyau.thingspeakandroid.model.ChannelFeed;
-import com.macroyau.thingspeakandroid.model.Feed;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import lecho.lib.hellocharts.listener.ViewportChangeListener;
 import lecho.lib.hellocharts.model.Axis;
 import lecho.lib.hellocharts.model.AxisValue;
 import lecho.lib.hellocharts.model.Line;
@@ -18,12 +28,29 @@ import lecho.lib.hellocharts.model.PointValue;
 import lecho.lib.hellocharts.model.Viewport;
 import lecho.lib.hellocharts.util.ChartUtils;
 
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+
 /***
- * Representation of a field chart in a ThingSpeak Channel using the HelloCharts for Android library.
+ * Representation of a field chart in a ThingSpeak Channel using the HelloCharts for Android library. Chart data is built on the compute
+ * executor of the client, and only the {@link com.macroyau.thingspeakandroid.ThingSpeakLineChart.ChartDataUpdateListener} is notified on
+ * the callback executor, so that large feeds do not block the main thread. Chart options are read when chart data is built.
+ * <p>
+ * With incremental updates, new entries of the feed are appended to the existing chart data on the listener executor instead, and the
+ * oldest points are trimmed to a window, so that a live chart does work proportional to the new entries only.
+ * <p>
+ * With rollups, the chart also listens to the viewport of the chart view: when zoomed out beyond the entries of the feed, the minimum,
+ * average and maximum of the {@link com.macroyau.thingspeakandroid.RollupPyramid} level matching the viewport are plotted instead, without
+ * any request.
+ * <p>
+ * With lazy loading, the chart view can also be scrolled before the entries of the feed: older segments of the feed are retrieved as the
+ * viewport approaches them, and segments far from the viewport are evicted, so that a long history can be browsed with bounded memory.
  *
  * @author Macro Yau
  */
-public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUpdateListener {
+public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUpdateListener, ThingSpeakChannel.ChannelFeedColumnsUpdateListener,
+        ViewportChangeListener {
 
     /***
      * Listener for chart data update events.
@@ -44,11 +71,50 @@ public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUp
 
     }
 
+    /***
+     * Listener for chart data append events with incremental updates.
+     */
+    public interface ChartDataAppendListener {
+
+        /***
+         * New entries are appended to the existing chart data, which is modified in place, so that only the chart view needs to be refreshed.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param fieldId The ID of this specific field in the Channel.
+         * @param lineChartData The line chart data of this specific field in the Channel, as notified before.
+         * @param appendedCount The number of points appended.
+         * @param maxViewport The maximum {@link lecho.lib.hellocharts.model.Viewport} bounds of the chart, covering the window of points.
+         */
+        void onChartDataAppended(long channelId, int fieldId, LineChartData lineChartData, int appendedCount, Viewport maxViewport);
+
+    }
+
+    /***
+     * Plot every entry of the feed.
+     */
+    public static final int DOWNSAMPLING_NONE = 0;
+
+    /***
+     * Downsample the feed with the Largest-Triangle-Three-Buckets algorithm, keeping the visual shape with a smooth line.
+     */
+    public static final int DOWNSAMPLING_LTTB = 1;
+
+    /***
+     * Downsample the feed to the minimum and maximum of each bucket, keeping every local extreme.
+     */
+    public static final int DOWNSAMPLING_MIN_MAX = 2;
+
+    private static final int DEFAULT_MAX_POINTS = 1000;
+    private static final int DEFAULT_MAX_SEGMENTS = 8;
+    private static final long MIN_SEGMENT_DURATION = 60 * 1000L;
+    private static final int MAX_SEGMENT_RESULTS = 8000;
+
     private ChartDataUpdateListener mListener;
+    private ChartDataAppendListener mAppendListener;
 
     private ThingSpeakChannel mChannel;
     private int mFieldId;
-    private String mTitle;
+    private volatile String mTitle;
 
     private Date mChartStartDate, mChartEndDate;
     private boolean mSpline = false;
@@ -60,9 +126,38 @@ public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUp
     private float mValueAxisLabelInterval = 10.0f;
     private int mLineColor = ChartUtils.COLOR_RED;
     private int mAxisColor = ChartUtils.DEFAULT_COLOR;
+    private int mDownsampling = DOWNSAMPLING_NONE;
+    private int mMaxPoints = DEFAULT_MAX_POINTS;
+    private boolean mIncrementalUpdates = false;
+    private int mWindowSize = 0;
+    private RollupPyramid mRollupPyramid;
+    private boolean mLazyLoading = false;
+    private int mMaxSegments = DEFAULT_MAX_SEGMENTS;
+    private long mAggregationWindow = 0;
+    private int mAggregationFunction = FeedAggregator.AVERAGE;
 
     private LineChartData mLineChartData;
 
+    private FeedStream mStream;
+    private Executor mBuildExecutor;
+    private Executor mListenerExecutor;
+    private final AtomicInteger mBuildGeneration = new AtomicInteger();
+
+    // Only accessed on the listener executor
+    private AppendState mAppendState;
+
+    private volatile FeedColumns mColumns;
+    private volatile long mReference = -1;
+    private volatile long mVisibleStart = -1, mVisibleEnd = -1;
+    private volatile long mRollupStart, mRollupEnd;
+    private volatile int mRollupLevel = -1;
+
+    // Older segments of the feed by start date, guarded by mSegments
+    private final TreeMap<Long, FeedColumns> mSegments = new TreeMap<>();
+    private final Set<Long> mPendingSegments = new HashSet<>();
+    private long mSegmentDuration = 0;
+    private FeedQuery mSegmentQuery;
+
     /***
      * Constructor for public Channels.
      *
@@ -81,8 +176,19 @@ public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUp
      * @param readApiKey The Read API Key for this specific Channel.
      */
     public ThingSpeakLineChart(long channelId, int fieldId, String readApiKey) {
-        this.mChannel = new ThingSpeakChannel(channelId, readApiKey);
-        this.mFieldId = fieldId;
+        this(channelId, fieldId, readApiKey, ThingSpeakClient.getDefault());
+    }
+
+    /***
+     * Constructor for private Channels using a specific {@link com.macroyau.thingspeakandroid.ThingSpeakClient}.
+     *
+     * @param channelId The ID of this specific Channel.
+     * @param fieldId The ID of the specific field in the Channel.
+     * @param readApiKey The Read API Key for this specific Channel, or null for public Channels.
+     * @param client The client used to perform requests.
+     */
+    public ThingSpeakLineChart(long channelId, int fieldId, String readApiKey, ThingSpeakClient client) {
+        this(new ThingSpeakChannel(channelId, readApiKey, client), fieldId);
     }
 
     /***
@@ -94,62 +200,334 @@ public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUp
     public ThingSpeakLineChart(ThingSpeakChannel channel, int fieldId) {
         this.mChannel = channel;
         this.mFieldId = fieldId;
+        this.mBuildExecutor = channel.getClient().getComputeExecutor();
+        this.mListenerExecutor = channel.getClient().getCallbackExecutor();
     }
 
     /***
-     * Load chart data asynchronously from ThingSpeak API.
+     * Load chart data asynchronously from ThingSpeak API. The chart subscribes to the feed of the Channel, so that it does not replace the
+     * listeners of a shared Channel and is also updated by other requests of the Channel, e.g. automatic refreshes.
      */
     public void loadChartData() {
         if (mChannel != null) {
-            mChannel.setChannelFieldFeedUpdateListener(this);
-            mChannel.loadChannelFieldFeed(mFieldId);
+            subscribe();
+            mChannel.loadChannelFieldFeedColumns(mFieldId);
+        }
+    }
+
+    /***
+     * Stop receiving feed updates of the Channel, e.g. when the chart is no longer displayed.
+     */
+    public synchronized void release() {
+        if (mStream != null) {
+            mStream.cancel();
+            mStream = null;
         }
     }
 
+    private synchronized void subscribe() {
+        if (mStream != null)
+            return;
+
+        // Only the newest feed matters to a chart, so older ones are not queued behind it
+        mStream = mChannel.subscribe(mFieldId, new FeedStream.Subscriber() {
+            @Override
+            public void onFeedUpdated(long channelId, int fieldId, FeedColumns columns) {
+                onChannelFeedColumnsUpdated(channelId, fieldId, columns);
+            }
+
+            @Override
+            public void onFeedFailed(long channelId, int fieldId, RetrofitError error) {
+                // Errors are reported by the ChannelErrorListener of the Channel
+            }
+        });
+        mStream.setConflate(true);
+    }
+
     @Override
     public void onChannelFieldFeedUpdated(long channelId, int fieldId, ChannelFeed channelFieldFeed) {
-        // Get field name from Channel Feed
-        mTitle = channelFieldFeed.getChannel().getFieldName(mFieldId);
+        updateChartData(channelFieldFeed.toColumns());
+    }
+
+    @Override
+    public void onChannelFeedColumnsUpdated(long channelId, int fieldId, FeedColumns columns) {
+        if (fieldId == mFieldId)
+            updateChartData(columns);
+    }
+
+    private void updateChartData(final FeedColumns columns) {
+        if (columns.size() == 0)
+            return;
+
+        mColumns = columns;
+        final FeedQuery query = mChannel.getFeedQuery();
+        if (mRollupLevel != -1) {
+            // Zoomed out, the rollups already include the new entries
+            rebuildRollupChartData(mRollupLevel);
+        } else if (hasSegments()) {
+            // Keep the older segments and the viewport scrolled to
+            rebuildChartData(columns, query, mVisibleStart, mVisibleEnd);
+        } else if (mIncrementalUpdates && mAggregationWindow == 0) {
+            mListenerExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    appendChartData(columns, query);
+                }
+            });
+        } else {
+            rebuildChartData(columns, query);
+        }
+    }
+
+    private void rebuildChartData(final FeedColumns columns, final FeedQuery query) {
+        rebuildChartData(columns, query, -1, -1);
+    }
+
+    private void rebuildChartData(final FeedColumns columns, final FeedQuery query, final long visibleStart, final long visibleEnd) {
+        // Chart data built from an older feed is dropped if a newer feed arrives meanwhile
+        final int generation = mBuildGeneration.incrementAndGet();
+        mBuildExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The lazily loaded segments are merged off the calling thread as well
+                buildChartData(mergeSegments(columns), query, visibleStart, visibleEnd, generation);
+            }
+        });
+    }
+
+    private void rebuildRollupChartData(final int level) {
+        final long reference = mReference;
+        final long visibleStart = mVisibleStart, visibleEnd = mVisibleEnd;
+
+        // Only the buckets of the viewport and of one viewport on each side are plotted, so that scrolling within them needs no rebuild
+        final long span = Math.max(visibleEnd - visibleStart, 0);
+        mRollupStart = visibleStart - span;
+        mRollupEnd = visibleEnd + span;
+        final long plotStart = mRollupStart, plotEnd = mRollupEnd;
+
+        final int generation = mBuildGeneration.incrementAndGet();
+        mBuildExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                buildRollupChartData(level, reference, visibleStart, visibleEnd, plotStart, plotEnd, generation);
+            }
+        });
+    }
+
+    /***
+     * Select the data plotted for the viewport of the chart view. With rollups, the entries of the feed are plotted when zoomed in within
+     * them, otherwise the finest rollup level with at most the maximum number of points in the viewport. With lazy loading, the segments of
+     * the feed around the viewport are retrieved. Register the chart with {@code LineChartView.setViewportChangeListener()} to follow
+     * zooming and scrolling.
+     *
+     * @param viewport The current viewport of the chart view.
+     */
+    @Override
+    public void onViewportChanged(Viewport viewport) {
+        final RollupPyramid rollupPyramid = mRollupPyramid;
+        final FeedColumns columns = mColumns;
+        final long reference = mReference;
+        if (columns == null || reference == -1)
+            return;
+
+        final long start = reference + (long) viewport.left;
+        final long end = reference + (long) viewport.right;
+        mVisibleStart = start;
+        mVisibleEnd = end;
+        int level = -1;
+        if (rollupPyramid != null) {
+            level = rollupPyramid.selectLevel(start, end, mMaxPoints);
+            if (level == 0 && (mLazyLoading || start >= columns.getCreatedAt(0)))
+                level = -1;
+        }
+
+        // Only switching between the feed and the levels rebuilds the chart data, or scrolling beyond the plotted buckets
+        if (level != mRollupLevel) {
+            mRollupLevel = level;
+            if (level == -1)
+                rebuildChartData(columns, mChannel.getFeedQuery(), start, end);
+            else
+                rebuildRollupChartData(level);
+        } else if (level != -1 && (start < mRollupStart || end > mRollupEnd)) {
+            rebuildRollupChartData(level);
+        }
+        if (level == -1 && mLazyLoading)
+            loadSegments(columns, start, end);
+    }
+
+    private void loadSegments(FeedColumns columns, long start, long end) {
+        final FeedQuery query = mChannel.getFeedQuery();
+        final long width = Math.max(end - start, 1);
+        final long liveStart = columns.getCreatedAt(0);
+        final Date created = columns.getChannel() == null ? null : columns.getChannel().getCreatedAt();
+
+        // Prefetch one viewport before and after the visible range, up to the entries of the feed
+        long from = start - width;
+        final long to = Math.min(end + width, liveStart);
+        if (created != null)
+            from = Math.max(from, created.getTime());
+
+        final long duration;
+        final List<Long> missing = new ArrayList<>();
+        synchronized (mSegments) {
+            if (!query.equals(mSegmentQuery)) {
+                mSegments.clear();
+                mPendingSegments.clear();
+                mSegmentQuery = query;
+            }
+            if (mSegmentDuration <= 0)
+                mSegmentDuration = Math.max(width, MIN_SEGMENT_DURATION);
+            duration = mSegmentDuration;
+
+            for (long segment = from - (from % duration); segment < to; segment += duration) {
+                if (!mSegments.containsKey(segment) && mPendingSegments.add(segment))
+                    missing.add(segment);
+            }
+            evictSegments(start, end);
+        }
+
+        for (long segment : missing)
+            loadSegment(query, segment, duration);
+    }
+
+    private void loadSegment(final FeedQuery query, final long segment, final long duration) {
+        // Segment bounds are formatted in the timezone of the query, or UTC, as for backfills
+        Map<String, String> params = mChannel.getRangeRequestParams(query, segment, segment + duration - 1, MAX_SEGMENT_RESULTS);
+        mChannel.loadFeedColumns(mFieldId, params, new Callback<FeedColumns>() {
+            @Override
+            public void success(FeedColumns columns, Response response) {
+                // Entries of a segment are added to the rollups even if the segment itself is dropped
+                mChannel.updateRollupPyramids(mFieldId, query, columns);
+                synchronized (mSegments) {
+                    // Drop segments of a previous query or duration
+                    if (!mPendingSegments.remove(segment) || duration != mSegmentDuration)
+                        return;
+                    mSegments.put(segment, columns);
+                    evictSegments(mVisibleStart, mVisibleEnd);
+                }
+
+                final FeedColumns liveColumns = mColumns;
+                if (mRollupLevel == -1 && liveColumns != null)
+                    rebuildChartData(liveColumns, mChannel.getFeedQuery(), mVisibleStart, mVisibleEnd);
+            }
+
+            @Override
+            public void failure(RetrofitError error) {
+                // Retried when the viewport changes again
+                synchronized (mSegments) {
+                    mPendingSegments.remove(segment);
+                }
+            }
+        });
+    }
+
+    /***
+     * Remove the segments farthest from the visible range beyond the maximum number of segments. Must hold the lock of mSegments.
+     */
+    private void evictSegments(long start, long end) {
+        final long center = start / 2 + end / 2;
+        while (mSegments.size() > mMaxSegments) {
+            long first = mSegments.firstKey(), last = mSegments.lastKey();
+            long key = center - (first + mSegmentDuration) > last - center ? first : last;
+            if (key + mSegmentDuration > start && key <= end)
+                break;
+            mSegments.remove(key);
+        }
+    }
+
+    private boolean hasSegments() {
+        synchronized (mSegments) {
+            return !mSegments.isEmpty();
+        }
+    }
+
+    private FeedColumns mergeSegments(FeedColumns columns) {
+        FeedColumns merged = null;
+        synchronized (mSegments) {
+            for (FeedColumns segment : mSegments.values())
+                merged = merged == null ? segment : merged.merge(segment, Integer.MAX_VALUE);
+        }
+        return merged == null ? columns : merged.merge(columns, Integer.MAX_VALUE);
+    }
+
+    private void appendChartData(FeedColumns columns, FeedQuery query) {
+        final AppendState state = mAppendState;
+        if (state == null || !state.canAppend(columns, query)) {
+            // The feed does not continue the chart data, e.g. after a gap or a change of the query
+            rebuildChartData(columns, query);
+            return;
+        }
+
+        // The appended data supersedes chart data still being built from an older feed
+        mBuildGeneration.incrementAndGet();
+        final int appendedCount = state.append(columns, mFieldId);
+        if (appendedCount == 0)
+            return;
+
+        final Viewport maxViewport = state.getMaxViewport();
+        extendToRollups(maxViewport, mReference);
+        if (mAppendListener != null)
+            mAppendListener.onChartDataAppended(mChannel.getChannelId(), mFieldId, mLineChartData, appendedCount, maxViewport);
+        else if (mListener != null)
+            mListener.onChartDataUpdated(mChannel.getChannelId(), mFieldId, mTitle, mLineChartData, maxViewport, new Viewport(maxViewport));
+    }
+
+    private void buildChartData(FeedColumns columns, FeedQuery query, long visibleStart, long visibleEnd, final int generation) {
+        // Aggregate the entries locally, in the timezone of the date labels
+        final long aggregationWindow = mAggregationWindow;
+        if (aggregationWindow > 0)
+            columns = FeedAggregator.aggregate(columns, aggregationWindow, mAggregationFunction, TimeZone.getDefault());
+
+        // Get field name from Channel Feed, assigned with the chart data on the listener executor
+        final String title = columns.getChannel() != null ? columns.getChannel().getFieldName(mFieldId) : mTitle;
 
         // Initialize line chart
         List<Line> lines = new ArrayList<>();
-        List<PointValue> values = new ArrayList<>();
         List<AxisValue> dateAxisValues = new ArrayList<>();
         List<AxisValue> valueAxisValues = new ArrayList<>();
         final DateFormat df = new SimpleDateFormat(mDateAxisLabelFormat, Locale.US);
-        List<Feed> feeds = channelFieldFeed.getFeeds();
-        long reference = feeds.get(0).getCreatedAt().getTime();
+        final int size = columns.size();
+        final long[] createdAt = columns.getCreatedAtColumn();
+        final double[] fieldValues = columns.hasField(mFieldId) ? columns.getFieldColumn(mFieldId) : FeedColumns.newMissingColumn(size);
+        final long chartStart = mChartStartDate == null ? -1 : mChartStartDate.getTime();
+        final long chartEnd = mChartEndDate == null ? -1 : mChartEndDate.getTime();
+        final boolean incremental = mIncrementalUpdates && aggregationWindow == 0;
+
+        // With incremental updates, only the entries of the latest window of points are plotted
+        int first = 0;
+        if (incremental && mWindowSize > 0) {
+            int points = 0;
+            for (first = size; first > 0 && points < mWindowSize; first--) {
+                if (!Double.isNaN(fieldValues[first - 1]))
+                    points++;
+            }
+        }
+
+        long reference = createdAt[first];
         long index = 0;
         long startDateIndex = -1, endDateIndex = -1;
         long prevDate = -1;
-        float minValue;
-        try {
-            minValue = Float.parseFloat(feeds.get(0).getField(mFieldId));
-        } catch (Exception e) {
-            minValue = 0;
-        }
+        float minValue = Double.isNaN(fieldValues[first]) ? 0 : (float) fieldValues[first];
         float maxValue = -1;
+        int[] valueIndices = new int[size];
+        int valueCount = 0;
 
-        // Inflate line chart
-        for (Feed f : feeds) {
-            Date createdAt = f.getCreatedAt();
-            long date = createdAt.getTime();
+        // Scan all entries, so that labels and bounds do not depend on downsampling
+        for (int i = first; i < size; i++) {
+            long date = createdAt[i];
             index = date - reference;
 
             // Check start and end date for default chart viewport
-            if (mChartStartDate != null && startDateIndex == -1 && createdAt.after(mChartStartDate))
+            if (chartStart != -1 && startDateIndex == -1 && date > chartStart)
                 startDateIndex = index;
-            if (mChartEndDate != null && createdAt.before(mChartEndDate))
+            if (chartEnd != -1 && date < chartEnd)
                 endDateIndex = index;
 
-            // Insert data points
-            float value;
-            try {
-                value = Float.parseFloat(f.getField(mFieldId));
-            } catch (Exception e) {
+            // Collect data points
+            if (Double.isNaN(fieldValues[i]))
                 continue;
-            }
-            values.add(new PointValue(index, value));
+            float value = (float) fieldValues[i];
+            valueIndices[valueCount++] = i;
 
             // Configure date labels
             date /= 1000;
@@ -167,6 +545,19 @@ public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUp
                 maxValue = value;
         }
 
+        // Inflate line chart with the points kept by downsampling, which is not applied to incrementally updated chart data
+        if (incremental)
+            valueIndices = Arrays.copyOf(valueIndices, valueCount);
+        else if (mDownsampling == DOWNSAMPLING_LTTB)
+            valueIndices = Downsampler.largestTriangleThreeBuckets(createdAt, fieldValues, valueIndices, valueCount, mMaxPoints);
+        else if (mDownsampling == DOWNSAMPLING_MIN_MAX)
+            valueIndices = Downsampler.minMax(fieldValues, valueIndices, valueCount, mMaxPoints);
+        else
+            valueIndices = Arrays.copyOf(valueIndices, valueCount);
+        List<PointValue> values = new ArrayList<>(valueIndices.length);
+        for (int i : valueIndices)
+            values.add(new PointValue(createdAt[i] - reference, (float) fieldValues[i]));
+
         // Adjust line chart Y-axis bounds
         float axisMinValue = minValue - (minValue % mValueAxisLabelInterval);
         float axisMaxValue = maxValue - (maxValue % mValueAxisLabelInterval) + mValueAxisLabelInterval;
@@ -185,31 +576,183 @@ public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUp
         lines.add(line);
 
         // Create LineChartData instance
-        mLineChartData = new LineChartData(lines);
-        mLineChartData.setAxisYLeft(new Axis()
+        final LineChartData lineChartData = new LineChartData(lines);
+        Axis valueAxis = new Axis()
                 .setValues(valueAxisValues)
                 .setTextColor(mAxisColor)
                 .setHasLines(true)
-                .setName(mYAxisName == null ? mTitle : mYAxisName));
-        mLineChartData.setAxisXBottom(new Axis()
+                .setName(mYAxisName == null ? title : mYAxisName);
+        lineChartData.setAxisYLeft(valueAxis);
+        lineChartData.setAxisXBottom(new Axis()
                 .setTextColor(mAxisColor)
                 .setValues(dateAxisValues)
                 .setName(mXAxisName));
 
         // Configure maximum and default viewport
-        Viewport maxViewport = new Viewport(0, (float) (axisMaxValue + mValueAxisLabelInterval * 0.25), index, (float) (axisMinValue - mValueAxisLabelInterval * 0.25));
+        final Viewport maxViewport = new Viewport(0, (float) (axisMaxValue + mValueAxisLabelInterval * 0.25), index, (float) (axisMinValue - mValueAxisLabelInterval * 0.25));
         if (startDateIndex == -1)
             startDateIndex = 0;
         if (endDateIndex == -1)
             endDateIndex = index;
-        Viewport defaultViewport = new Viewport(maxViewport);
+        final Viewport defaultViewport = new Viewport(maxViewport);
         defaultViewport.left = startDateIndex;
         defaultViewport.right = endDateIndex;
+        if (visibleStart != -1) {
+            defaultViewport.left = visibleStart - reference;
+            defaultViewport.right = visibleEnd - reference;
+        }
+        extendToRollups(maxViewport, reference);
+        extendToSegments(maxViewport, reference, columns);
+        final long chartReference = reference;
+
+        // Keep the state of the chart data for appending new entries
+        final AppendState appendState;
+        if (incremental) {
+            int windowSize = mWindowSize > 0 ? mWindowSize : Math.max(values.size(), size - first);
+            appendState = new AppendState(query, reference, createdAt[size - 1], prevDate, values, dateAxisValues, valueAxis,
+                    axisMinValue, axisMaxValue, df, mDateAxisLabelInterval, mValueAxisLabelInterval, windowSize);
+        } else {
+            appendState = null;
+        }
+
+        // Notify listener
+        mListenerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mBuildGeneration.get())
+                    return;
+                mLineChartData = lineChartData;
+                mTitle = title;
+                mAppendState = appendState;
+                mReference = chartReference;
+                if (mListener != null)
+                    mListener.onChartDataUpdated(mChannel.getChannelId(), mFieldId, title, lineChartData, maxViewport, defaultViewport);
+            }
+        });
+    }
+
+    private void buildRollupChartData(int level, long reference, long visibleStart, long visibleEnd, long plotStart, long plotEnd,
+                                      final int generation) {
+        final RollupPyramid rollupPyramid = mRollupPyramid;
+        if (rollupPyramid == null)
+            return;
+        final RollupPyramid.Buckets buckets = rollupPyramid.getBuckets(level, plotStart, plotEnd);
+        final int size = buckets.size();
+        if (size == 0)
+            return;
+        final String title = mTitle;
+
+        // Date labels are placed on buckets aligned to multiples of a step, so that they do not move when scrolling
+        final long width = buckets.getBucketWidth();
+        final long step = Math.max((visibleEnd - visibleStart) / width / 8, 1);
+        final DateFormat df = new SimpleDateFormat(width < 60 * 60 * 1000L ? mDateAxisLabelFormat
+                : width < 24 * 60 * 60 * 1000L ? "MM-dd HH:mm" : "yyyy-MM-dd", Locale.US);
+
+        List<PointValue> averageValues = new ArrayList<>(size);
+        List<PointValue> minValues = new ArrayList<>(size);
+        List<PointValue> maxValues = new ArrayList<>(size);
+        List<AxisValue> dateAxisValues = new ArrayList<>();
+        List<AxisValue> valueAxisValues = new ArrayList<>();
+        float minValue = (float) buckets.getMin(0);
+        float maxValue = (float) buckets.getMax(0);
+        for (int i = 0; i < size; i++) {
+            long start = buckets.getStart(i);
+            float index = start + width / 2 - reference;
+            averageValues.add(new PointValue(index, (float) buckets.getAverage(i)));
+            minValues.add(new PointValue(index, (float) buckets.getMin(i)));
+            maxValues.add(new PointValue(index, (float) buckets.getMax(i)));
+            if ((start / width) % step == 0)
+                dateAxisValues.add(new AxisValue(start - reference).setLabel(df.format(new Date(start))));
+
+            // Check minimum and maximum in data set
+            minValue = Math.min(minValue, (float) buckets.getMin(i));
+            maxValue = Math.max(maxValue, (float) buckets.getMax(i));
+        }
+
+        // Adjust line chart Y-axis bounds
+        float axisMinValue = minValue - (minValue % mValueAxisLabelInterval);
+        float axisMaxValue = maxValue - (maxValue % mValueAxisLabelInterval) + mValueAxisLabelInterval;
+        float axisValue = axisMinValue;
+        while (axisValue <= axisMaxValue) {
+            valueAxisValues.add(new AxisValue(axisValue));
+            axisValue += mValueAxisLabelInterval;
+        }
+
+        // Configure lines of the average, and of the minimum and maximum as thin lines around it
+        List<Line> lines = new ArrayList<>();
+        Line line = new Line(averageValues);
+        line.setCubic(mSpline);
+        line.setFilled(mFilled);
+        line.setColor(mLineColor);
+        line.setHasLabelsOnlyForSelected(true);
+        lines.add(line);
+        for (List<PointValue> values : Arrays.asList(minValues, maxValues)) {
+            Line bound = new Line(values);
+            bound.setColor(mLineColor);
+            bound.setHasPoints(false);
+            bound.setStrokeWidth(1);
+            lines.add(bound);
+        }
+
+        // Create LineChartData instance
+        final LineChartData lineChartData = new LineChartData(lines);
+        lineChartData.setAxisYLeft(new Axis()
+                .setValues(valueAxisValues)
+                .setTextColor(mAxisColor)
+                .setHasLines(true)
+                .setName(mYAxisName == null ? title : mYAxisName));
+        lineChartData.setAxisXBottom(new Axis()
+                .setTextColor(mAxisColor)
+                .setValues(dateAxisValues)
+                .setName(mXAxisName));
+
+        // Configure maximum viewport covering the history of the rollups, and keep the current viewport
+        long end = Math.max(buckets.getStart(size - 1) + width, rollupPyramid.getEndDate());
+        final Viewport maxViewport = new Viewport(buckets.getStart(0) - reference, (float) (axisMaxValue + mValueAxisLabelInterval * 0.25),
+                end - reference, (float) (axisMinValue - mValueAxisLabelInterval * 0.25));
+        extendToRollups(maxViewport, reference);
+        final Viewport currentViewport = new Viewport(maxViewport);
+        currentViewport.left = Math.max(visibleStart - reference, maxViewport.left);
+        currentViewport.right = Math.min(visibleEnd - reference, maxViewport.right);
 
         // Notify listener
-        if (mListener != null) {
-            mListener.onChartDataUpdated(mChannel.getChannelId(), mFieldId, mTitle, mLineChartData, maxViewport, defaultViewport);
+        mListenerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mBuildGeneration.get())
+                    return;
+                mLineChartData = lineChartData;
+                mAppendState = null;
+                if (mListener != null)
+                    mListener.onChartDataUpdated(mChannel.getChannelId(), mFieldId, title, lineChartData, maxViewport, currentViewport);
+            }
+        });
+    }
+
+    private void extendToSegments(Viewport maxViewport, long reference, FeedColumns columns) {
+        // Allow scrolling to the segment before the earliest one, which is retrieved when approached
+        if (!mLazyLoading)
+            return;
+        long start = columns.getCreatedAt(0);
+        synchronized (mSegments) {
+            if (!mSegments.isEmpty())
+                start = Math.min(start, mSegments.firstKey());
+            start -= mSegmentDuration > 0 ? mSegmentDuration
+                    : Math.max(columns.getCreatedAt(columns.size() - 1) - columns.getCreatedAt(0), MIN_SEGMENT_DURATION);
         }
+        if (columns.getChannel() != null && columns.getChannel().getCreatedAt() != null)
+            start = Math.max(start, columns.getChannel().getCreatedAt().getTime());
+        maxViewport.left = Math.min(maxViewport.left, start - reference);
+    }
+
+    private void extendToRollups(Viewport maxViewport, long reference) {
+        // Allow zooming out to the history covered by the rollups
+        final RollupPyramid rollupPyramid = mRollupPyramid;
+        if (rollupPyramid == null)
+            return;
+        long start = rollupPyramid.getStartDate();
+        if (start != -1)
+            maxViewport.left = Math.min(maxViewport.left, start - reference);
     }
 
     /***
@@ -221,6 +764,36 @@ public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUp
         this.mListener = listener;
     }
 
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.ThingSpeakLineChart.ChartDataAppendListener} notified when new entries are appended
+     * with incremental updates. If it is not set, the
+     * {@link com.macroyau.thingspeakandroid.ThingSpeakLineChart.ChartDataUpdateListener} is notified with the modified chart data instead.
+     *
+     * @param listener The listener.
+     */
+    public void setAppendListener(ChartDataAppendListener listener) {
+        this.mAppendListener = listener;
+    }
+
+    /***
+     * Set the executor on which chart data is built. The default is the compute executor of the client.
+     *
+     * @param executor The executor.
+     */
+    public void setBuildExecutor(Executor executor) {
+        this.mBuildExecutor = executor;
+    }
+
+    /***
+     * Set the executor on which the {@link com.macroyau.thingspeakandroid.ThingSpeakLineChart.ChartDataUpdateListener} is notified. The
+     * default is the callback executor of the client, usually the main thread.
+     *
+     * @param executor The executor.
+     */
+    public void setListenerExecutor(Executor executor) {
+        this.mListenerExecutor = executor;
+    }
+
     /***
      * @see com.macroyau.thingspeakandroid.ThingSpeakChannel#setReadApiKey(String)
      */
@@ -360,6 +933,116 @@ public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUp
         this.mLineColor = color;
     }
 
+    /***
+     * Set the algorithm reducing the number of points plotted, so that the rendering cost of the chart does not grow with the length of the
+     * feed. Downsampling is disabled by default.
+     *
+     * @param downsampling {@link #DOWNSAMPLING_NONE}, {@link #DOWNSAMPLING_LTTB} or {@link #DOWNSAMPLING_MIN_MAX}.
+     */
+    public void setDownsampling(int downsampling) {
+        this.mDownsampling = downsampling;
+    }
+
+    /***
+     * Set the maximum number of points plotted when downsampling, e.g. the width of the chart view in pixels. The default is 1000 points.
+     *
+     * @param maxPoints The number of points.
+     */
+    public void setMaxPoints(int maxPoints) {
+        this.mMaxPoints = Math.max(maxPoints, 4);
+    }
+
+    /***
+     * Set to true to append new entries of the feed to the existing chart data, instead of building new chart data on every update. The chart
+     * data is modified in place on the listener executor, which must therefore be the thread drawing the chart. New chart data is still
+     * built when the feed does not continue the existing one, e.g. after a gap or a change of the query. Downsampling is not applied to
+     * incrementally updated chart data, whose size is bounded by the window instead. Incremental updates are disabled by default.
+     *
+     * @param incremental True to append new entries.
+     */
+    public void setIncrementalUpdates(boolean incremental) {
+        this.mIncrementalUpdates = incremental;
+    }
+
+    /***
+     * Set the number of the latest points kept with incremental updates. The default is the number of points when the chart data is built.
+     *
+     * @param windowSize The number of points, or 0 for the default.
+     */
+    public void setWindowSize(int windowSize) {
+        this.mWindowSize = Math.max(windowSize, 0);
+    }
+
+    /***
+     * Set to true to plot the rollups of the field when the chart view is zoomed out beyond the entries of the feed. The
+     * {@link com.macroyau.thingspeakandroid.RollupPyramid} of the Channel is updated with every feed retrieved, and the chart must be
+     * registered as the {@code ViewportChangeListener} of the chart view. Rollups are disabled by default.
+     *
+     * @param enabled True to plot rollups.
+     */
+    public void setRollupsEnabled(boolean enabled) {
+        this.mRollupPyramid = enabled ? mChannel.getRollupPyramid(mFieldId) : null;
+        if (!enabled)
+            mRollupLevel = -1;
+    }
+
+    /***
+     * Set to true to retrieve older segments of the feed as the chart view is scrolled before its entries. Segments within one viewport of
+     * the visible range are prefetched, and the segments farthest from it are evicted beyond the maximum number of segments. The chart must
+     * be registered as the {@code ViewportChangeListener} of the chart view. Lazy loading is disabled by default.
+     *
+     * @param lazyLoading True to retrieve older segments.
+     */
+    public void setLazyLoading(boolean lazyLoading) {
+        this.mLazyLoading = lazyLoading;
+    }
+
+    /***
+     * Set the duration of the segments retrieved with lazy loading. Each segment is retrieved with a single request of at most 8000
+     * entries. The default is the duration of the viewport when the first segment is retrieved.
+     *
+     * @param duration The duration in milliseconds, or 0 for the default.
+     */
+    public void setSegmentDuration(long duration) {
+        synchronized (mSegments) {
+            mSegments.clear();
+            mPendingSegments.clear();
+            mSegmentDuration = duration > 0 ? Math.max(duration, MIN_SEGMENT_DURATION) : 0;
+        }
+    }
+
+    /***
+     * Set the maximum number of segments kept with lazy loading. The default is 8 segments.
+     *
+     * @param maxSegments The number of segments.
+     */
+    public void setMaxSegments(int maxSegments) {
+        this.mMaxSegments = Math.max(maxSegments, 1);
+    }
+
+    /***
+     * Set the aggregation of the entries plotted, e.g. hourly medians. The entries already retrieved are aggregated locally with a
+     * {@link com.macroyau.thingspeakandroid.FeedAggregator}, so that the chart data is rebuilt immediately without any request. Unlike
+     * {@link #setTimescale(int)}, any window duration and function can be used. Incremental updates are not applied to aggregated chart
+     * data.
+     *
+     * @param window The duration of the windows in milliseconds, or 0 to plot every entry.
+     * @param function The aggregation function, e.g. {@link com.macroyau.thingspeakandroid.FeedAggregator#AVERAGE}.
+     * @throws IllegalArgumentException If the function is not valid.
+     */
+    public void setAggregation(long window, int function) {
+        if (!FeedAggregator.isValidFunction(function))
+            throw new IllegalArgumentException("Invalid aggregation function " + function);
+        this.mAggregationWindow = Math.max(window, 0);
+        this.mAggregationFunction = function;
+
+        final FeedColumns columns = mColumns;
+        if (columns != null && mRollupLevel == -1) {
+            final long visibleStart = mVisibleStart, visibleEnd = mVisibleEnd;
+            rebuildChartData(columns, mChannel.getFeedQuery(), visibleStart, visibleEnd);
+        }
+    }
+
     /***
      * Set the axis color of the chart. The default color is red.
      *
@@ -369,4 +1052,152 @@ public class ThingSpeakLineChart implements ThingSpeakChannel.ChannelFieldFeedUp
         this.mAxisColor = color;
     }
 
+    /***
+     * State of incrementally updated chart data. Points are appended to the line, and the minimum and maximum values of the window are kept
+     * by monotonic queues, so that both take amortized constant time per point.
+     */
+    private static final class AppendState {
+
+        private final FeedQuery mQuery;
+        private final long mReference;
+        private final List<PointValue> mPoints;
+        private final List<AxisValue> mDateAxisValues;
+        private final Axis mValueAxis;
+        private final DateFormat mDateFormat;
+        private final int mDateAxisLabelInterval;
+        private final float mValueAxisLabelInterval;
+        private final int mWindowSize;
+
+        private final ArrayDeque<PointValue> mMinQueue = new ArrayDeque<>();
+        private final ArrayDeque<PointValue> mMaxQueue = new ArrayDeque<>();
+        private long mLastCreatedAt;
+        private long mPrevDate;
+        private float mAxisMinValue, mAxisMaxValue;
+
+        AppendState(FeedQuery query, long reference, long lastCreatedAt, long prevDate, List<PointValue> points, List<AxisValue> dateAxisValues,
+                    Axis valueAxis, float axisMinValue, float axisMaxValue, DateFormat dateFormat, int dateAxisLabelInterval,
+                    float valueAxisLabelInterval, int windowSize) {
+            this.mQuery = query;
+            this.mReference = reference;
+            this.mLastCreatedAt = lastCreatedAt;
+            this.mPrevDate = prevDate;
+            this.mPoints = points;
+            this.mDateAxisValues = dateAxisValues;
+            this.mValueAxis = valueAxis;
+            this.mAxisMinValue = axisMinValue;
+            this.mAxisMaxValue = axisMaxValue;
+            this.mDateFormat = dateFormat;
+            this.mDateAxisLabelInterval = dateAxisLabelInterval;
+            this.mValueAxisLabelInterval = valueAxisLabelInterval;
+            this.mWindowSize = windowSize;
+            for (PointValue point : points)
+                offer(point);
+        }
+
+        /***
+         * Return whether the feed overlaps the last entry of the chart data, so that its newer entries can be appended without a gap.
+         */
+        boolean canAppend(FeedColumns columns, FeedQuery query) {
+            return mQuery.equals(query) && columns.getCreatedAt(0) <= mLastCreatedAt && columns.getCreatedAt(columns.size() - 1) >= mLastCreatedAt;
+        }
+
+        int append(FeedColumns columns, int fieldId) {
+            // Only the entries after the last one are visited
+            final int size = columns.size();
+            final long[] createdAt = columns.getCreatedAtColumn();
+            int from = size;
+            while (from > 0 && createdAt[from - 1] > mLastCreatedAt)
+                from--;
+            if (from == size)
+                return 0;
+
+            final double[] fieldValues = columns.hasField(fieldId) ? columns.getFieldColumn(fieldId) : null;
+            int appendedCount = 0;
+            for (int i = from; i < size; i++) {
+                if (fieldValues == null || Double.isNaN(fieldValues[i]))
+                    continue;
+                long date = createdAt[i];
+                long index = date - mReference;
+                PointValue point = new PointValue(index, (float) fieldValues[i]);
+                mPoints.add(point);
+                offer(point);
+                appendedCount++;
+
+                // Configure date labels
+                date /= 1000;
+                long currentMinute = date - (date % 60);
+                if ((currentMinute % (mDateAxisLabelInterval * 60) == 0) && currentMinute != mPrevDate) {
+                    mPrevDate = currentMinute;
+                    currentMinute *= 1000;
+                    mDateAxisValues.add(new AxisValue(index).setLabel(mDateFormat.format(new Date(currentMinute))));
+                }
+            }
+            mLastCreatedAt = createdAt[size - 1];
+
+            if (appendedCount > 0) {
+                trim();
+                updateValueAxis();
+            }
+            return appendedCount;
+        }
+
+        Viewport getMaxViewport() {
+            return new Viewport(getWindowStart(), (float) (mAxisMaxValue + mValueAxisLabelInterval * 0.25), mLastCreatedAt - mReference,
+                    (float) (mAxisMinValue - mValueAxisLabelInterval * 0.25));
+        }
+
+        private void offer(PointValue point) {
+            while (!mMinQueue.isEmpty() && mMinQueue.peekLast().getY() >= point.getY())
+                mMinQueue.pollLast();
+            mMinQueue.addLast(point);
+            while (!mMaxQueue.isEmpty() && mMaxQueue.peekLast().getY() <= point.getY())
+                mMaxQueue.pollLast();
+            mMaxQueue.addLast(point);
+        }
+
+        private float getWindowStart() {
+            return mPoints.isEmpty() ? 0 : mPoints.get(Math.max(mPoints.size() - mWindowSize, 0)).getX();
+        }
+
+        private void trim() {
+            final float windowStart = getWindowStart();
+            while (mMinQueue.peekFirst().getX() < windowStart)
+                mMinQueue.pollFirst();
+            while (mMaxQueue.peekFirst().getX() < windowStart)
+                mMaxQueue.pollFirst();
+
+            // Points before the window are removed in batches, so that shifting the lists is amortized over the appended points
+            int excess = mPoints.size() - mWindowSize;
+            if (excess < Math.max(mWindowSize / 8, 1))
+                return;
+            mPoints.subList(0, excess).clear();
+            int labels = 0;
+            while (labels < mDateAxisValues.size() && mDateAxisValues.get(labels).getValue() < windowStart)
+                labels++;
+            mDateAxisValues.subList(0, labels).clear();
+        }
+
+        private void updateValueAxis() {
+            // Bounds as computed when building chart data, i.e. the maximum is at least -1
+            float minValue = mMinQueue.peekFirst().getY();
+            float maxValue = Math.max(mMaxQueue.peekFirst().getY(), -1);
+            float axisMinValue = minValue - (minValue % mValueAxisLabelInterval);
+            float axisMaxValue = maxValue - (maxValue % mValueAxisLabelInterval) + mValueAxisLabelInterval;
+            if (axisMinValue == mAxisMinValue && axisMaxValue == mAxisMaxValue)
+                return;
+
+            // Labels are only rebuilt when the bounds change
+            mAxisMinValue = axisMinValue;
+            mAxisMaxValue = axisMaxValue;
+            List<AxisValue> valueAxisValues = new ArrayList<>();
+            float axisValue = axisMinValue;
+            while (axisValue <= axisMaxValue) {
+                valueAxisValues.add(new AxisValue(axisValue));
+                axisValue += mValueAxisLabelInterval;
+            }
+            mValueAxis.setValues(valueAxisValues);
+        }
+
+    }
+
 }
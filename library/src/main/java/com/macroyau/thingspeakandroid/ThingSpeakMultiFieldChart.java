@@ -0,0 +1,549 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lecho.lib.hellocharts.model.Axis;
+import lecho.lib.hellocharts.model.AxisValue;
+import lecho.lib.hellocharts.model.Line;
+import lecho.lib.hellocharts.model.LineChartData;
+import lecho.lib.hellocharts.model.PointValue;
+import lecho.lib.hellocharts.model.Viewport;
+import lecho.lib.hellocharts.util.ChartUtils;
+
+import retrofit.RetrofitError;
+
+/***
+ * Representation of a chart of multiple fields in a ThingSpeak Channel using the HelloCharts for Android library. All fields are retrieved
+ * with a single Channel feed request and plotted as one line each on a shared date axis. As with
+ * {@link com.macroyau.thingspeakandroid.ThingSpeakLineChart}, chart data is built on the compute executor of the client and only the listener
+ * is notified on the callback executor.
+ *
+ * @author Macro Yau
+ */
+public class ThingSpeakMultiFieldChart implements ThingSpeakChannel.ChannelFeedColumnsUpdateListener {
+
+    /***
+     * Listener for chart data update events.
+     */
+    public interface ChartDataUpdateListener {
+
+        /***
+         * Chart data is successfully fetched from the ThingSpeak API.
+         *
+         * @param channelId The ID of this specific Channel.
+         * @param fieldIds The IDs of the plotted fields, in the order of the lines in the chart data.
+         * @param lineChartData The line chart data of the fields in the Channel.
+         * @param maxViewport The maximum {@link lecho.lib.hellocharts.model.Viewport} bounds of the chart.
+         * @param initialViewport The initial {@link lecho.lib.hellocharts.model.Viewport} bounds of the chart.
+         */
+        void onChartDataUpdated(long channelId, int[] fieldIds, LineChartData lineChartData, Viewport maxViewport, Viewport initialViewport);
+
+    }
+
+    /***
+     * Plot the field against the left value axis.
+     */
+    public static final int AXIS_LEFT = 0;
+
+    /***
+     * Plot the field against the right value axis, scaled independently of the left one.
+     */
+    public static final int AXIS_RIGHT = 1;
+
+    private static class FieldOptions {
+
+        private int mColor;
+        private int mAxis;
+
+    }
+
+    private ChartDataUpdateListener mListener;
+
+    private ThingSpeakChannel mChannel;
+    private final Map<Integer, FieldOptions> mFields = new LinkedHashMap<>();
+
+    private Date mChartStartDate, mChartEndDate;
+    private boolean mSpline = false;
+    private boolean mFilled = false;
+    private String mXAxisName = "Date";
+    private String mLeftYAxisName, mRightYAxisName;
+    private String mDateAxisLabelFormat = "HH:mm";
+    private int mDateAxisLabelInterval = 10;
+    private float mLeftValueAxisLabelInterval = 10.0f;
+    private float mRightValueAxisLabelInterval = 10.0f;
+    private int mAxisColor = ChartUtils.DEFAULT_COLOR;
+
+    private LineChartData mLineChartData;
+
+    private FeedStream mStream;
+    private Executor mBuildExecutor;
+    private Executor mListenerExecutor;
+    private final AtomicInteger mBuildGeneration = new AtomicInteger();
+
+    /***
+     * Constructor for public Channels.
+     *
+     * @param channelId The ID of this specific Channel.
+     */
+    public ThingSpeakMultiFieldChart(long channelId) {
+        this(channelId, null);
+    }
+
+    /***
+     * Constructor for private Channels.
+     *
+     * @param channelId The ID of this specific Channel.
+     * @param readApiKey The Read API Key for this specific Channel.
+     */
+    public ThingSpeakMultiFieldChart(long channelId, String readApiKey) {
+        this(new ThingSpeakChannel(channelId, readApiKey));
+    }
+
+    /***
+     * Constructor for an existing {@link com.macroyau.thingspeakandroid.ThingSpeakChannel}.
+     *
+     * @param channel The existing {@link com.macroyau.thingspeakandroid.ThingSpeakChannel}.
+     */
+    public ThingSpeakMultiFieldChart(ThingSpeakChannel channel) {
+        this.mChannel = channel;
+        this.mBuildExecutor = channel.getClient().getComputeExecutor();
+        this.mListenerExecutor = channel.getClient().getCallbackExecutor();
+    }
+
+    /***
+     * Add a field to the chart, plotted against the left value axis with the next default color.
+     *
+     * @param fieldId The ID of the field in the Channel.
+     */
+    public void addField(int fieldId) {
+        addField(fieldId, ChartUtils.COLORS[mFields.size() % ChartUtils.COLORS.length]);
+    }
+
+    /***
+     * Add a field to the chart, plotted against the left value axis.
+     *
+     * @param fieldId The ID of the field in the Channel.
+     * @param color The line color of the field.
+     */
+    public void addField(int fieldId, int color) {
+        addField(fieldId, color, AXIS_LEFT);
+    }
+
+    /***
+     * Add a field to the chart.
+     *
+     * @param fieldId The ID of the field in the Channel.
+     * @param color The line color of the field.
+     * @param axis The value axis of the field, either {@link #AXIS_LEFT} or {@link #AXIS_RIGHT}.
+     */
+    public void addField(int fieldId, int color, int axis) {
+        if (fieldId < 1 || fieldId > FeedColumns.FIELD_COUNT)
+            return;
+
+        FieldOptions options = new FieldOptions();
+        options.mColor = color;
+        options.mAxis = axis;
+        mFields.put(fieldId, options);
+    }
+
+    /***
+     * Remove a field from the chart.
+     *
+     * @param fieldId The ID of the field in the Channel.
+     */
+    public void removeField(int fieldId) {
+        mFields.remove(fieldId);
+    }
+
+    /***
+     * Load chart data asynchronously from ThingSpeak API. The chart subscribes to the feed of the Channel, so that it does not replace the
+     * listeners of a shared Channel and is also updated by other requests of the Channel, e.g. automatic refreshes.
+     */
+    public void loadChartData() {
+        if (mChannel != null) {
+            subscribe();
+            mChannel.loadChannelFeedColumns();
+        }
+    }
+
+    /***
+     * Stop receiving feed updates of the Channel, e.g. when the chart is no longer displayed.
+     */
+    public synchronized void release() {
+        if (mStream != null) {
+            mStream.cancel();
+            mStream = null;
+        }
+    }
+
+    private synchronized void subscribe() {
+        if (mStream != null)
+            return;
+
+        // Only the newest feed matters to a chart, so older ones are not queued behind it
+        mStream = mChannel.subscribe(ThingSpeakChannel.ALL_FIELDS, new FeedStream.Subscriber() {
+            @Override
+            public void onFeedUpdated(long channelId, int fieldId, FeedColumns columns) {
+                onChannelFeedColumnsUpdated(channelId, fieldId, columns);
+            }
+
+            @Override
+            public void onFeedFailed(long channelId, int fieldId, RetrofitError error) {
+                // Errors are reported by the ChannelErrorListener of the Channel
+            }
+        });
+        mStream.setConflate(true);
+    }
+
+    @Override
+    public void onChannelFeedColumnsUpdated(long channelId, int fieldId, final FeedColumns columns) {
+        if (fieldId != ThingSpeakChannel.ALL_FIELDS || columns.size() == 0 || mFields.isEmpty())
+            return;
+
+        // Fields are copied, as they may be changed on the main thread while chart data is built
+        final Map<Integer, FieldOptions> fields = new LinkedHashMap<>(mFields);
+        final int generation = mBuildGeneration.incrementAndGet();
+        mBuildExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                buildChartData(columns, fields, generation);
+            }
+        });
+    }
+
+    private void buildChartData(FeedColumns columns, Map<Integer, FieldOptions> fields, final int generation) {
+        final int size = columns.size();
+        final long[] createdAt = columns.getCreatedAtColumn();
+        final long reference = createdAt[0];
+        final long lastIndex = createdAt[size - 1] - reference;
+
+        // Find the value range of each axis
+        float[] leftRange = { Float.MAX_VALUE, -Float.MAX_VALUE };
+        float[] rightRange = { Float.MAX_VALUE, -Float.MAX_VALUE };
+        for (Map.Entry<Integer, FieldOptions> field : fields.entrySet()) {
+            double[] values = columns.getFieldColumn(field.getKey());
+            if (values == null)
+                continue;
+            float[] range = field.getValue().mAxis == AXIS_RIGHT ? rightRange : leftRange;
+            for (int i = 0; i < size; i++) {
+                if (Double.isNaN(values[i]))
+                    continue;
+                range[0] = Math.min(range[0], (float) values[i]);
+                range[1] = Math.max(range[1], (float) values[i]);
+            }
+        }
+        float[] leftBounds = getAxisBounds(leftRange, mLeftValueAxisLabelInterval);
+        float[] rightBounds = getAxisBounds(rightRange, mRightValueAxisLabelInterval);
+        if (leftRange[0] > leftRange[1] && rightRange[0] <= rightRange[1])
+            leftBounds = rightBounds;
+
+        // Right axis values are mapped linearly onto the left axis bounds
+        final float scale = (leftBounds[1] - leftBounds[0]) / (rightBounds[1] - rightBounds[0]);
+
+        // Inflate one line per field on the shared date axis
+        List<Line> lines = new ArrayList<>();
+        final int[] fieldIds = new int[fields.size()];
+        int lineIndex = 0;
+        for (Map.Entry<Integer, FieldOptions> field : fields.entrySet()) {
+            FieldOptions options = field.getValue();
+            double[] values = columns.getFieldColumn(field.getKey());
+            List<PointValue> points = new ArrayList<>();
+            if (values != null) {
+                for (int i = 0; i < size; i++) {
+                    if (Double.isNaN(values[i]))
+                        continue;
+                    float value = (float) values[i];
+                    if (options.mAxis == AXIS_RIGHT)
+                        value = leftBounds[0] + (value - rightBounds[0]) * scale;
+                    points.add(new PointValue(createdAt[i] - reference, value));
+                }
+            }
+
+            Line line = new Line(points);
+            line.setCubic(mSpline);
+            line.setFilled(mFilled);
+            line.setColor(options.mColor);
+            line.setHasLabelsOnlyForSelected(true);
+            lines.add(line);
+            fieldIds[lineIndex++] = field.getKey();
+        }
+
+        // Configure date labels and default viewport
+        List<AxisValue> dateAxisValues = new ArrayList<>();
+        final DateFormat df = new SimpleDateFormat(mDateAxisLabelFormat, Locale.US);
+        long startDateIndex = -1, endDateIndex = -1;
+        long prevDate = -1;
+        for (int i = 0; i < size; i++) {
+            long date = createdAt[i];
+            long index = date - reference;
+
+            if (mChartStartDate != null && startDateIndex == -1 && date > mChartStartDate.getTime())
+                startDateIndex = index;
+            if (mChartEndDate != null && date < mChartEndDate.getTime())
+                endDateIndex = index;
+
+            date /= 1000;
+            long currentMinute = date - (date % 60);
+            if ((currentMinute % (mDateAxisLabelInterval * 60) == 0) && currentMinute != prevDate) {
+                prevDate = currentMinute;
+                dateAxisValues.add(new AxisValue(index).setLabel(df.format(new Date(currentMinute * 1000))));
+            }
+        }
+
+        // Create LineChartData instance
+        final LineChartData lineChartData = new LineChartData(lines);
+        lineChartData.setAxisXBottom(new Axis()
+                .setTextColor(mAxisColor)
+                .setValues(dateAxisValues)
+                .setName(mXAxisName));
+        lineChartData.setAxisYLeft(new Axis()
+                .setValues(getValueAxisValues(leftBounds, mLeftValueAxisLabelInterval, leftBounds, 1, false))
+                .setTextColor(mAxisColor)
+                .setHasLines(true)
+                .setName(mLeftYAxisName));
+        if (rightRange[0] <= rightRange[1]) {
+            lineChartData.setAxisYRight(new Axis()
+                    .setValues(getValueAxisValues(rightBounds, mRightValueAxisLabelInterval, leftBounds, scale, true))
+                    .setTextColor(mAxisColor)
+                    .setName(mRightYAxisName));
+        }
+
+        // Configure maximum and default viewport
+        float margin = (leftBounds[1] - leftBounds[0]) * 0.025f;
+        final Viewport maxViewport = new Viewport(0, leftBounds[1] + margin, lastIndex, leftBounds[0] - margin);
+        final Viewport defaultViewport = new Viewport(maxViewport);
+        defaultViewport.left = startDateIndex == -1 ? 0 : startDateIndex;
+        defaultViewport.right = endDateIndex == -1 ? lastIndex : endDateIndex;
+
+        // Notify listener
+        mListenerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mBuildGeneration.get())
+                    return;
+                mLineChartData = lineChartData;
+                if (mListener != null)
+                    mListener.onChartDataUpdated(mChannel.getChannelId(), fieldIds, lineChartData, maxViewport, defaultViewport);
+            }
+        });
+    }
+
+    private static float[] getAxisBounds(float[] range, float interval) {
+        if (range[0] > range[1])
+            return new float[] { 0, interval };
+
+        float min = range[0] - (range[0] % interval);
+        float max = range[1] - (range[1] % interval) + interval;
+        return new float[] { min, max };
+    }
+
+    private static List<AxisValue> getValueAxisValues(float[] bounds, float interval, float[] leftBounds, float scale, boolean mapped) {
+        List<AxisValue> values = new ArrayList<>();
+        float value = bounds[0];
+        while (value <= bounds[1]) {
+            if (mapped)
+                values.add(new AxisValue(leftBounds[0] + (value - bounds[0]) * scale).setLabel(Float.toString(value)));
+            else
+                values.add(new AxisValue(value));
+            value += interval;
+        }
+        return values;
+    }
+
+    /***
+     * Set the {@link com.macroyau.thingspeakandroid.ThingSpeakMultiFieldChart.ChartDataUpdateListener} to use.
+     *
+     * @param listener The listener.
+     */
+    public void setListener(ChartDataUpdateListener listener) {
+        this.mListener = listener;
+    }
+
+    /***
+     * Set the executor on which chart data is built. The default is the compute executor of the client.
+     *
+     * @param executor The executor.
+     */
+    public void setBuildExecutor(Executor executor) {
+        this.mBuildExecutor = executor;
+    }
+
+    /***
+     * Set the executor on which the {@link com.macroyau.thingspeakandroid.ThingSpeakMultiFieldChart.ChartDataUpdateListener} is notified.
+     * The default is the callback executor of the client, usually the main thread.
+     *
+     * @param executor The executor.
+     */
+    public void setListenerExecutor(Executor executor) {
+        this.mListenerExecutor = executor;
+    }
+
+    /***
+     * @see com.macroyau.thingspeakandroid.ThingSpeakChannel#setReadApiKey(String)
+     */
+    public void setReadApiKey(String readApiKey) {
+        mChannel.setReadApiKey(readApiKey);
+    }
+
+    /***
+     * @see com.macroyau.thingspeakandroid.ThingSpeakChannel#setTimezone(String)
+     */
+    public void setTimezone(String timezone) {
+        mChannel.setTimezone(timezone);
+    }
+
+    /***
+     * @see com.macroyau.thingspeakandroid.ThingSpeakChannel#setNumberOfEntries(int)
+     */
+    public void setNumberOfEntries(int results) {
+        mChannel.setNumberOfEntries(results);
+    }
+
+    /***
+     * @see com.macroyau.thingspeakandroid.ThingSpeakChannel#setDaysToInclude(int)
+     */
+    public void setDaysToInclude(int days) {
+        mChannel.setDaysToInclude(days);
+    }
+
+    /***
+     * @see com.macroyau.thingspeakandroid.ThingSpeakChannel#setStartDate(java.util.Date)
+     */
+    public void setDataStartDate(Date start) {
+        mChannel.setStartDate(start);
+    }
+
+    /***
+     * @see com.macroyau.thingspeakandroid.ThingSpeakChannel#setEndDate(java.util.Date)
+     */
+    public void setDataEndDate(Date end) {
+        mChannel.setEndDate(end);
+    }
+
+    /***
+     * @see com.macroyau.thingspeakandroid.ThingSpeakChannel#setTimescale(int)
+     */
+    public void setTimescale(int timescale) {
+        mChannel.setTimescale(timescale);
+    }
+
+    /***
+     * Set the start date in the default viewport of the chart.
+     *
+     * @param start The start date.
+     */
+    public void setChartStartDate(Date start) {
+        this.mChartStartDate = start;
+    }
+
+    /***
+     * Set the end date in the default viewport of the chart.
+     *
+     * @param end The end date.
+     */
+    public void setChartEndDate(Date end) {
+        this.mChartEndDate = end;
+    }
+
+    /***
+     * Set to true to display the lines as cubic splines, otherwise as straight line segments.
+     *
+     * @param spline True to display as cubic splines.
+     */
+    public void useSpline(boolean spline) {
+        this.mSpline = spline;
+    }
+
+    /***
+     * Set to true to fill the areas under the lines.
+     *
+     * @param filled True to fill the areas under the lines.
+     */
+    public void setFilled(boolean filled) {
+        this.mFilled = filled;
+    }
+
+    /***
+     * Set the horizontal (date) axis name.
+     *
+     * @param name The horizontal axis name.
+     */
+    public void setXAxisName(String name) {
+        this.mXAxisName = name;
+    }
+
+    /***
+     * Set the left value axis name.
+     *
+     * @param name The left value axis name.
+     */
+    public void setLeftYAxisName(String name) {
+        this.mLeftYAxisName = name;
+    }
+
+    /***
+     * Set the right value axis name.
+     *
+     * @param name The right value axis name.
+     */
+    public void setRightYAxisName(String name) {
+        this.mRightYAxisName = name;
+    }
+
+    /***
+     * Set the date and time format of the date axis labels using the given pattern.
+     *
+     * @param pattern The pattern describing the date and time format.
+     */
+    public void setDateAxisLabelFormat(String pattern) {
+        this.mDateAxisLabelFormat = pattern;
+    }
+
+    /***
+     * Set the interval of the date axis labels in minutes. The default interval is 10 minutes.
+     *
+     * @param interval The interval in minutes.
+     */
+    public void setDateAxisLabelInterval(int interval) {
+        this.mDateAxisLabelInterval = interval;
+    }
+
+    /***
+     * Set the interval of the left value axis labels. The default interval is 10.0 units.
+     *
+     * @param interval The interval.
+     */
+    public void setLeftValueAxisLabelInterval(float interval) {
+        this.mLeftValueAxisLabelInterval = interval;
+    }
+
+    /***
+     * Set the interval of the right value axis labels. The default interval is 10.0 units.
+     *
+     * @param interval The interval.
+     */
+    public void setRightValueAxisLabelInterval(float interval) {
+        this.mRightValueAxisLabelInterval = interval;
+    }
+
+    /***
+     * Set the axis color of the chart.
+     *
+     * @param color The axis color.
+     */
+    public void setAxisColor(int color) {
+        this.mAxisColor = color;
+    }
+
+}
@@ -1,8 +1,11 @@
 package com.macroyau.thingspeakandroid;
 
+import com.macroyau.thingspeakandroid.model.BulkUpdate;
+import com.macroyau.thingspeakandroid.model.BulkUpdateResult;
 import com.macroyau.thingspeakandroid.model.Channel;
 import com.macroyau.thingspeakandroid.model.ChannelFeed;
 import com.macroyau.thingspeakandroid.model.Feed;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
 import com.macroyau.thingspeakandroid.model.PublicChannels;
 import com.macroyau.thingspeakandroid.model.StatusUpdates;
 
@@ -10,7 +13,9 @@ import java.util.List;
 import java.util.Map;
 
 import retrofit.Callback;
+import retrofit.http.Body;
 import retrofit.http.GET;
+import retrofit.http.POST;
 import retrofit.http.Path;
 import retrofit.http.Query;
 import retrofit.http.QueryMap;
@@ -34,6 +39,21 @@ public interface ThingSpeakService {
     @GET("/channels/{id}/fields/{field}.json")
     void getChannelFieldFeed(@Path("id") Long channelId, @Path("field") Integer fieldId, @QueryMap Map<String, String> params, Callback<ChannelFeed> callback);
 
+    @GET("/channels/{id}/feeds.json")
+    void getChannelFeedColumns(@Path("id") Long channelId, @QueryMap Map<String, String> params, Callback<FeedColumns> callback);
+
+    @GET("/channels/{id}/fields/{field}.json")
+    void getChannelFieldFeedColumns(@Path("id") Long channelId, @Path("field") Integer fieldId, @QueryMap Map<String, String> params, Callback<FeedColumns> callback);
+
+    @POST("/channels/{id}/bulk_update.json")
+    void bulkUpdateChannelFeed(@Path("id") Long channelId, @Body BulkUpdate bulkUpdate, Callback<BulkUpdateResult> callback);
+
+    @GET("/channels/{id}/feeds.csv")
+    void getChannelFeedColumnsCsv(@Path("id") Long channelId, @QueryMap Map<String, String> params, Callback<FeedColumns> callback);
+
+    @GET("/channels/{id}/fields/{field}.csv")
+    void getChannelFieldFeedColumnsCsv(@Path("id") Long channelId, @Path("field") Integer fieldId, @QueryMap Map<String, String> params, Callback<FeedColumns> callback);
+
     @GET("/channels/{id}/status.json")
     void getStatusUpdates(@Path("id") Long channelId, @QueryMap Map<String, String> params, Callback<StatusUpdates> callback);
 
@@ -0,0 +1,201 @@
+package com.macroyau.thingspeakandroid;
+
+import java.util.TimeZone;
+
+/***
+ * Thread-safe codec for the timestamps used by the ThingSpeak API. Response timestamps in ISO 8601 format, e.g. 2015-03-05T08:30:00Z or
+ * 2015-03-05T16:30:00+08:00, are parsed straight into milliseconds since epoch, and request parameters are formatted as yyyy-MM-dd HH:mm:ss,
+ * without going through {@link java.text.SimpleDateFormat} or {@link java.util.Calendar}.
+ *
+ * @author Macro Yau
+ */
+public final class TimestampCodec {
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private TimestampCodec() {
+    }
+
+    /***
+     * Parse an ISO 8601 timestamp with an optional fraction of second and an optional UTC offset. Timestamps without an offset are treated as UTC.
+     *
+     * @param text The timestamp, e.g. 2015-03-05T08:30:00Z.
+     * @return The timestamp in milliseconds since epoch.
+     * @throws IllegalArgumentException If the timestamp is malformed.
+     */
+    public static long parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /***
+     * Parse a timestamp within a region of a character sequence, without copying it. Besides ISO 8601, the format of CSV feeds is accepted,
+     * i.e. a space between the time and the UTC offset and UTC as offset, e.g. 2015-03-05 08:30:00 UTC or 2015-03-05 16:30:00 +0800.
+     *
+     * @param text The character sequence containing the timestamp.
+     * @param start The index of the first character of the timestamp.
+     * @param end The index after the last character of the timestamp.
+     * @return The timestamp in milliseconds since epoch.
+     * @throws IllegalArgumentException If the timestamp is malformed.
+     */
+    public static long parse(CharSequence text, int start, int end) {
+        if (end - start < 19 || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-' || text.charAt(start + 13) != ':'
+                || text.charAt(start + 16) != ':')
+            throw malformed(text, start, end);
+        char separator = text.charAt(start + 10);
+        if (separator != 'T' && separator != 't' && separator != ' ')
+            throw malformed(text, start, end);
+
+        int year = digits(text, start, 4, end);
+        int month = digits(text, start + 5, 2, end);
+        int day = digits(text, start + 8, 2, end);
+        int hour = digits(text, start + 11, 2, end);
+        int minute = digits(text, start + 14, 2, end);
+        int second = digits(text, start + 17, 2, end);
+        if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 60)
+            throw malformed(text, start, end);
+
+        int pos = start + 19;
+        int millis = 0;
+        if (pos < end && (text.charAt(pos) == '.' || text.charAt(pos) == ',')) {
+            pos++;
+            int scale = 100;
+            int fractionStart = pos;
+            while (pos < end && isDigit(text.charAt(pos))) {
+                millis += (text.charAt(pos) - '0') * scale;
+                scale /= 10;
+                pos++;
+            }
+            if (pos == fractionStart)
+                throw malformed(text, start, end);
+        }
+
+        int offsetSeconds = 0;
+        if (pos < end && text.charAt(pos) == ' ')
+            pos++;
+        if (pos < end) {
+            char sign = text.charAt(pos);
+            if (sign == 'Z' || sign == 'z') {
+                pos++;
+            } else if (sign == 'U' && end - pos >= 3 && text.charAt(pos + 1) == 'T' && text.charAt(pos + 2) == 'C') {
+                pos += 3;
+            } else if (sign == '+' || sign == '-') {
+                pos++;
+                int offsetHours = digits(text, pos, 2, end);
+                pos += 2;
+                int offsetMinutes = 0;
+                if (pos < end && text.charAt(pos) == ':')
+                    pos++;
+                if (pos + 2 <= end) {
+                    offsetMinutes = digits(text, pos, 2, end);
+                    pos += 2;
+                }
+                offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (sign == '-' ? -1 : 1);
+            }
+            if (pos != end)
+                throw malformed(text, start, end);
+        }
+
+        long epochSecond = daysFromCivil(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return epochSecond * MILLIS_PER_SECOND + millis;
+    }
+
+    /***
+     * Format a timestamp in ISO 8601 format in UTC, e.g. 2015-03-05T08:30:00Z.
+     *
+     * @param millis The timestamp in milliseconds since epoch.
+     * @return The formatted timestamp.
+     */
+    public static String formatIso(long millis) {
+        char[] buffer = new char[20];
+        formatCivil(millis, buffer, 'T');
+        buffer[19] = 'Z';
+        return new String(buffer);
+    }
+
+    /***
+     * Format a timestamp as a request parameter value in the specific timezone, e.g. 2015-03-05 16:30:00.
+     *
+     * @param millis The timestamp in milliseconds since epoch.
+     * @param timeZone The timezone in which the ThingSpeak API interprets the parameter.
+     * @return The formatted timestamp.
+     */
+    public static String formatRequestParam(long millis, TimeZone timeZone) {
+        char[] buffer = new char[19];
+        formatCivil(millis + timeZone.getOffset(millis), buffer, ' ');
+        return new String(buffer);
+    }
+
+    private static void formatCivil(long millis, char[] buffer, char separator) {
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        int secondOfDay = (int) ((millis - days * MILLIS_PER_DAY) / MILLIS_PER_SECOND);
+
+        // Civil date from days since epoch (http://howardhinnant.github.io/date_algorithms.html)
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        putDigits(buffer, 0, year, 4);
+        buffer[4] = '-';
+        putDigits(buffer, 5, month, 2);
+        buffer[7] = '-';
+        putDigits(buffer, 8, day, 2);
+        buffer[10] = separator;
+        putDigits(buffer, 11, secondOfDay / 3600, 2);
+        buffer[13] = ':';
+        putDigits(buffer, 14, (secondOfDay / 60) % 60, 2);
+        buffer[16] = ':';
+        putDigits(buffer, 17, secondOfDay % 60, 2);
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0))
+            q--;
+        return q;
+    }
+
+    private static int digits(CharSequence text, int start, int count, int end) {
+        if (start + count > end)
+            throw malformed(text, start, end);
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c))
+                throw malformed(text, start, end);
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static void putDigits(char[] buffer, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static IllegalArgumentException malformed(CharSequence text, int start, int end) {
+        return new IllegalArgumentException("Malformed timestamp: " + text.subSequence(start, Math.min(end, text.length())));
+    }
+
+}
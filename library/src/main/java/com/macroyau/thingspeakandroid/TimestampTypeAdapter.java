@@ -0,0 +1,42 @@
+package com.macroyau.thingspeakandroid;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Date;
+
+/***
+ * Gson type adapter for {@link java.util.Date} values in ThingSpeak API responses using {@link com.macroyau.thingspeakandroid.TimestampCodec}.
+ *
+ * @author Macro Yau
+ */
+class TimestampTypeAdapter extends TypeAdapter<Date> {
+
+    @Override
+    public void write(JsonWriter out, Date value) throws IOException {
+        if (value == null)
+            out.nullValue();
+        else
+            out.value(TimestampCodec.formatIso(value.getTime()));
+    }
+
+    @Override
+    public Date read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String text = in.nextString();
+        try {
+            return new Date(TimestampCodec.parse(text));
+        } catch (IllegalArgumentException e) {
+            throw new JsonSyntaxException(text, e);
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.macroyau.thingspeakandroid;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedInput;
+
+/***
+ * Measurements of the transport phases of a request, which Retrofit performs on an HTTP thread outside of the interceptor chain. The
+ * network and decode phases are collected on the HTTP thread, then handed over with the callback to the callback executor, where the
+ * {@link com.macroyau.thingspeakandroid.MetricsInterceptor} reads them while the callback runs. Response bodies are streamed into the
+ * converter, so the time blocked reading the body is counted as network time and excluded from the decode time.
+ *
+ * @author Macro Yau
+ */
+final class TransportMetrics {
+
+    private static final ThreadLocal<TransportMetrics> sCollecting = new ThreadLocal<>();
+    private static final ThreadLocal<TransportMetrics> sDelivering = new ThreadLocal<>();
+
+    long mNetworkNanos;
+    long mDecodeNanos;
+    long mHandOffNanos;
+    long mRequestBytes;
+    long mResponseBytes;
+    private long mBodyNanos;
+
+    private TransportMetrics() {
+    }
+
+    /***
+     * Return the measurements of the request whose callback is running on the current thread.
+     *
+     * @return The measurements, or null if the callback is not delivered by Retrofit.
+     */
+    static TransportMetrics current() {
+        return sDelivering.get();
+    }
+
+    static void recordDecode(long nanos) {
+        TransportMetrics metrics = sCollecting.get();
+        if (metrics == null)
+            return;
+
+        // The body is downloaded while it is decoded, and the time spent reading it is already counted as network time
+        metrics.mDecodeNanos += Math.max(nanos - metrics.mBodyNanos, 0);
+        metrics.mBodyNanos = 0;
+    }
+
+    /***
+     * HTTP client measuring the network phase and body sizes of each request.
+     */
+    static class MeteredClient implements Client {
+
+        private final Client mClient;
+
+        MeteredClient(Client client) {
+            this.mClient = client;
+        }
+
+        @Override
+        public Response execute(Request request) throws IOException {
+            TransportMetrics metrics = new TransportMetrics();
+            sCollecting.set(metrics);
+            if (request.getBody() != null)
+                metrics.mRequestBytes = Math.max(request.getBody().length(), 0);
+
+            long start = System.nanoTime();
+            try {
+                Response response = mClient.execute(request);
+                if (response.getBody() == null)
+                    return response;
+                return new Response(response.getUrl(), response.getStatus(), response.getReason(), response.getHeaders(),
+                        new MeteredBody(response.getBody(), metrics));
+            } finally {
+                metrics.mNetworkNanos += System.nanoTime() - start;
+            }
+        }
+
+    }
+
+    /***
+     * Response body counting the bytes read and the time blocked reading them, as the length of chunked or compressed bodies is unknown
+     * and the body is downloaded while it is decoded.
+     */
+    private static class MeteredBody implements TypedInput {
+
+        private final TypedInput mBody;
+        private final TransportMetrics mMetrics;
+
+        MeteredBody(TypedInput body, TransportMetrics metrics) {
+            this.mBody = body;
+            this.mMetrics = metrics;
+        }
+
+        @Override
+        public String mimeType() {
+            return mBody.mimeType();
+        }
+
+        @Override
+        public long length() {
+            return mBody.length();
+        }
+
+        @Override
+        public InputStream in() throws IOException {
+            return new FilterInputStream(mBody.in()) {
+                @Override
+                public int read() throws IOException {
+                    long start = System.nanoTime();
+                    int b = super.read();
+                    onRead(b == -1 ? 0 : 1, start);
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int count) throws IOException {
+                    long start = System.nanoTime();
+                    int read = super.read(buffer, offset, count);
+                    onRead(Math.max(read, 0), start);
+                    return read;
+                }
+
+                @Override
+                public long skip(long count) throws IOException {
+                    long start = System.nanoTime();
+                    long skipped = super.skip(count);
+                    onRead(skipped, start);
+                    return skipped;
+                }
+            };
+        }
+
+        private void onRead(long bytes, long start) {
+            long nanos = System.nanoTime() - start;
+            mMetrics.mResponseBytes += bytes;
+            mMetrics.mNetworkNanos += nanos;
+            mMetrics.mBodyNanos += nanos;
+        }
+
+    }
+
+    /***
+     * Callback executor handing the measurements of the HTTP thread over to the callback.
+     */
+    static class MeteredExecutor implements Executor {
+
+        private final Executor mExecutor;
+
+        MeteredExecutor(Executor executor) {
+            this.mExecutor = executor;
+        }
+
+        @Override
+        public void execute(final Runnable runnable) {
+            final TransportMetrics metrics = sCollecting.get();
+            if (metrics == null) {
+                mExecutor.execute(runnable);
+                return;
+            }
+            sCollecting.remove();
+
+            final long handedOffAt = System.nanoTime();
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    metrics.mHandOffNanos = System.nanoTime() - handedOffAt;
+                    sDelivering.set(metrics);
+                    try {
+                        runnable.run();
+                    } finally {
+                        sDelivering.remove();
+                    }
+                }
+            });
+        }
+
+    }
+
+}
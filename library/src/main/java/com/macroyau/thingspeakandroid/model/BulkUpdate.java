@@ -0,0 +1,45 @@
+package com.macroyau.thingspeakandroid.model;
+
+import java.util.List;
+
+/***
+ * Data model of a request writing many readings to a ThingSpeak Channel's feed at once. Refer to
+ * https://thingspeak.com/docs/channels#bulk-update for details.
+ *
+ * @author Macro Yau
+ */
+public class BulkUpdate {
+
+    private String writeApiKey;
+    private List<FeedUpdate> updates;
+
+    /***
+     * Constructor.
+     *
+     * @param writeApiKey The Write API Key of the Channel.
+     * @param updates The readings in chronological order.
+     */
+    public BulkUpdate(String writeApiKey, List<FeedUpdate> updates) {
+        this.writeApiKey = writeApiKey;
+        this.updates = updates;
+    }
+
+    /***
+     * Get the Write API Key of the Channel.
+     *
+     * @return the Write API Key
+     */
+    public String getWriteApiKey() {
+        return writeApiKey;
+    }
+
+    /***
+     * Get the readings of the request.
+     *
+     * @return the readings
+     */
+    public List<FeedUpdate> getUpdates() {
+        return updates;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.macroyau.thingspeakandroid.model;
+
+/***
+ * Data model of the response to a bulk update of a ThingSpeak Channel's feed. Refer to https://thingspeak.com/docs/channels#bulk-update for
+ * details.
+ *
+ * @author Macro Yau
+ */
+public class BulkUpdateResult {
+
+    private boolean success;
+
+    /***
+     * Get whether the readings are accepted.
+     *
+     * @return true if accepted
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+}
@@ -12,6 +12,23 @@ public class ChannelFeed {
     private Channel channel;
     private List<Feed> feeds;
 
+    /***
+     * Constructor for an empty Channel feed.
+     */
+    public ChannelFeed() {
+    }
+
+    /***
+     * Constructor for a Channel feed assembled locally, e.g. from merged incremental updates.
+     *
+     * @param channel The basic information of the Channel.
+     * @param feeds The feed entries of the Channel.
+     */
+    public ChannelFeed(Channel channel, List<Feed> feeds) {
+        this.channel = channel;
+        this.feeds = feeds;
+    }
+
     /***
      * Get the basic information of the Channel.
      *
@@ -30,4 +47,13 @@ public class ChannelFeed {
         return feeds;
     }
 
+    /***
+     * Get the feed entries of the Channel in columnar form.
+     *
+     * @return the columnar representation of the feed entries
+     */
+    public FeedColumns toColumns() {
+        return FeedColumns.fromChannelFeed(this);
+    }
+
 }
@@ -13,6 +13,35 @@ public class Feed {
     private long entryId;
     private String field1, field2, field3, field4, field5, field6, field7, field8;
 
+    /***
+     * Constructor for an empty feed entry.
+     */
+    public Feed() {
+    }
+
+    /***
+     * Constructor for a feed entry assembled locally.
+     *
+     * @param createdAt The date of creation of the feed entry.
+     * @param entryId The ID of the feed entry.
+     * @param fields The value of fields with Field1 as index 0, and so on; missing trailing fields are left null.
+     */
+    public Feed(Date createdAt, long entryId, String[] fields) {
+        this.createdAt = createdAt;
+        this.entryId = entryId;
+        if (fields != null) {
+            int n = fields.length;
+            field1 = n > 0 ? fields[0] : null;
+            field2 = n > 1 ? fields[1] : null;
+            field3 = n > 2 ? fields[2] : null;
+            field4 = n > 3 ? fields[3] : null;
+            field5 = n > 4 ? fields[4] : null;
+            field6 = n > 5 ? fields[5] : null;
+            field7 = n > 6 ? fields[6] : null;
+            field8 = n > 7 ? fields[7] : null;
+        }
+    }
+
     /***
      * Get the date of creation of the feed entry.
      *
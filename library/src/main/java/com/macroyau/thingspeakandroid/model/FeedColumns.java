@@ -0,0 +1,322 @@
+package com.macroyau.thingspeakandroid.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+
+/***
+ * Columnar representation of a ThingSpeak Channel feed. Timestamps, entry IDs and numeric field values are kept in primitive arrays
+ * rather than one {@link com.macroyau.thingspeakandroid.model.Feed} object per entry. Missing or non-numeric field values are stored as NaN.
+ *
+ * @author Macro Yau
+ */
+public class FeedColumns {
+
+    /***
+     * Number of fields in a ThingSpeak Channel.
+     */
+    public static final int FIELD_COUNT = 8;
+
+    private final Channel channel;
+    private final int size;
+    private final long[] createdAt;
+    private final long[] entryIds;
+    private final double[][] fields;
+
+    private List<Feed> feeds;
+
+    /***
+     * Constructor. The arrays are used as is without copying and may be longer than the number of entries.
+     *
+     * @param channel The basic information of the Channel.
+     * @param size The number of feed entries.
+     * @param createdAt The dates of creation of the feed entries in milliseconds since epoch.
+     * @param entryIds The IDs of the feed entries.
+     * @param fields The values of fields with Field1 as index 0, and so on; the array of a field absent from the feed is null.
+     */
+    public FeedColumns(Channel channel, int size, long[] createdAt, long[] entryIds, double[][] fields) {
+        if (size < 0 || size > createdAt.length || size > entryIds.length)
+            throw new IllegalArgumentException("Invalid size " + size);
+        if (fields.length != FIELD_COUNT)
+            throw new IllegalArgumentException("Expected " + FIELD_COUNT + " field columns");
+
+        this.channel = channel;
+        this.size = size;
+        this.createdAt = createdAt;
+        this.entryIds = entryIds;
+        this.fields = fields;
+    }
+
+    /***
+     * Create the columnar representation of an existing Channel feed.
+     *
+     * @param channelFeed The Channel feed.
+     * @return The columnar representation.
+     */
+    public static FeedColumns fromChannelFeed(ChannelFeed channelFeed) {
+        List<Feed> feeds = channelFeed.getFeeds();
+        int size = feeds == null ? 0 : feeds.size();
+        long[] createdAt = new long[size];
+        long[] entryIds = new long[size];
+        double[][] fields = new double[FIELD_COUNT][];
+
+        for (int i = 0; i < size; i++) {
+            Feed feed = feeds.get(i);
+            createdAt[i] = feed.getCreatedAt() == null ? 0 : feed.getCreatedAt().getTime();
+            entryIds[i] = feed.getEntryId();
+
+            for (int f = 0; f < FIELD_COUNT; f++) {
+                String value = feed.getField(f + 1);
+                if (value == null)
+                    continue;
+                if (fields[f] == null)
+                    fields[f] = newMissingColumn(size);
+                fields[f][i] = parseValue(value);
+            }
+        }
+
+        FeedColumns columns = new FeedColumns(channelFeed.getChannel(), size, createdAt, entryIds, fields);
+        columns.feeds = feeds;
+        return columns;
+    }
+
+    /***
+     * Create a new instance holding the entries of this feed followed by the entries of a newer feed. Entries of the newer feed whose IDs
+     * are not greater than the last entry ID of this feed are dropped as duplicates, and only the last entries up to the specific size are kept.
+     *
+     * @param newer The newer feed entries.
+     * @param maxSize The maximum number of entries to keep.
+     * @return The merged feed entries.
+     */
+    public FeedColumns merge(FeedColumns newer, int maxSize) {
+        long lastEntryId = size == 0 ? Long.MIN_VALUE : entryIds[size - 1];
+        int newerStart = 0;
+        while (newerStart < newer.size && newer.entryIds[newerStart] <= lastEntryId)
+            newerStart++;
+
+        int newerCount = newer.size - newerStart;
+        int total = size + newerCount;
+        int mergedSize = Math.min(total, Math.max(maxSize, 0));
+        int skip = total - mergedSize;
+        int ownStart = Math.min(skip, size);
+        int ownCount = size - ownStart;
+        newerStart += skip - ownStart;
+        newerCount = mergedSize - ownCount;
+
+        long[] mergedCreatedAt = new long[mergedSize];
+        long[] mergedEntryIds = new long[mergedSize];
+        System.arraycopy(createdAt, ownStart, mergedCreatedAt, 0, ownCount);
+        System.arraycopy(newer.createdAt, newerStart, mergedCreatedAt, ownCount, newerCount);
+        System.arraycopy(entryIds, ownStart, mergedEntryIds, 0, ownCount);
+        System.arraycopy(newer.entryIds, newerStart, mergedEntryIds, ownCount, newerCount);
+
+        double[][] mergedFields = new double[FIELD_COUNT][];
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            if (fields[f] == null && newer.fields[f] == null)
+                continue;
+            mergedFields[f] = newMissingColumn(mergedSize);
+            if (fields[f] != null)
+                System.arraycopy(fields[f], ownStart, mergedFields[f], 0, ownCount);
+            if (newer.fields[f] != null)
+                System.arraycopy(newer.fields[f], newerStart, mergedFields[f], ownCount, newerCount);
+        }
+
+        return new FeedColumns(newer.channel != null ? newer.channel : channel, mergedSize, mergedCreatedAt, mergedEntryIds, mergedFields);
+    }
+
+    /***
+     * Create a new instance holding a range of the entries of this feed.
+     *
+     * @param fromIndex The index of the first entry, inclusive.
+     * @param toIndex The index of the last entry, exclusive.
+     * @return The entries in the range.
+     */
+    public FeedColumns slice(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("Range " + fromIndex + " to " + toIndex + ", size " + size);
+
+        double[][] slicedFields = new double[FIELD_COUNT][];
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            if (fields[f] != null)
+                slicedFields[f] = Arrays.copyOfRange(fields[f], fromIndex, toIndex);
+        }
+        return new FeedColumns(channel, toIndex - fromIndex, Arrays.copyOfRange(createdAt, fromIndex, toIndex),
+                Arrays.copyOfRange(entryIds, fromIndex, toIndex), slicedFields);
+    }
+
+    /***
+     * Create a field column of the specific length with all values missing.
+     *
+     * @param length The length of the column.
+     * @return The column filled with NaN.
+     */
+    public static double[] newMissingColumn(int length) {
+        double[] column = new double[length];
+        Arrays.fill(column, Double.NaN);
+        return column;
+    }
+
+    private static double parseValue(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /***
+     * Get the basic information of the Channel.
+     *
+     * @return the Channel
+     */
+    public Channel getChannel() {
+        return channel;
+    }
+
+    /***
+     * Get the number of feed entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /***
+     * Get the date of creation of a specific feed entry.
+     *
+     * @param index The index of the feed entry.
+     * @return the date of creation in milliseconds since epoch
+     */
+    public long getCreatedAt(int index) {
+        checkIndex(index);
+        return createdAt[index];
+    }
+
+    /***
+     * Get the ID of a specific feed entry.
+     *
+     * @param index The index of the feed entry.
+     * @return the ID
+     */
+    public long getEntryId(int index) {
+        checkIndex(index);
+        return entryIds[index];
+    }
+
+    /***
+     * Check whether a specific field is present in the feed.
+     *
+     * @param fieldId The ID of a field.
+     * @return true if the field has a column
+     */
+    public boolean hasField(int fieldId) {
+        return fieldId >= 1 && fieldId <= FIELD_COUNT && fields[fieldId - 1] != null;
+    }
+
+    /***
+     * Get the value of a specific field of a specific feed entry.
+     *
+     * @param fieldId The ID of a field.
+     * @param index The index of the feed entry.
+     * @return the value, or NaN if it is missing or not numeric
+     */
+    public double getValue(int fieldId, int index) {
+        checkIndex(index);
+        if (!hasField(fieldId))
+            return Double.NaN;
+        return fields[fieldId - 1][index];
+    }
+
+    /***
+     * Get the backing array of the dates of creation. Only the first {@link #size()} elements are valid, and the array must not be modified.
+     *
+     * @return the dates of creation in milliseconds since epoch
+     */
+    public long[] getCreatedAtColumn() {
+        return createdAt;
+    }
+
+    /***
+     * Get the backing array of the entry IDs. Only the first {@link #size()} elements are valid, and the array must not be modified.
+     *
+     * @return the entry IDs
+     */
+    public long[] getEntryIdColumn() {
+        return entryIds;
+    }
+
+    /***
+     * Get the backing array of the values of a specific field. Only the first {@link #size()} elements are valid, and the array must not be modified.
+     *
+     * @param fieldId The ID of a field.
+     * @return the values, or null if the field is absent from the feed
+     */
+    public double[] getFieldColumn(int fieldId) {
+        if (fieldId < 1 || fieldId > FIELD_COUNT)
+            return null;
+        return fields[fieldId - 1];
+    }
+
+    /***
+     * Get the feed entries as {@link com.macroyau.thingspeakandroid.model.Feed} objects. Each entry is materialized on first access, with
+     * numeric field values formatted back to strings and non-numeric values as null.
+     *
+     * @return the feed entries
+     */
+    public synchronized List<Feed> getFeeds() {
+        if (feeds == null)
+            feeds = new FeedList();
+        return feeds;
+    }
+
+    /***
+     * Get the columns as a {@link com.macroyau.thingspeakandroid.model.ChannelFeed}.
+     *
+     * @return the Channel feed backed by {@link #getFeeds()}
+     */
+    public ChannelFeed toChannelFeed() {
+        return new ChannelFeed(channel, getFeeds());
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+    }
+
+    private class FeedList extends AbstractList<Feed> implements RandomAccess {
+
+        private final Feed[] mFeeds = new Feed[size];
+
+        @Override
+        public synchronized Feed get(int index) {
+            checkIndex(index);
+            Feed feed = mFeeds[index];
+            if (feed == null) {
+                String[] values = new String[FIELD_COUNT];
+                for (int f = 0; f < FIELD_COUNT; f++) {
+                    if (fields[f] != null && !Double.isNaN(fields[f][index]))
+                        values[f] = formatValue(fields[f][index]);
+                }
+                feed = new Feed(new Date(createdAt[index]), entryIds[index], values);
+                mFeeds[index] = feed;
+            }
+            return feed;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private String formatValue(double value) {
+            if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15)
+                return Long.toString((long) value);
+            return Double.toString(value);
+        }
+
+    }
+
+}
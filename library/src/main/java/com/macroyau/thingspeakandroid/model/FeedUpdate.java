@@ -0,0 +1,140 @@
+package com.macroyau.thingspeakandroid.model;
+
+import java.util.Date;
+
+/***
+ * Data model of a reading to be written to a ThingSpeak Channel's feed. Refer to https://thingspeak.com/docs/channels#bulk-update for details.
+ *
+ * @author Macro Yau
+ */
+public class FeedUpdate {
+
+    private Date createdAt;
+    private String field1, field2, field3, field4, field5, field6, field7, field8;
+    private String status;
+
+    /***
+     * Constructor for a reading taken now.
+     */
+    public FeedUpdate() {
+        this(new Date());
+    }
+
+    /***
+     * Constructor for a reading taken at a specific date.
+     *
+     * @param createdAt The date of the reading.
+     */
+    public FeedUpdate(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /***
+     * Set the value of a field of the reading.
+     *
+     * @param fieldId The ID of the field, from 1 to 8.
+     * @param value The value, or null to leave the field empty.
+     * @return This reading.
+     */
+    public FeedUpdate setField(int fieldId, String value) {
+        switch (fieldId) {
+            case 1:
+                field1 = value;
+                break;
+            case 2:
+                field2 = value;
+                break;
+            case 3:
+                field3 = value;
+                break;
+            case 4:
+                field4 = value;
+                break;
+            case 5:
+                field5 = value;
+                break;
+            case 6:
+                field6 = value;
+                break;
+            case 7:
+                field7 = value;
+                break;
+            case 8:
+                field8 = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid field ID: " + fieldId);
+        }
+        return this;
+    }
+
+    /***
+     * Set the numeric value of a field of the reading.
+     *
+     * @param fieldId The ID of the field, from 1 to 8.
+     * @param value The value.
+     * @return This reading.
+     */
+    public FeedUpdate setField(int fieldId, double value) {
+        return setField(fieldId, String.valueOf(value));
+    }
+
+    /***
+     * Set the status message of the reading.
+     *
+     * @param status The status message.
+     * @return This reading.
+     */
+    public FeedUpdate setStatus(String status) {
+        this.status = status;
+        return this;
+    }
+
+    /***
+     * Get the date of the reading.
+     *
+     * @return the date of the reading
+     */
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    /***
+     * Get the value of a field of the reading.
+     *
+     * @param fieldId The ID of the field, from 1 to 8.
+     * @return the value of the field, or null if empty
+     */
+    public String getField(int fieldId) {
+        switch (fieldId) {
+            case 1:
+                return field1;
+            case 2:
+                return field2;
+            case 3:
+                return field3;
+            case 4:
+                return field4;
+            case 5:
+                return field5;
+            case 6:
+                return field6;
+            case 7:
+                return field7;
+            case 8:
+                return field8;
+            default:
+                throw new IllegalArgumentException("Invalid field ID: " + fieldId);
+        }
+    }
+
+    /***
+     * Get the status message of the reading.
+     *
+     * @return the status message
+     */
+    public String getStatus() {
+        return status;
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.macroyau.thingspeakandroid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DownsamplerTest {
+
+    private static final int SIZE = 1000;
+
+    private static long[] dates() {
+        long[] x = new long[SIZE];
+        for (int i = 0; i < SIZE; i++)
+            x[i] = 15000L * i;
+        return x;
+    }
+
+    private static int[] allIndices() {
+        int[] indices = new int[SIZE];
+        for (int i = 0; i < SIZE; i++)
+            indices[i] = i;
+        return indices;
+    }
+
+    private static void assertSelection(int[] indices, int count, int[] selected, int threshold) {
+        assertTrue(selected.length <= threshold);
+        assertEquals(indices[0], selected[0]);
+        assertEquals(indices[count - 1], selected[selected.length - 1]);
+        for (int i = 1; i < selected.length; i++)
+            assertTrue("Selection is not ascending at " + i, selected[i] > selected[i - 1]);
+    }
+
+    private static boolean contains(int[] selected, int index) {
+        for (int i : selected) {
+            if (i == index)
+                return true;
+        }
+        return false;
+    }
+
+    @Test
+    public void keepsAllPointsBelowThreshold() {
+        int[] indices = { 0, 2, 5, 7 };
+        assertArrayEquals(indices, Downsampler.largestTriangleThreeBuckets(dates(), new double[SIZE], indices, 4, 10));
+        assertArrayEquals(indices, Downsampler.minMax(new double[SIZE], indices, 4, 10));
+    }
+
+    @Test
+    public void largestTriangleThreeBucketsKeepsPeaks() {
+        double[] y = new double[SIZE];
+        y[500] = 100;
+        y[750] = -50;
+        int[] indices = allIndices();
+
+        int[] selected = Downsampler.largestTriangleThreeBuckets(dates(), y, indices, SIZE, 20);
+        assertEquals(20, selected.length);
+        assertSelection(indices, SIZE, selected, 20);
+        assertTrue(contains(selected, 500));
+        assertTrue(contains(selected, 750));
+    }
+
+    @Test
+    public void minMaxKeepsExtremesOfEachBucket() {
+        double[] y = new double[SIZE];
+        for (int i = 0; i < SIZE; i++)
+            y[i] = Math.sin(i / 20.0) * i;
+        int[] indices = allIndices();
+
+        int[] selected = Downsampler.minMax(y, indices, SIZE, 50);
+        assertSelection(indices, SIZE, selected, 50);
+
+        int min = 0, max = 0;
+        for (int i = 1; i < SIZE; i++) {
+            if (y[i] < y[min])
+                min = i;
+            if (y[i] > y[max])
+                max = i;
+        }
+        assertTrue(contains(selected, min));
+        assertTrue(contains(selected, max));
+    }
+
+    @Test
+    public void onlySelectsGivenIndices() {
+        double[] y = new double[SIZE];
+        int[] indices = new int[SIZE / 2];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = 2 * i + 1;
+            y[indices[i]] = i % 7;
+        }
+        // Points outside the indices, e.g. missing values, must never be selected
+        y[500] = 1000;
+
+        int[] lttb = Downsampler.largestTriangleThreeBuckets(dates(), y, indices, indices.length, 30);
+        int[] minMax = Downsampler.minMax(y, indices, indices.length, 30);
+        assertSelection(indices, indices.length, lttb, 30);
+        assertSelection(indices, indices.length, minMax, 30);
+        for (int i : lttb)
+            assertEquals(1, i % 2);
+        for (int i : minMax)
+            assertEquals(1, i % 2);
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeedAggregatorTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+
+    // 2024-03-30 00:00:00 UTC, the day before clocks are moved forward in Berlin
+    private static final long SPRING = 1711756800000L;
+
+    // 2024-10-26 00:00:00 UTC, the day before clocks are moved back in Berlin
+    private static final long AUTUMN = 1729900800000L;
+
+    private static FeedColumns columns(long start, long end, long interval) {
+        int size = (int) ((end - start) / interval);
+        long[] createdAt = new long[size];
+        long[] entryIds = new long[size];
+        double[][] fields = new double[FeedColumns.FIELD_COUNT][];
+        fields[0] = new double[size];
+        for (int i = 0; i < size; i++) {
+            createdAt[i] = start + i * interval;
+            entryIds[i] = i + 1;
+            fields[0][i] = i;
+        }
+        return new FeedColumns(null, size, createdAt, entryIds, fields);
+    }
+
+    private static FeedColumns values(long start, long interval, double... values) {
+        int size = values.length;
+        long[] createdAt = new long[size];
+        long[] entryIds = new long[size];
+        double[][] fields = new double[FeedColumns.FIELD_COUNT][];
+        fields[0] = values.clone();
+        for (int i = 0; i < size; i++) {
+            createdAt[i] = start + i * interval;
+            entryIds[i] = i + 1;
+        }
+        return new FeedColumns(null, size, createdAt, entryIds, fields);
+    }
+
+    private static void assertAscending(FeedColumns columns) {
+        for (int i = 1; i < columns.size(); i++)
+            assertTrue("Window " + i + " starts before the previous one", columns.getCreatedAt(i) > columns.getCreatedAt(i - 1));
+    }
+
+    @Test
+    public void dailyWindowsFollowLocalMidnightAcrossSpringForward() {
+        FeedColumns aggregated = FeedAggregator.aggregate(columns(SPRING + 12 * HOUR, SPRING + 2 * DAY + 12 * HOUR, 30 * MINUTE), DAY,
+                FeedAggregator.COUNT, BERLIN);
+
+        assertEquals(3, aggregated.size());
+        assertAscending(aggregated);
+        // Local midnights: 2024-03-30 and 2024-03-31 in CET, 2024-04-01 in CEST
+        assertEquals(SPRING - HOUR, aggregated.getCreatedAt(0));
+        assertEquals(SPRING + DAY - HOUR, aggregated.getCreatedAt(1));
+        assertEquals(SPRING + 2 * DAY - 2 * HOUR, aggregated.getCreatedAt(2));
+        // The day clocks are moved forward lasts 23 hours
+        assertEquals(46, aggregated.getFieldColumn(1)[1], 0);
+    }
+
+    @Test
+    public void hourlyWindowsAscendAcrossFallBack() {
+        FeedColumns aggregated = FeedAggregator.aggregate(columns(AUTUMN + 22 * HOUR, AUTUMN + DAY + 4 * HOUR, 10 * MINUTE), HOUR,
+                FeedAggregator.COUNT, BERLIN);
+
+        // The repeated local hour from 02:00 to 03:00 is a window of its own in each offset
+        assertEquals(6, aggregated.size());
+        assertAscending(aggregated);
+        for (int i = 0; i < aggregated.size(); i++) {
+            assertEquals(AUTUMN + (22 + i) * HOUR, aggregated.getCreatedAt(i));
+            assertEquals(6, aggregated.getFieldColumn(1)[i], 0);
+        }
+    }
+
+    @Test
+    public void windowsAreAlignedInUtcWithoutTimezone() {
+        FeedColumns aggregated = FeedAggregator.aggregate(columns(SPRING + 12 * HOUR, SPRING + 2 * DAY + 12 * HOUR, 30 * MINUTE), DAY,
+                FeedAggregator.COUNT);
+
+        assertEquals(3, aggregated.size());
+        assertEquals(SPRING, aggregated.getCreatedAt(0));
+        assertEquals(SPRING + DAY, aggregated.getCreatedAt(1));
+        assertEquals(48, aggregated.getFieldColumn(1)[1], 0);
+    }
+
+    @Test
+    public void medianOfOddAndEvenCounts() {
+        // Three windows of four entries each, the first window with a missing value
+        FeedColumns aggregated = FeedAggregator.aggregate(values(SPRING, MINUTE, 5, Double.NaN, 1, 4, 7, 1, 3, 9, 2, 2, 2, 1), 4 * MINUTE,
+                FeedAggregator.MEDIAN);
+
+        assertEquals(3, aggregated.size());
+        assertEquals(4, aggregated.getValue(1, 0), 0);
+        assertEquals(5, aggregated.getValue(1, 1), 0);
+        assertEquals(2, aggregated.getValue(1, 2), 0);
+    }
+
+    @Test
+    public void medianOfWindowWithoutValuesIsMissing() {
+        FeedColumns aggregated = FeedAggregator.aggregate(values(SPRING, MINUTE, 1, 2, Double.NaN, Double.NaN), 2 * MINUTE,
+                FeedAggregator.MEDIAN);
+
+        assertEquals(2, aggregated.size());
+        assertEquals(1.5, aggregated.getValue(1, 0), 0);
+        assertTrue(Double.isNaN(aggregated.getValue(1, 1)));
+    }
+
+    @Test
+    public void medianMatchesSorting() {
+        Random random = new Random(7);
+        double[] values = new double[10000];
+        for (int i = 0; i < values.length; i++)
+            values[i] = random.nextInt(5) == 0 ? random.nextInt(10) : random.nextGaussian() * 100;
+
+        // Windows of varying sizes, with many duplicate values
+        int[] sizes = { 1, 2, 3, 10, 99, 100, 1000, 8785 };
+        long interval = 1000L;
+        int offset = 0;
+        for (int size : sizes) {
+            FeedColumns aggregated = FeedAggregator.aggregate(values(0, interval, Arrays.copyOfRange(values, offset, offset + size)),
+                    size * interval, FeedAggregator.MEDIAN);
+
+            double[] sorted = Arrays.copyOfRange(values, offset, offset + size);
+            Arrays.sort(sorted);
+            double expected = size % 2 == 1 ? sorted[size / 2] : (sorted[size / 2 - 1] + sorted[size / 2]) / 2;
+            assertEquals(1, aggregated.size());
+            assertEquals(expected, aggregated.getValue(1, 0), 0);
+            offset += size;
+        }
+    }
+
+}
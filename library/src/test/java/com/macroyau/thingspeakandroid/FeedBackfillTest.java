@@ -0,0 +1,89 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import retrofit.RetrofitError;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeedBackfillTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private static class CountingListener implements FeedBackfill.BackfillListener {
+
+        long mEntries;
+        boolean mCompleted;
+
+        @Override
+        public void onBackfillChunk(long channelId, int fieldId, FeedColumns chunk) {
+            mEntries += chunk.size();
+        }
+
+        @Override
+        public void onBackfillCompleted(long channelId, int fieldId, long totalEntries) {
+            mCompleted = true;
+        }
+
+        @Override
+        public void onBackfillFailed(long channelId, int fieldId, RetrofitError error) {
+        }
+
+    }
+
+    private static FeedColumns entry(long entryId) {
+        double[][] fields = new double[FeedColumns.FIELD_COUNT][];
+        fields[0] = new double[] {entryId};
+        return new FeedColumns(null, 1, new long[] {entryId * DAY}, new long[] {entryId}, fields);
+    }
+
+    @Test
+    public void loadedWindowsWaitingForEarlierOnesCountTowardsLimit() {
+        StubChannel channel = new StubChannel();
+        CountingListener listener = new CountingListener();
+        FeedBackfill backfill = new FeedBackfill(channel, 1, new Date(0), new Date(10 * DAY));
+        backfill.setListener(listener);
+        backfill.setMaxConcurrentRequests(3);
+        backfill.start();
+        assertEquals(3, channel.mCallbacks.size());
+
+        // Later windows are buffered until the first one arrives, without making room for more requests
+        channel.mCallbacks.get(1).success(entry(2), null);
+        channel.mCallbacks.get(2).success(entry(3), null);
+        assertEquals(3, channel.mCallbacks.size());
+        assertEquals(0, listener.mEntries);
+
+        channel.mCallbacks.get(0).success(entry(1), null);
+        assertEquals(3, listener.mEntries);
+        assertEquals(6, channel.mCallbacks.size());
+
+        for (int i = 3; i < 10; i++) {
+            channel.mCallbacks.get(i).success(entry(i + 1), null);
+            assertEquals(Math.min(i + 4, 10), channel.mCallbacks.size());
+        }
+        assertEquals(10, listener.mEntries);
+        assertTrue(listener.mCompleted);
+    }
+
+    @Test
+    public void loadedWindowsAreAddedToRollups() {
+        StubChannel channel = new StubChannel();
+        RollupPyramid pyramid = channel.getRollupPyramid(1);
+        FeedBackfill backfill = new FeedBackfill(channel, 1, new Date(0), new Date(3 * DAY));
+        backfill.start();
+
+        // Windows are added as they arrive, before earlier windows are delivered
+        channel.mCallbacks.get(2).success(entry(3), null);
+        channel.mCallbacks.get(1).success(entry(2), null);
+        RollupPyramid.Buckets buckets = pyramid.getBuckets(pyramid.getLevelCount() - 1);
+        assertEquals(2, buckets.size());
+        assertEquals(2 * DAY, buckets.getStart(0));
+        assertEquals(2, buckets.getSum(0), 0);
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import retrofit.RetrofitError;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedCacheTest {
+
+    private static final long CHANNEL_ID = StubChannel.CHANNEL_ID;
+    private static final int RESULTS = 5;
+
+    private File mDirectory;
+    private FeedCache mCache;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("feed-cache", "");
+        assertTrue(mDirectory.delete());
+        assertTrue(mDirectory.mkdir());
+        mCache = new FeedCache(mDirectory);
+        mCache.append(CHANNEL_ID, ThingSpeakChannel.ALL_FIELDS, columns(1, 10));
+        mCache.append(CHANNEL_ID, 1, columns(1, 10));
+    }
+
+    @After
+    public void tearDown() {
+        delete(mDirectory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files)
+                delete(child);
+        }
+        file.delete();
+    }
+
+    private static FeedColumns columns(long firstEntryId, int size) {
+        long[] createdAt = new long[size];
+        long[] entryIds = new long[size];
+        double[][] fields = new double[FeedColumns.FIELD_COUNT][];
+        fields[0] = new double[size];
+        for (int i = 0; i < size; i++) {
+            entryIds[i] = firstEntryId + i;
+            createdAt[i] = entryIds[i] * 60000L;
+            fields[0][i] = entryIds[i];
+        }
+        return new FeedColumns(null, size, createdAt, entryIds, fields);
+    }
+
+    private static StubChannel newChannel(FeedColumns response) {
+        StubChannel channel = new StubChannel(response);
+        channel.setFeedQuery(new FeedQuery.Builder().setResults(RESULTS).build());
+        return channel;
+    }
+
+    private static void assertEntryIds(FeedColumns columns, long firstEntryId, int size) {
+        assertEquals(size, columns.size());
+        for (int i = 0; i < size; i++)
+            assertEquals(firstEntryId + i, columns.getEntryId(i));
+    }
+
+    @Test
+    public void clearDeletesOnlyOneFeed() throws IOException {
+        mCache.clear(CHANNEL_ID, 1);
+
+        assertNull(mCache.read(CHANNEL_ID, 1, 100));
+        assertEquals(-1, mCache.getLastEntryId(CHANNEL_ID, 1));
+        assertEntryIds(mCache.read(CHANNEL_ID, ThingSpeakChannel.ALL_FIELDS, 100), 1, 10);
+        assertEntryIds(new FeedCache(mDirectory).read(CHANNEL_ID, ThingSpeakChannel.ALL_FIELDS, 100), 1, 10);
+
+        mCache.append(CHANNEL_ID, 1, columns(3, 2));
+        assertEntryIds(new FeedCache(mDirectory).read(CHANNEL_ID, 1, 100), 3, 2);
+    }
+
+    @Test
+    public void largeFeedIsReadAcrossSegmentsAndChunks() throws IOException {
+        mCache.append(CHANNEL_ID, ThingSpeakChannel.ALL_FIELDS, columns(11, 9990));
+
+        FeedColumns columns = new FeedCache(mDirectory).read(CHANNEL_ID, ThingSpeakChannel.ALL_FIELDS, 8000);
+        assertEntryIds(columns, 2001, 8000);
+        for (int i = 0; i < columns.size(); i++) {
+            assertEquals((2001 + i) * 60000L, columns.getCreatedAt(i));
+            assertEquals(2001 + i, columns.getValue(1, i), 0);
+        }
+        assertNull(columns.getFieldColumn(2));
+        assertEquals(10000, new FeedCache(mDirectory).getLastEntryId(CHANNEL_ID, ThingSpeakChannel.ALL_FIELDS));
+    }
+
+    @Test
+    public void tailOverlappingCacheIsAppended() throws IOException {
+        StubChannel channel = newChannel(columns(10, RESULTS));
+        channel.setFeedCache(mCache);
+        channel.loadChannelFeedColumns();
+
+        // Only the entries after the last cached one are requested
+        assertEquals(1, channel.mRequests.size());
+        assertEquals("1970-01-01 00:10:00", channel.mRequests.get(0).get("start"));
+        assertEquals(2, channel.mUpdates.size());
+        assertEntryIds(channel.mUpdates.get(0), 6, RESULTS);
+        assertEntryIds(channel.mUpdates.get(1), 10, RESULTS);
+        assertEntryIds(mCache.read(CHANNEL_ID, ThingSpeakChannel.ALL_FIELDS, 100), 1, 14);
+    }
+
+    @Test
+    public void fullTailWithGapReplacesCache() throws IOException {
+        StubChannel channel = newChannel(columns(20, RESULTS));
+        channel.setFeedCache(mCache);
+        channel.loadChannelFieldFeedColumns(1);
+
+        assertEquals(2, channel.mUpdates.size());
+        assertEntryIds(channel.mUpdates.get(0), 6, RESULTS);
+        assertEntryIds(channel.mUpdates.get(1), 20, RESULTS);
+        // Entries 11 to 19 may exist, so the cache no longer joins entry 10 to entry 20
+        assertEntryIds(mCache.read(CHANNEL_ID, 1, 100), 20, RESULTS);
+        assertEntryIds(mCache.read(CHANNEL_ID, ThingSpeakChannel.ALL_FIELDS, 100), 1, 10);
+    }
+
+    @Test
+    public void projectedFeedsBypassCache() throws IOException {
+        StubChannel channel = newChannel(columns(11, RESULTS));
+        channel.setFeedCache(mCache);
+        channel.setFeedProjection(1);
+        channel.loadChannelFeedColumns();
+
+        // The latest entries are requested as without a cache, and the projected entries are not cached
+        assertNull(channel.mRequests.get(0).get("start"));
+        assertEquals(1, channel.mUpdates.size());
+        assertEntryIds(channel.mUpdates.get(0), 11, RESULTS);
+        assertEntryIds(mCache.read(CHANNEL_ID, ThingSpeakChannel.ALL_FIELDS, 100), 1, 10);
+    }
+
+    @Test
+    public void failedReadClearsFeedAndIsReported() throws IOException {
+        FeedCache failing = new FeedCache(mDirectory) {
+            @Override
+            public synchronized FeedColumns read(long channelId, int fieldId, int maxEntries) throws IOException {
+                throw new IOException("Corrupt segment");
+            }
+        };
+        final List<RetrofitError> errors = new ArrayList<>();
+        StubChannel channel = newChannel(columns(11, RESULTS));
+        channel.setFeedCache(failing);
+        channel.setChannelErrorListener(new ThingSpeakChannel.ChannelErrorListener() {
+            @Override
+            public void onChannelRequestFailed(long channelId, RetrofitError error) {
+                errors.add(error);
+            }
+        });
+        channel.loadChannelFieldFeedColumns(1);
+
+        assertEquals(1, errors.size());
+        assertEquals("Corrupt segment", errors.get(0).getCause().getMessage());
+        // The feed is loaded without the cache and cached again from scratch, leaving other feeds alone
+        assertNull(channel.mRequests.get(0).get("start"));
+        assertEntryIds(channel.mUpdates.get(0), 11, RESULTS);
+        FeedCache reopened = new FeedCache(mDirectory);
+        assertEntryIds(reopened.read(CHANNEL_ID, 1, 100), 11, RESULTS);
+        assertEntryIds(reopened.read(CHANNEL_ID, ThingSpeakChannel.ALL_FIELDS, 100), 1, 10);
+    }
+
+}
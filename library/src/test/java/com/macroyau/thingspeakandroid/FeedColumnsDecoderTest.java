@@ -0,0 +1,125 @@
+package com.macroyau.thingspeakandroid;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.macroyau.thingspeakandroid.model.ChannelFeed;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedColumnsDecoderTest {
+
+    private static final int FIXTURE_SIZE = 8;
+
+    private final Gson mGson = ThingSpeakClient.createGson();
+
+    @Test
+    public void streamingJsonMatchesModelDecoding() throws IOException {
+        FeedColumns expected = decodeModel();
+        FeedColumns columns = decodeJson(null);
+
+        assertEquals(FIXTURE_SIZE, expected.size());
+        assertColumnsEqual(expected, columns);
+        assertNotNull(columns.getChannel());
+        assertEquals(expected.getChannel().getId(), columns.getChannel().getId());
+        assertEquals(expected.getChannel().getLastEntryId(), columns.getChannel().getLastEntryId());
+    }
+
+    @Test
+    public void csvMatchesJson() throws IOException {
+        FeedColumns expected = decodeJson(null);
+        FeedColumns columns = decodeCsv(null);
+
+        assertColumnsEqual(expected, columns);
+        // CSV feeds carry no Channel information
+        assertNull(columns.getChannel());
+    }
+
+    @Test
+    public void fixtureValues() throws IOException {
+        FeedColumns columns = decodeCsv(null);
+
+        // 2024-01-15T20:00:30+08:00
+        assertEquals(1705320030000L, columns.getCreatedAt(2));
+        assertEquals(1500, columns.getValue(1, 2), 0);
+        assertEquals(0.30000000000000004, columns.getValue(3, 6), 0);
+        assertEquals(12345678.125, columns.getValue(2, 4), 0);
+        assertEquals(-0.01, columns.getValue(3, 4), 0);
+        assertTrue(Double.isNaN(columns.getValue(2, 1)));
+        // Non-numeric and empty values are missing
+        assertTrue(Double.isNaN(columns.getValue(1, 3)));
+        assertTrue(Double.isNaN(columns.getValue(1, 4)));
+        assertTrue(Double.isNaN(columns.getValue(1, 5)));
+        assertFalse(columns.hasField(4));
+    }
+
+    @Test
+    public void projectionMatches() throws IOException {
+        int[] fieldIds = { 2 };
+        FeedColumns json = decodeJson(fieldIds);
+        FeedColumns csv = decodeCsv(fieldIds);
+
+        assertColumnsEqual(json, csv);
+        assertFalse(json.hasField(1));
+        assertTrue(json.hasField(2));
+        assertFalse(json.hasField(3));
+        assertEquals(-3.25, csv.getValue(2, 0), 0);
+    }
+
+    private static void assertColumnsEqual(FeedColumns expected, FeedColumns actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getCreatedAt(i), actual.getCreatedAt(i));
+            assertEquals(expected.getEntryId(i), actual.getEntryId(i));
+        }
+
+        for (int fieldId = 1; fieldId <= FeedColumns.FIELD_COUNT; fieldId++) {
+            assertEquals(expected.hasField(fieldId), actual.hasField(fieldId));
+            if (!expected.hasField(fieldId))
+                continue;
+            for (int i = 0; i < expected.size(); i++) {
+                double value = expected.getValue(fieldId, i);
+                if (Double.isNaN(value))
+                    assertTrue(Double.isNaN(actual.getValue(fieldId, i)));
+                else
+                    assertEquals(value, actual.getValue(fieldId, i), 0);
+            }
+        }
+    }
+
+    private FeedColumns decodeModel() throws IOException {
+        try (Reader reader = new InputStreamReader(open("feeds.json"), "UTF-8")) {
+            return mGson.fromJson(reader, ChannelFeed.class).toColumns();
+        }
+    }
+
+    private FeedColumns decodeJson(int[] fieldIds) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(open("feeds.json"), "UTF-8"))) {
+            return new FeedColumnsDecoder(mGson, fieldIds).decode(reader);
+        }
+    }
+
+    private FeedColumns decodeCsv(int[] fieldIds) throws IOException {
+        try (InputStream in = open("feeds.csv")) {
+            return new FeedColumnsCsvDecoder(fieldIds).decode(in);
+        }
+    }
+
+    private InputStream open(String name) {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(name);
+        assertNotNull(name, in);
+        return in;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.macroyau.thingspeakandroid;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class FeedQueryTest {
+
+    // 2024-01-15 12:00:00 UTC
+    private static final Date START = new Date(1705320000000L);
+
+    private TimeZone mDefaultTimeZone;
+
+    @Before
+    public void setUp() {
+        // Request dates must not depend on the timezone of the device
+        mDefaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+    @Test
+    public void datesAreFormattedInUtcWithoutTimezone() {
+        FeedQuery query = FeedQuery.LATEST.newBuilder().setStartDate(START).build();
+        assertEquals("2024-01-15 12:00:00", query.getParams().get("start"));
+    }
+
+    @Test
+    public void datesAreFormattedInQueryTimezone() {
+        FeedQuery query = FeedQuery.LATEST.newBuilder().setStartDate(START).setEndDate(new Date(START.getTime() + 3600000L))
+                .setTimezone("Asia/Hong_Kong").build();
+        assertEquals("2024-01-15 20:00:00", query.getParams().get("start"));
+        assertEquals("2024-01-15 21:00:00", query.getParams().get("end"));
+        assertEquals("Asia/Hong_Kong", query.getParams().get("timezone"));
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.ChannelFeed;
+import com.macroyau.thingspeakandroid.model.Feed;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FeedWindowTest {
+
+    private static ChannelFeed feed(long fromEntryId, long toEntryId) {
+        List<Feed> feeds = new ArrayList<>();
+        for (long entryId = fromEntryId; entryId <= toEntryId; entryId++)
+            feeds.add(new Feed(new Date(entryId * 1000L), entryId, new String[] {Long.toString(entryId * 10), null, null, null, null, null, null, null}));
+        return new ChannelFeed(null, feeds);
+    }
+
+    @Test
+    public void columnsFollowMergedEntries() {
+        FeedWindow window = new FeedWindow(5);
+        assertEquals(0, window.toColumns().size());
+
+        assertEquals(3, window.merge(feed(1, 3)).size());
+        // The start parameter is inclusive, so the last entry is returned again
+        assertEquals(4, window.merge(feed(3, 7)).size());
+
+        FeedColumns columns = window.toColumns();
+        FeedColumns expected = window.toChannelFeed().toColumns();
+        assertEquals(5, columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            assertEquals(expected.getEntryId(i), columns.getEntryId(i));
+            assertEquals(expected.getCreatedAt(i), columns.getCreatedAt(i));
+            assertEquals(expected.getValue(1, i), columns.getValue(1, i), 0);
+        }
+        assertEquals(3, columns.getEntryId(0));
+        assertEquals(70, columns.getValue(1, 4), 0);
+    }
+
+    @Test
+    public void mergeWithoutNewEntriesKeepsSnapshot() {
+        FeedWindow window = new FeedWindow(5);
+        window.merge(feed(1, 3));
+        FeedColumns columns = window.toColumns();
+
+        assertEquals(0, window.merge(feed(2, 3)).size());
+        assertSame(columns, window.toColumns());
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedUpdate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedWriteLogTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("feed-write-log", "");
+        assertTrue(mDirectory.delete());
+        assertTrue(mDirectory.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        mDirectory.delete();
+    }
+
+    private static FeedUpdate update(int i) {
+        return new FeedUpdate(new Date(1000L * i)).setField(1, i).setField(8, "v" + i).setStatus(i % 2 == 0 ? "even" : null);
+    }
+
+    private static List<FeedUpdate> updates(int from, int to) {
+        List<FeedUpdate> updates = new ArrayList<>();
+        for (int i = from; i < to; i++)
+            updates.add(update(i));
+        return updates;
+    }
+
+    private static void assertPending(FeedWriteLog log, int from, int to) {
+        List<FeedUpdate> pending = log.getPending();
+        assertEquals(to - from, pending.size());
+        for (int i = from; i < to; i++) {
+            FeedUpdate update = pending.get(i - from);
+            assertEquals(1000L * i, update.getCreatedAt().getTime());
+            assertEquals(Double.toString(i), update.getField(1));
+            assertNull(update.getField(2));
+            assertEquals("v" + i, update.getField(8));
+            assertEquals(i % 2 == 0 ? "even" : null, update.getStatus());
+        }
+    }
+
+    private File[] segments() {
+        File[] files = mDirectory.listFiles();
+        List<File> segments = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(".wal"))
+                segments.add(file);
+        }
+        return segments.toArray(new File[segments.size()]);
+    }
+
+    private File lastSegment() {
+        File last = null;
+        for (File file : segments()) {
+            if (last == null || file.getName().compareTo(last.getName()) > 0)
+                last = file;
+        }
+        return last;
+    }
+
+    @Test
+    public void pendingReadingsAreReplayed() throws IOException {
+        FeedWriteLog log = new FeedWriteLog(mDirectory);
+        log.setSyncOnAppend(false);
+        log.append(updates(0, 5));
+        log.append(update(5));
+        assertPending(log, 0, 6);
+
+        assertPending(new FeedWriteLog(mDirectory), 0, 6);
+    }
+
+    @Test
+    public void acknowledgedReadingsAreNotReplayed() throws IOException {
+        FeedWriteLog log = new FeedWriteLog(mDirectory);
+        log.append(updates(0, 6));
+        log.acknowledge(4);
+        assertPending(log, 4, 6);
+
+        FeedWriteLog reopened = new FeedWriteLog(mDirectory);
+        assertPending(reopened, 4, 6);
+        reopened.append(updates(6, 8));
+        reopened.acknowledge(1);
+        assertPending(new FeedWriteLog(mDirectory), 5, 8);
+    }
+
+    @Test
+    public void tornRecordIsDiscarded() throws IOException {
+        new FeedWriteLog(mDirectory).append(updates(0, 3));
+        File segment = lastSegment();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.setLength(file.length() - 3);
+        } finally {
+            file.close();
+        }
+
+        FeedWriteLog log = new FeedWriteLog(mDirectory);
+        assertPending(log, 0, 2);
+
+        // Appends continue after the last intact record
+        log.append(updates(2, 4));
+        assertPending(new FeedWriteLog(mDirectory), 0, 4);
+    }
+
+    @Test
+    public void corruptRecordIsDiscarded() throws IOException {
+        new FeedWriteLog(mDirectory).append(updates(0, 3));
+        File segment = lastSegment();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            // Flip a bit of the payload of the last record, so that its checksum no longer matches
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 1);
+        } finally {
+            file.close();
+        }
+
+        assertPending(new FeedWriteLog(mDirectory), 0, 2);
+    }
+
+    @Test
+    public void acknowledgedSegmentsAreDeleted() throws IOException {
+        FeedWriteLog log = new FeedWriteLog(mDirectory);
+        log.setSyncOnAppend(false);
+        log.append(updates(0, 10000));
+        assertEquals(3, segments().length);
+
+        log.acknowledge(8192);
+        assertEquals(1, segments().length);
+        assertEquals(1808, log.getPendingCount());
+
+        FeedWriteLog reopened = new FeedWriteLog(mDirectory);
+        assertEquals(1808, reopened.getPendingCount());
+        assertEquals(8192000L, reopened.getPending().get(0).getCreatedAt().getTime());
+
+        reopened.acknowledge(1808);
+        assertEquals(0, segments().length);
+        assertEquals(0, new FeedWriteLog(mDirectory).getPendingCount());
+    }
+
+}
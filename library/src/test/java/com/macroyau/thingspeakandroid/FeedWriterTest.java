@@ -0,0 +1,135 @@
+package com.macroyau.thingspeakandroid;
+
+import com.google.gson.Gson;
+import com.macroyau.thingspeakandroid.model.BulkUpdate;
+import com.macroyau.thingspeakandroid.model.BulkUpdateResult;
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+import com.macroyau.thingspeakandroid.model.FeedUpdate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeedWriterTest {
+
+    private static final long CHANNEL_ID = StubChannel.CHANNEL_ID;
+
+    /***
+     * Channel answering bulk updates with a fixed result instead of requests to the server.
+     */
+    private static class WritableChannel extends StubChannel {
+
+        private final BulkUpdateResult mResult;
+        private int mBulkUpdates;
+
+        WritableChannel(BulkUpdateResult result) {
+            this.mResult = result;
+            setWriteApiKey("KEY");
+        }
+
+        @Override
+        void bulkUpdate(BulkUpdate bulkUpdate, Callback<BulkUpdateResult> callback) {
+            synchronized (this) {
+                mBulkUpdates++;
+            }
+            callback.success(mResult, null);
+        }
+
+        @Override
+        void loadLatestEntry(Callback<FeedColumns> callback) {
+            callback.success(new FeedColumns(null, 0, new long[0], new long[0], new double[FeedColumns.FIELD_COUNT][]), null);
+        }
+
+        synchronized int getBulkUpdates() {
+            return mBulkUpdates;
+        }
+
+    }
+
+    private static class LatchListener implements FeedWriter.WriteListener {
+
+        final CountDownLatch written = new CountDownLatch(1);
+        final CountDownLatch failed = new CountDownLatch(1);
+
+        @Override
+        public void onFeedUpdatesWritten(long channelId, List<FeedUpdate> updates) {
+            written.countDown();
+        }
+
+        @Override
+        public void onFeedUpdatesFailed(long channelId, List<FeedUpdate> updates, RetrofitError error) {
+            failed.countDown();
+        }
+
+    }
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("feed-write-log", "");
+        assertTrue(mDirectory.delete());
+        assertTrue(mDirectory.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void rejectedBatchIsReplayedFromLog() throws Exception {
+        WritableChannel rejecting = new WritableChannel(new BulkUpdateResult());
+        FeedWriter writer = rejecting.getFeedWriter();
+        LatchListener listener = new LatchListener();
+        writer.setListener(listener);
+        writer.setMinWriteInterval(0);
+        writer.setWriteAheadLog(new FeedWriteLog(mDirectory));
+        for (int i = 0; i < 3; i++)
+            rejecting.writeFeedUpdate(new FeedUpdate(new Date(1000L * (i + 1))).setField(1, i));
+        writer.flush();
+
+        assertTrue(listener.failed.await(10, TimeUnit.SECONDS));
+        assertEquals(1, rejecting.getBulkUpdates());
+        assertEquals(1, listener.written.getCount());
+        assertEquals(3, writer.getPendingCount());
+
+        // The rejected readings are still pending in the log when it is opened again, e.g. by another process
+        List<FeedUpdate> pending = new FeedWriteLog(mDirectory).getPending();
+        assertEquals(3, pending.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1000L * (i + 1), pending.get(i).getCreatedAt().getTime());
+            assertEquals(Double.toString(i), pending.get(i).getField(1));
+        }
+
+        WritableChannel accepting = new WritableChannel(new Gson().fromJson("{\"success\":true}", BulkUpdateResult.class));
+        FeedWriter replay = accepting.getFeedWriter();
+        LatchListener replayListener = new LatchListener();
+        replay.setListener(replayListener);
+        replay.setMinWriteInterval(0);
+        replay.setWriteAheadLog(new FeedWriteLog(mDirectory));
+
+        assertTrue(replayListener.written.await(10, TimeUnit.SECONDS));
+        assertEquals(0, replay.getPendingCount());
+        assertEquals(0, new FeedWriteLog(mDirectory).getPendingCount());
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.macroyau.thingspeakandroid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    private static final long MICROSECOND = 1000L;
+
+    private static void assertWithinError(long expected, long actual) {
+        // Buckets are a 32nd of a power of two wide, and values are reported at the top of their bucket
+        assertTrue("Expected " + expected + " but was " + actual, actual >= expected && actual <= expected + expected / 32 + MICROSECOND);
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanNanos());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void percentilesAreWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10000; micros++)
+            histogram.record(micros * MICROSECOND);
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(5000500, histogram.getMeanNanos());
+        assertEquals(10000 * MICROSECOND, histogram.getMaxNanos());
+        assertWithinError(5000 * MICROSECOND, histogram.getValueAtPercentile(50));
+        assertWithinError(9000 * MICROSECOND, histogram.getValueAtPercentile(90));
+        assertWithinError(9900 * MICROSECOND, histogram.getValueAtPercentile(99));
+        assertEquals(10000 * MICROSECOND, histogram.getValueAtPercentile(100));
+        assertWithinError(MICROSECOND, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 0; micros < 64; micros++)
+            histogram.record(micros * MICROSECOND);
+
+        for (int i = 1; i < 64; i++)
+            assertEquals((i - 1) * MICROSECOND + 999, histogram.getValueAtPercentile(100.0 * i / 64));
+        assertEquals(63 * MICROSECOND, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void valuesOutOfRangeAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        long tenHours = 10 * 60 * 60 * 1000000000L;
+        histogram.record(tenHours);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(999, histogram.getValueAtPercentile(50));
+        assertEquals(tenHours, histogram.getMaxNanos());
+        assertEquals(tenHours, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void resetRemovesValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5 * MICROSECOND);
+        histogram.reset();
+        histogram.record(7 * MICROSECOND);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(7 * MICROSECOND, histogram.getMaxNanos());
+        assertEquals(7 * MICROSECOND, histogram.getValueAtPercentile(50));
+    }
+
+}
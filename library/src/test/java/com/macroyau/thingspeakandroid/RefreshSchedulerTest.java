@@ -0,0 +1,99 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.Feed;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.RetrofitError;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RefreshSchedulerTest {
+
+    private static final long MIN_INTERVAL = 1000L;
+    private static final long MAX_INTERVAL = 4000L;
+
+    /***
+     * Scheduler recording the delays of scheduled tasks instead of running them.
+     */
+    private static class RecordingScheduler extends ScheduledThreadPoolExecutor {
+
+        final List<Runnable> mTasks = new ArrayList<>();
+        final List<Long> mDelays = new ArrayList<>();
+
+        RecordingScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            mTasks.add(command);
+            mDelays.add(unit.toMillis(delay));
+            return super.schedule(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, 1, TimeUnit.DAYS);
+        }
+
+    }
+
+    /***
+     * Channel completing each synchronization immediately without new entries, or failing every other one.
+     */
+    private static class IdleChannel extends StubChannel {
+
+        private int mSyncs;
+
+        @Override
+        void syncFeed(int fieldId, FeedSyncObserver observer) {
+            if (mSyncs++ % 2 == 0)
+                observer.onSyncCompleted(fieldId, Collections.<Feed>emptyList());
+            else
+                observer.onSyncFailed(fieldId, RetrofitError.networkError("http://localhost", new IOException()));
+        }
+
+    }
+
+    private RecordingScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mScheduler = new RecordingScheduler();
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdownNow();
+    }
+
+    @Test
+    public void jitteredDelaysStayWithinBounds() {
+        RefreshScheduler scheduler = new RefreshScheduler(mScheduler);
+        scheduler.register(new IdleChannel(), ThingSpeakChannel.ALL_FIELDS, MIN_INTERVAL, MAX_INTERVAL);
+        assertEquals(0L, (long) mScheduler.mDelays.get(0));
+
+        for (int i = 0; i < 500; i++)
+            mScheduler.mTasks.get(mScheduler.mTasks.size() - 1).run();
+
+        assertEquals(501, mScheduler.mDelays.size());
+        for (int i = 1; i < mScheduler.mDelays.size(); i++) {
+            long delay = mScheduler.mDelays.get(i);
+            assertTrue("Delay " + delay + " out of bounds", delay >= MIN_INTERVAL && delay <= MAX_INTERVAL);
+        }
+        // The backoff reaches the maximum, where the jitter can only shorten the delay
+        assertEquals(MAX_INTERVAL, (long) Collections.max(mScheduler.mDelays));
+    }
+
+}
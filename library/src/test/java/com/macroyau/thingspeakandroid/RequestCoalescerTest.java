@@ -0,0 +1,144 @@
+package com.macroyau.thingspeakandroid;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import retrofit.Callback;
+import retrofit.RetrofitError;
+import retrofit.client.Response;
+import retrofit.http.GET;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestCoalescerTest {
+
+    interface Service {
+
+        @GET("/feed")
+        void getFeed(Callback<Object> callback);
+
+    }
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /***
+     * Callback recording results and failures, optionally throwing on delivery.
+     */
+    private static class RecordingCallback implements Callback<Object> {
+
+        private final boolean mThrowing;
+        final List<Object> mResults = new ArrayList<>();
+        final List<RetrofitError> mErrors = new ArrayList<>();
+
+        RecordingCallback(boolean throwing) {
+            this.mThrowing = throwing;
+        }
+
+        @Override
+        public void success(Object result, Response response) {
+            mResults.add(result);
+            if (mThrowing)
+                throw new IllegalStateException("Callback failed");
+        }
+
+        @Override
+        public void failure(RetrofitError error) {
+            mErrors.add(error);
+            if (mThrowing)
+                throw new IllegalStateException("Callback failed");
+        }
+
+    }
+
+    private static ServiceCall newCall(ServiceInterceptor... interceptors) throws NoSuchMethodException {
+        Method method = Service.class.getMethod("getFeed", Callback.class);
+        return new ServiceCall(null, method, new Object[] { null }, Arrays.asList(interceptors), ServiceCall.PRIORITY_NORMAL, null);
+    }
+
+    @Test
+    public void synchronousExceptionReleasesKeyAndFailsJoinedCalls() throws Exception {
+        final RequestCoalescer coalescer = new RequestCoalescer(DIRECT);
+        final RecordingCallback joined = new RecordingCallback(false);
+        final int[] attempts = new int[1];
+        ServiceInterceptor throwing = new ServiceInterceptor() {
+            @Override
+            public void intercept(ServiceCall call, Callback<Object> callback) {
+                // An identical call made while the first one is in flight joins it
+                if (attempts[0]++ == 0)
+                    coalescer.intercept(call, joined);
+                throw new IllegalStateException("Cannot send");
+            }
+        };
+
+        RecordingCallback first = new RecordingCallback(false);
+        try {
+            newCall(coalescer, throwing).proceed(first);
+            fail("Exception expected");
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals(0, coalescer.getInFlightCount());
+        assertTrue(first.mErrors.isEmpty());
+        assertEquals(1, joined.mErrors.size());
+        assertEquals("Cannot send", joined.mErrors.get(0).getCause().getMessage());
+
+        // A later identical call is sent again instead of waiting forever
+        try {
+            newCall(coalescer, throwing).proceed(new RecordingCallback(false));
+            fail("Exception expected");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(2, attempts[0]);
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void throwingCallbackDoesNotStopDelivery() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(DIRECT);
+        final List<Callback<Object>> sent = new ArrayList<>();
+        ServiceInterceptor holding = new ServiceInterceptor() {
+            @Override
+            public void intercept(ServiceCall call, Callback<Object> callback) {
+                sent.add(callback);
+            }
+        };
+
+        RecordingCallback[] callbacks = { new RecordingCallback(true), new RecordingCallback(true), new RecordingCallback(false) };
+        for (RecordingCallback callback : callbacks)
+            newCall(coalescer, holding).proceed(callback);
+        assertEquals(1, sent.size());
+        assertEquals(1, coalescer.getInFlightCount());
+
+        Object result = new Object();
+        try {
+            sent.get(0).success(result, null);
+            fail("Exception expected");
+        } catch (IllegalStateException expected) {
+        }
+        for (RecordingCallback callback : callbacks) {
+            assertEquals(1, callback.mResults.size());
+            assertSame(result, callback.mResults.get(0));
+        }
+        assertEquals(0, coalescer.getInFlightCount());
+
+        // Only the callback of the new request is waiting for it
+        newCall(coalescer, holding).proceed(callbacks[2]);
+        sent.get(1).failure(RetrofitError.unexpectedError("/feed", new IllegalStateException()));
+        assertEquals(1, callbacks[2].mErrors.size());
+        assertTrue(callbacks[0].mErrors.isEmpty());
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RollupPyramidTest {
+
+    private static final long MINUTE = 60 * 1000L;
+
+    private static FeedColumns columns(long fromMinute, long toMinute) {
+        int size = (int) (toMinute - fromMinute + 1);
+        long[] createdAt = new long[size];
+        long[] entryIds = new long[size];
+        double[][] fields = new double[FeedColumns.FIELD_COUNT][];
+        fields[0] = new double[size];
+        for (int i = 0; i < size; i++) {
+            createdAt[i] = (fromMinute + i) * MINUTE;
+            entryIds[i] = fromMinute + i;
+            fields[0][i] = fromMinute + i;
+        }
+        return new FeedColumns(null, size, createdAt, entryIds, fields);
+    }
+
+    private static RollupPyramid newPyramid(int capacity) {
+        return new RollupPyramid(1, new long[] {MINUTE, 10 * MINUTE}, capacity);
+    }
+
+    @Test
+    public void bucketsAggregateEntries() {
+        RollupPyramid pyramid = newPyramid(100);
+        pyramid.addAll(columns(0, 19));
+
+        RollupPyramid.Buckets buckets = pyramid.getBuckets(1);
+        assertEquals(2, buckets.size());
+        assertEquals(10 * MINUTE, buckets.getStart(1));
+        assertEquals(10, buckets.getCount(1));
+        assertEquals(145, buckets.getSum(1), 0);
+        assertEquals(14.5, buckets.getAverage(1), 0);
+        assertEquals(10, buckets.getMin(1), 0);
+        assertEquals(19, buckets.getMax(1), 0);
+        assertEquals(19 * MINUTE, pyramid.getEndDate());
+    }
+
+    @Test
+    public void overlappingFeedsAreAddedOnce() {
+        RollupPyramid pyramid = newPyramid(100);
+        pyramid.addAll(columns(0, 14));
+        pyramid.addAll(columns(5, 19));
+        pyramid.add(3 * MINUTE, 100);
+
+        RollupPyramid.Buckets buckets = pyramid.getBuckets(1);
+        assertEquals(10, buckets.getCount(0));
+        assertEquals(10, buckets.getCount(1));
+        assertEquals(20, pyramid.getBuckets(0).size());
+    }
+
+    @Test
+    public void olderEntriesAreMergedIntoBuckets() {
+        RollupPyramid pyramid = newPyramid(100);
+        pyramid.addAll(columns(40, 49));
+        // Backfilled history, then a lazily loaded segment in the gap, and an entry completing a bucket
+        pyramid.addAll(columns(0, 9));
+        pyramid.addAll(columns(25, 34));
+        pyramid.add(24 * MINUTE, 24);
+
+        RollupPyramid.Buckets buckets = pyramid.getBuckets(1);
+        assertEquals(4, buckets.size());
+        long[] starts = {0, 20 * MINUTE, 30 * MINUTE, 40 * MINUTE};
+        int[] counts = {10, 6, 5, 10};
+        for (int i = 0; i < starts.length; i++) {
+            assertEquals(starts[i], buckets.getStart(i));
+            assertEquals(counts[i], buckets.getCount(i));
+        }
+        assertEquals(24, buckets.getMin(1), 0);
+        assertEquals(49 * MINUTE, pyramid.getEndDate());
+        assertEquals(0, pyramid.getStartDate());
+    }
+
+    @Test
+    public void fullLevelKeepsLatestBuckets() {
+        RollupPyramid pyramid = newPyramid(10);
+        pyramid.addAll(columns(20, 29));
+        // Older than all buckets of the full finest level, but still within the coarser level
+        pyramid.addAll(columns(10, 12));
+
+        RollupPyramid.Buckets finest = pyramid.getBuckets(0);
+        assertEquals(10, finest.size());
+        assertEquals(20 * MINUTE, finest.getStart(0));
+        assertEquals(2, pyramid.getBuckets(1).size());
+        assertEquals(3, pyramid.getBuckets(1).getCount(0));
+    }
+
+    @Test
+    public void rangesAreTrimmedWithOldestBuckets() {
+        RollupPyramid pyramid = newPyramid(10);
+        // Each entry added alone is a range of its own
+        for (long minute = 0; minute < 200; minute++)
+            pyramid.add(minute * MINUTE, minute);
+
+        // Only the entries of the 10 latest buckets of the coarser level are remembered
+        assertEquals(100 * MINUTE, pyramid.getStartDate());
+        assertEquals(100, pyramid.getAddedRangeCount());
+        pyramid.add(99 * MINUTE, 100);
+        assertEquals(10, pyramid.getBuckets(1).getCount(0));
+    }
+
+    @Test
+    public void bucketsWithinRange() {
+        RollupPyramid pyramid = newPyramid(100);
+        pyramid.addAll(columns(0, 59));
+
+        RollupPyramid.Buckets buckets = pyramid.getBuckets(0, 10 * MINUTE + 30 * 1000L, 20 * MINUTE);
+        assertEquals(10 * MINUTE, buckets.getStart(0));
+        assertEquals(20 * MINUTE, buckets.getStart(buckets.size() - 1));
+        assertEquals(1, pyramid.selectLevel(0, 60 * MINUTE, 30));
+        assertEquals(0, pyramid.selectLevel(0, 20 * MINUTE, 30));
+    }
+
+    @Test
+    public void timescaleFeedsAreNotAdded() {
+        StubChannel channel = new StubChannel(columns(0, 19));
+        RollupPyramid pyramid = channel.getRollupPyramid(1);
+
+        // A timescale feed only holds the first entry of each period
+        channel.setFeedQuery(new FeedQuery.Builder().setTimescale(10).build());
+        channel.loadChannelFieldFeedColumns(1);
+        assertEquals(0, pyramid.getBuckets(0).size());
+
+        channel.setFeedQuery(FeedQuery.LATEST);
+        channel.loadChannelFieldFeedColumns(1);
+        assertEquals(20, pyramid.getBuckets(0).size());
+    }
+
+}
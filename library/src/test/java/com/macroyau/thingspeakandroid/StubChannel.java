@@ -0,0 +1,71 @@
+package com.macroyau.thingspeakandroid;
+
+import com.macroyau.thingspeakandroid.model.FeedColumns;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import retrofit.Callback;
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+
+/***
+ * Channel answering feed requests with fixed entries instead of requests to the server, or keeping their callbacks without an answer so
+ * that tests complete them in any order. Requests not overridden by tests fail without network access.
+ */
+class StubChannel extends ThingSpeakChannel implements ThingSpeakChannel.ChannelFeedColumnsUpdateListener {
+
+    static final long CHANNEL_ID = 1;
+
+    private final FeedColumns mResponse;
+    final List<Map<String, String>> mRequests = new ArrayList<>();
+    final List<Callback<FeedColumns>> mCallbacks = new ArrayList<>();
+    final List<FeedColumns> mUpdates = new ArrayList<>();
+
+    StubChannel() {
+        this(null);
+    }
+
+    StubChannel(FeedColumns response) {
+        super(CHANNEL_ID, null, newClient());
+        this.mResponse = response;
+        setChannelFeedColumnsUpdateListener(this);
+    }
+
+    @Override
+    void loadFeedColumns(int fieldId, Map<String, String> params, Callback<FeedColumns> callback) {
+        mRequests.add(params);
+        mCallbacks.add(callback);
+        if (mResponse != null)
+            callback.success(mResponse, null);
+    }
+
+    @Override
+    public void onChannelFeedColumnsUpdated(long channelId, int fieldId, FeedColumns columns) {
+        mUpdates.add(columns);
+    }
+
+    /***
+     * Return a client running all requests, callbacks and computations on the calling thread, with an HTTP client failing every request.
+     */
+    static ThingSpeakClient newClient() {
+        Client client = new Client() {
+            @Override
+            public Response execute(Request request) throws IOException {
+                throw new IOException("No network in tests");
+            }
+        };
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        return new ThingSpeakClient("http://localhost", client, executor, executor, executor);
+    }
+
+}
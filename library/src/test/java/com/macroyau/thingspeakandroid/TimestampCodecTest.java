@@ -0,0 +1,95 @@
+package com.macroyau.thingspeakandroid;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimestampCodecTest {
+
+    // 2015-03-05 08:30:00 UTC
+    private static final long MARCH_5 = 1425544200000L;
+
+    @Test
+    public void parsesIsoTimestamps() {
+        assertEquals(MARCH_5, TimestampCodec.parse("2015-03-05T08:30:00Z"));
+        assertEquals(MARCH_5, TimestampCodec.parse("2015-03-05T08:30:00"));
+        assertEquals(MARCH_5, TimestampCodec.parse("2015-03-05T16:30:00+08:00"));
+        assertEquals(MARCH_5, TimestampCodec.parse("2015-03-05T03:30:00-05:00"));
+        assertEquals(MARCH_5, TimestampCodec.parse("2015-03-05T14:00:00+0530"));
+        assertEquals(MARCH_5, TimestampCodec.parse("2015-03-05T16:30:00+08"));
+        assertEquals(-1000L, TimestampCodec.parse("1969-12-31T23:59:59Z"));
+        // 2024-02-29 23:59:59 UTC
+        assertEquals(1709251199000L, TimestampCodec.parse("2024-02-29T23:59:59Z"));
+    }
+
+    @Test
+    public void parsesFractionsOfSecond() {
+        assertEquals(MARCH_5 + 500, TimestampCodec.parse("2015-03-05T08:30:00.5Z"));
+        assertEquals(MARCH_5 + 123, TimestampCodec.parse("2015-03-05T08:30:00.123456Z"));
+        assertEquals(MARCH_5 + 40, TimestampCodec.parse("2015-03-05T16:30:00,04+08:00"));
+    }
+
+    @Test
+    public void parsesCsvTimestampsInRegion() {
+        String line = "2015-03-05 08:30:00 UTC,1,2015-03-05 16:30:00 +0800,3";
+        assertEquals(MARCH_5, TimestampCodec.parse(line, 0, 23));
+        assertEquals(MARCH_5, TimestampCodec.parse(line, 26, 51));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingTime() {
+        TimestampCodec.parse("2015-03-05");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidMonth() {
+        TimestampCodec.parse("2015-13-05T08:30:00Z");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownOffset() {
+        TimestampCodec.parse("2015-03-05T08:30:00X");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyFraction() {
+        TimestampCodec.parse("2015-03-05T08:30:00.Z");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTrailingCharacters() {
+        TimestampCodec.parse("2015-03-05T08:30:00Z,");
+    }
+
+    @Test
+    public void formatsLikeSimpleDateFormat() {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        SimpleDateFormat param = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        TimeZone hongKong = TimeZone.getTimeZone("Asia/Hong_Kong");
+        param.setTimeZone(hongKong);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            // From 1970 to about 2100, whole seconds
+            long millis = (long) (random.nextDouble() * 4102444800L) * 1000;
+            String formatted = TimestampCodec.formatIso(millis);
+            assertEquals(iso.format(new Date(millis)), formatted);
+            assertEquals(millis, TimestampCodec.parse(formatted));
+            assertEquals(param.format(new Date(millis)), TimestampCodec.formatRequestParam(millis, hongKong));
+        }
+    }
+
+    @Test
+    public void formatsDatesBeforeEpoch() {
+        assertEquals("1969-12-31T23:59:59Z", TimestampCodec.formatIso(-1000L));
+        assertEquals("1969-12-31T23:59:59Z", TimestampCodec.formatIso(-1L));
+    }
+
+}
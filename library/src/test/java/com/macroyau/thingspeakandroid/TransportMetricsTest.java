@@ -0,0 +1,100 @@
+package com.macroyau.thingspeakandroid;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedInput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransportMetricsTest {
+
+    private static final int BODY_SIZE = 4096;
+    private static final int CHUNK_SIZE = 512;
+    private static final long CHUNK_DELAY_MILLIS = 5;
+
+    /***
+     * Chunked body of unknown length, each chunk arriving after a delay.
+     */
+    private static class SlowBody implements TypedInput {
+
+        @Override
+        public String mimeType() {
+            return "application/json";
+        }
+
+        @Override
+        public long length() {
+            return -1;
+        }
+
+        @Override
+        public InputStream in() {
+            return new ByteArrayInputStream(new byte[BODY_SIZE]) {
+                @Override
+                public synchronized int read(byte[] buffer, int offset, int count) {
+                    try {
+                        Thread.sleep(CHUNK_DELAY_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.read(buffer, offset, Math.min(count, CHUNK_SIZE));
+                }
+            };
+        }
+
+    }
+
+    @Test
+    public void bodyDownloadIsCountedAsNetworkTime() throws IOException {
+        TransportMetrics.MeteredClient client = new TransportMetrics.MeteredClient(new Client() {
+            @Override
+            public Response execute(Request request) {
+                return new Response(request.getUrl(), 200, "OK", Collections.<Header>emptyList(), new SlowBody());
+            }
+        });
+
+        Response response = client.execute(new Request("GET", "http://localhost/channels/1/feeds.json", Collections.<Header>emptyList(), null));
+        long start = System.nanoTime();
+        InputStream in = response.getBody().in();
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer, 0, buffer.length) != -1) {
+            // Decoding is instantaneous, only the download takes time
+        }
+        in.close();
+        TransportMetrics.recordDecode(System.nanoTime() - start);
+
+        final TransportMetrics[] delivered = new TransportMetrics[1];
+        new TransportMetrics.MeteredExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }).execute(new Runnable() {
+            @Override
+            public void run() {
+                delivered[0] = TransportMetrics.current();
+            }
+        });
+
+        TransportMetrics metrics = delivered[0];
+        assertNotNull(metrics);
+        assertEquals(BODY_SIZE, metrics.mResponseBytes);
+        long downloadNanos = TimeUnit.MILLISECONDS.toNanos(CHUNK_DELAY_MILLIS * BODY_SIZE / CHUNK_SIZE);
+        assertTrue("Network time excludes the download", metrics.mNetworkNanos >= downloadNanos);
+        assertTrue("Decode time includes the download", metrics.mDecodeNanos < downloadNanos / 2);
+    }
+
+}
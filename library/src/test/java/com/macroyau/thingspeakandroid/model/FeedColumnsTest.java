@@ -0,0 +1,105 @@
+package com.macroyau.thingspeakandroid.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FeedColumnsTest {
+
+    /***
+     * Create entries with consecutive entry IDs, dated a minute apart, with field 1 holding the entry ID and optionally field 2 holding its
+     * negation.
+     */
+    private static FeedColumns columns(Channel channel, long firstEntryId, int size, boolean secondField) {
+        long[] createdAt = new long[size];
+        long[] entryIds = new long[size];
+        double[][] fields = new double[FeedColumns.FIELD_COUNT][];
+        fields[0] = new double[size];
+        if (secondField)
+            fields[1] = new double[size];
+        for (int i = 0; i < size; i++) {
+            entryIds[i] = firstEntryId + i;
+            createdAt[i] = entryIds[i] * 60000L;
+            fields[0][i] = entryIds[i];
+            if (secondField)
+                fields[1][i] = -entryIds[i];
+        }
+        return new FeedColumns(channel, size, createdAt, entryIds, fields);
+    }
+
+    private static void assertEntryIds(FeedColumns columns, long firstEntryId, int size) {
+        assertEquals(size, columns.size());
+        for (int i = 0; i < size; i++) {
+            assertEquals(firstEntryId + i, columns.getEntryId(i));
+            assertEquals((firstEntryId + i) * 60000L, columns.getCreatedAt(i));
+            assertEquals(firstEntryId + i, columns.getValue(1, i), 0);
+        }
+    }
+
+    @Test
+    public void mergeDropsDuplicateEntries() {
+        FeedColumns merged = columns(null, 1, 10, false).merge(columns(null, 6, 10, false), 100);
+        assertEntryIds(merged, 1, 15);
+    }
+
+    @Test
+    public void mergeKeepsLatestEntries() {
+        FeedColumns older = columns(null, 1, 10, false);
+
+        assertEntryIds(older.merge(columns(null, 11, 5, false), 8), 8, 8);
+        // The newer entries alone exceed the maximum size
+        assertEntryIds(older.merge(columns(null, 11, 5, false), 3), 13, 3);
+        assertEntryIds(older.merge(columns(null, 11, 5, false), 0), 0, 0);
+    }
+
+    @Test
+    public void mergeFillsFieldsMissingOnOneSide() {
+        FeedColumns merged = columns(null, 1, 3, false).merge(columns(null, 4, 3, true), 100);
+
+        assertEntryIds(merged, 1, 6);
+        assertTrue(merged.hasField(2));
+        assertFalse(merged.hasField(3));
+        for (int i = 0; i < 3; i++)
+            assertTrue(Double.isNaN(merged.getValue(2, i)));
+        for (int i = 3; i < 6; i++)
+            assertEquals(-(i + 1), merged.getValue(2, i), 0);
+    }
+
+    @Test
+    public void mergePrefersNewerChannel() {
+        Channel older = new Channel();
+        Channel newer = new Channel();
+
+        assertSame(newer, columns(older, 1, 3, false).merge(columns(newer, 4, 3, false), 100).getChannel());
+        assertSame(older, columns(older, 1, 3, false).merge(columns(null, 4, 3, false), 100).getChannel());
+    }
+
+    @Test
+    public void mergeWithEmptyColumns() {
+        FeedColumns empty = columns(null, 1, 0, false);
+
+        assertEntryIds(empty.merge(columns(null, 1, 5, false), 100), 1, 5);
+        assertEntryIds(columns(null, 1, 5, false).merge(empty, 100), 1, 5);
+    }
+
+    @Test
+    public void sliceCopiesRange() {
+        FeedColumns columns = columns(null, 1, 10, true);
+        FeedColumns slice = columns.slice(2, 6);
+
+        assertEntryIds(slice, 3, 4);
+        assertEquals(-3, slice.getValue(2, 0), 0);
+        assertNull(slice.getFieldColumn(3));
+        assertEquals(0, columns.slice(10, 10).size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void sliceRejectsInvalidRange() {
+        columns(null, 1, 10, false).slice(5, 11);
+    }
+
+}